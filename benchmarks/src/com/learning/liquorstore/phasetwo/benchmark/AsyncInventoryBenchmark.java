@@ -0,0 +1,118 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.learning.liquorstore.phasetwo.data.AsyncInventory;
+import com.learning.liquorstore.phasetwo.data.Inventory;
+import com.learning.liquorstore.phasetwo.data.InventoryJournal;
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a promotion: many clients reading and selling the same few
+ *   Products of a journaled Inventory, directly and through AsyncInventory.
+ *   Run it with more threads to see coalescing and batching pay off, e.g.
+ *   gradle :benchmarks:jmh -PjmhArgs="AsyncInventory -t 16".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AsyncInventoryBenchmark {
+
+    // Large enough that removeProducts never runs a Product out of stock.
+    private static final int STARTING_QTY = Integer.MAX_VALUE / 2;
+
+    private static final int CATALOG_SIZE = 100_000;
+
+    // The Products on promotion
+    private static final int HOT_PRODUCT_COUNT = 4;
+
+    // Requests a client has in flight at once when pipelining
+    private static final int PIPELINE_DEPTH = 32;
+
+    private Path directory;
+    private Inventory inventory;
+    private InventoryJournal journal;
+    private AsyncInventory asyncInventory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("liquor-store-bench");
+        inventory = new Inventory();
+        for (Product product : CatalogGenerator.generateProducts(CATALOG_SIZE)) {
+            inventory.addNewProduct(product);
+            inventory.addQtyForProduct(product.getProductId(), STARTING_QTY);
+        }
+        journal = InventoryJournal.open(directory.resolve("inventory.journal").toString(),
+                directory.resolve("inventory.snapshot").toString(), inventory, 0);
+        asyncInventory = new AsyncInventory(inventory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static String hotProductId() {
+        return CatalogGenerator.productId(ThreadLocalRandom.current().nextInt(HOT_PRODUCT_COUNT));
+    }
+
+    @Benchmark
+    public int getQtyForProduct() {
+        return inventory.getQtyForProduct(hotProductId());
+    }
+
+    @Benchmark
+    public int asyncGetQtyForProduct() {
+        return asyncInventory.getQtyForProduct(hotProductId()).join();
+    }
+
+    @Benchmark
+    public boolean removeProducts() {
+        return inventory.removeProducts(hotProductId(), 1);
+    }
+
+    @Benchmark
+    public boolean asyncRemoveProducts() {
+        return asyncInventory.removeProducts(hotProductId(), 1).join();
+    }
+
+    // One client with many sales in flight, as a busy till would be
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_DEPTH)
+    public boolean asyncRemoveProductsPipelined() {
+        CompletableFuture<?>[] sales = new CompletableFuture<?>[PIPELINE_DEPTH];
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            sales[i] = asyncInventory.removeProducts(hotProductId(), 1);
+        }
+        CompletableFuture.allOf(sales).join();
+        return sales[PIPELINE_DEPTH - 1].isDone();
+    }
+
+}
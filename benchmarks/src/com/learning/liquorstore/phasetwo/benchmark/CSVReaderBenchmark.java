@@ -0,0 +1,128 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.learning.liquorstore.phasetwo.data.Inventory;
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.util.ProductDataCSVReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks loading generated product and inventory CSV files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, batchSize = 1)
+@Measurement(iterations = 5, batchSize = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx16g"})
+public class CSVReaderBenchmark {
+
+    private static final int APPENDED_ROWS = 1000;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int catalogSize;
+
+    private Path directory;
+    private Path productCSV;
+    private Path inventoryCSV;
+
+    // Where the last APPENDED_ROWS rows of the inventory file start, as if
+    //   they were a day's deliveries appended since the last import
+    private long appendedRowsOffset;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("liquor-store-bench");
+        productCSV = directory.resolve("product_data.csv");
+        inventoryCSV = directory.resolve("inventory_data.csv");
+        CatalogGenerator.writeProductCSV(catalogSize, productCSV);
+        CatalogGenerator.writeInventoryCSV(catalogSize, inventoryCSV);
+
+        byte[] inventoryBytes = Files.readAllBytes(inventoryCSV);
+        int newlineCount = 0;
+        int offset = inventoryBytes.length - 1;
+        while (offset > 0 && newlineCount <= Math.min(APPENDED_ROWS, catalogSize - 1)) {
+            if (inventoryBytes[--offset] == '\n') {
+                newlineCount++;
+            }
+        }
+        appendedRowsOffset = offset + 1;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(productCSV);
+        Files.deleteIfExists(inventoryCSV);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public List<Product> loadProductDataFromCSV() throws IOException, ParseException {
+        return ProductDataCSVReader.loadProductDataFromCSV(Product.class, productCSV.toString());
+    }
+
+    @Benchmark
+    public Inventory stageProductDataIntoInventory() throws IOException, ParseException {
+        Inventory inventory = new Inventory();
+        inventory.addNewProducts(ProductDataCSVReader.loadProductDataFromCSV(Product.class, productCSV.toString()));
+        return inventory;
+    }
+
+    @Benchmark
+    public Inventory streamProductDataIntoInventory() throws IOException, ParseException {
+        Inventory inventory = new Inventory();
+        ProductDataCSVReader.loadProductDataFromCSV(Product.class, productCSV.toString(), inventory::addNewProduct);
+        return inventory;
+    }
+
+    @Benchmark
+    public Inventory streamProductDataIntoInventoryInParallel() throws IOException, ParseException {
+        Inventory inventory = new Inventory();
+        ProductDataCSVReader.loadProductDataFromCSVInParallel(Product.class, productCSV.toString(),
+                inventory::addNewProduct);
+        return inventory;
+    }
+
+    @Benchmark
+    public Map<String, Integer> loadProductQtyDataFromCSV() throws IOException, ParseException {
+        return ProductDataCSVReader.loadProductQtyDataFromCSV(inventoryCSV.toString());
+    }
+
+    @Benchmark
+    public Map<String, Integer> loadProductQtyDataFromCSVInParallel() throws IOException, ParseException {
+        Map<String, Integer> productQuantities = new HashMap<>();
+        ProductDataCSVReader.loadProductQtyDataFromCSVInParallel(inventoryCSV.toString(),
+                (productId, quantity) -> productQuantities.merge(productId, quantity, Integer::sum));
+        return productQuantities;
+    }
+
+    // What an incremental delivery import reads, against the whole file above
+    @Benchmark
+    public Map<String, Integer> loadAppendedProductQtyDataFromCSV() throws IOException, ParseException {
+        Map<String, Integer> productQuantities = new HashMap<>();
+        ProductDataCSVReader.loadProductQtyDataFromCSV(inventoryCSV.toString(), appendedRowsOffset,
+                (productId, quantity) -> productQuantities.merge(productId, quantity, Integer::sum));
+        return productQuantities;
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.util.function.Supplier;
+
+import com.learning.liquorstore.phasetwo.data.ColumnarProductCatalog;
+import com.learning.liquorstore.phasetwo.data.HeapProductCatalog;
+import com.learning.liquorstore.phasetwo.data.ProductCatalog;
+
+/**
+ * Measures the retained heap per SKU of each ProductCatalog backend.
+ *   Run with gradle :benchmarks:footprint [-PcatalogSize=N].
+ */
+public class CatalogFootprint {
+
+    private static final int DEFAULT_CATALOG_SIZE = 1_000_000;
+
+    public static void main(String[] args) {
+        int catalogSize = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CATALOG_SIZE;
+
+        long heapBytes = measure("HeapProductCatalog", catalogSize, HeapProductCatalog::new);
+        long columnarBytes = measure("ColumnarProductCatalog", catalogSize, ColumnarProductCatalog::new);
+
+        System.out.printf("Columnar uses %.1fx less memory per SKU.%n", (double) heapBytes / columnarBytes);
+    }
+
+    private static long measure(String name, int catalogSize, Supplier<ProductCatalog> catalogFactory) {
+        long before = usedHeap();
+        ProductCatalog catalog = catalogFactory.get();
+        CatalogGenerator.generateProducts(catalogSize, catalog::addProduct);
+        long retained = usedHeap() - before;
+
+        System.out.printf("%-24s %,d SKUs: %,d bytes (%.1f bytes/SKU)%n", name, catalog.size(), retained,
+                (double) retained / catalogSize);
+
+        // Keep the catalog reachable until after it was measured
+        if (catalog.size() != catalogSize) {
+            throw new IllegalStateException("Expected " + catalogSize + " Products in " + name);
+        }
+        return retained;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+
+/**
+ * Generates synthetic catalogs of any size for the benchmarks. The same
+ *   seed always produces the same catalog so runs are comparable.
+ */
+public class CatalogGenerator {
+
+    private static final long SEED = 0x5EED_50007L;
+
+    private static final String PRODUCT_HEADERS = "ProductId,Name,AlcoholType,BottleSize,Price";
+    private static final String INVENTORY_HEADERS = "ProductId,Quantity";
+
+    private static final String[] NAME_WORDS = {
+            "Reserve", "Single", "Barrel", "Aged", "Small", "Batch", "Gold", "Silver",
+            "Black", "Blue", "Label", "Spiced", "Coconut", "Irish", "Highland", "Estate"
+    };
+
+    private static final AlcoholType[] ALCOHOL_TYPES = AlcoholType.values();
+    private static final BottleSize[] BOTTLE_SIZES = BottleSize.values();
+
+    private CatalogGenerator() {
+    }
+
+    /**
+     * Returns the productId of the Product at the given index.
+     * @param index the index of the Product within the catalog.
+     * @return the productId.
+     */
+    public static String productId(int index) {
+        return "P-" + (50000 + index);
+    }
+
+    /**
+     * Generates a catalog of the given size in memory.
+     * @param size the number of Products to generate.
+     * @return the List of Products.
+     */
+    public static List<Product> generateProducts(int size) {
+        List<Product> products = new ArrayList<>(size);
+        generateProducts(size, products::add);
+        return products;
+    }
+
+    /**
+     * Generates a catalog of the given size, passing each Product to the
+     *   productConsumer without holding on to any of them.
+     * @param size the number of Products to generate.
+     * @param productConsumer receives each Product.
+     */
+    public static void generateProducts(int size, Consumer<Product> productConsumer) {
+        Random random = new Random(SEED);
+        for (int i = 0; i < size; i++) {
+            productConsumer.accept(new Product(productId(i), generateName(random), randomAlcoholType(random),
+                    randomBottleSize(random), randomPrice(random)));
+        }
+    }
+
+    /**
+     * Writes a product_data.csv style file with the given number of rows.
+     * @param size the number of Products to write.
+     * @param csvPath where to write the file.
+     * @throws IOException - if the file cannot be written.
+     */
+    public static void writeProductCSV(int size, Path csvPath) throws IOException {
+        Random random = new Random(SEED);
+        try (BufferedWriter writer = Files.newBufferedWriter(csvPath)) {
+            writer.write(PRODUCT_HEADERS);
+            for (int i = 0; i < size; i++) {
+                writer.newLine();
+                writer.write(productId(i) + "," + generateName(random) + "," + randomAlcoholType(random)
+                        + "," + randomBottleSize(random) + "," + randomPrice(random));
+            }
+        }
+    }
+
+    /**
+     * Writes an inventory_data.csv style file with the given number of rows.
+     *   Roughly one in ten rows repeats an earlier productId so the summing
+     *   of duplicate rows is exercised as well.
+     * @param size the number of Products in the catalog.
+     * @param csvPath where to write the file.
+     * @throws IOException - if the file cannot be written.
+     */
+    public static void writeInventoryCSV(int size, Path csvPath) throws IOException {
+        Random random = new Random(SEED);
+        try (BufferedWriter writer = Files.newBufferedWriter(csvPath)) {
+            writer.write(INVENTORY_HEADERS);
+            for (int i = 0; i < size; i++) {
+                int index = random.nextInt(10) == 0 ? random.nextInt(size) : i;
+                writer.newLine();
+                writer.write(productId(index) + "," + random.nextInt(25));
+            }
+        }
+    }
+
+    private static String generateName(Random random) {
+        return NAME_WORDS[random.nextInt(NAME_WORDS.length)] + " "
+                + NAME_WORDS[random.nextInt(NAME_WORDS.length)] + " " + random.nextInt(1000);
+    }
+
+    private static AlcoholType randomAlcoholType(Random random) {
+        return ALCOHOL_TYPES[random.nextInt(ALCOHOL_TYPES.length)];
+    }
+
+    private static BottleSize randomBottleSize(Random random) {
+        return BOTTLE_SIZES[random.nextInt(BOTTLE_SIZES.length)];
+    }
+
+    private static double randomPrice(Random random) {
+        // Prices between $5.00 and $300.00 in whole cents
+        return (500 + random.nextInt(29_501)) / 100.0;
+    }
+
+}
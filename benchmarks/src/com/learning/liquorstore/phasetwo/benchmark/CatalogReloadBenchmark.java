@@ -0,0 +1,76 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import com.learning.liquorstore.phasetwo.data.CatalogReloader;
+import com.learning.liquorstore.phasetwo.data.Inventory;
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.util.ProductDataCSVReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reloading a product CSV file into a running Inventory by
+ *   diffing it against the catalog, against building a new Inventory from
+ *   the file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, batchSize = 1)
+@Measurement(iterations = 5, batchSize = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx16g"})
+public class CatalogReloadBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int catalogSize;
+
+    private Path directory;
+    private Path productCSV;
+    private CatalogReloader reloader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ParseException {
+        directory = Files.createTempDirectory("liquor-store-bench");
+        productCSV = directory.resolve("product_data.csv");
+        CatalogGenerator.writeProductCSV(catalogSize, productCSV);
+
+        reloader = new CatalogReloader(new Inventory(), productCSV.toString());
+        reloader.reload();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(productCSV);
+        Files.deleteIfExists(directory);
+    }
+
+    // Nothing changed, so this is the cost of reading and comparing alone
+    @Benchmark
+    public CatalogReloader.ReloadResult reloadUnchanged() throws IOException, ParseException {
+        return reloader.reload();
+    }
+
+    @Benchmark
+    public Inventory rebuildInventory() throws IOException, ParseException {
+        Inventory inventory = new Inventory();
+        ProductDataCSVReader.loadProductDataFromCSV(Product.class, productCSV.toString(), inventory::addNewProduct);
+        return inventory;
+    }
+
+}
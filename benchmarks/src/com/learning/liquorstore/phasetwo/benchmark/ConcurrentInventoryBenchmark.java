@@ -0,0 +1,96 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.learning.liquorstore.phasetwo.data.Inventory;
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures quantity updates from many threads sharing one Inventory. Run it
+ *   with increasing thread counts to see how throughput scales, e.g.
+ *   gradle :benchmarks:jmh -PjmhArgs="ConcurrentInventory -t 4".
+ *   The hotSkus param narrows every thread onto a few Products to show
+ *   behaviour under contention on the same counters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentInventoryBenchmark {
+
+    // Large enough that removeProducts never runs a Product out of stock.
+    private static final int STARTING_QTY = Integer.MAX_VALUE / 2;
+
+    @Param({"100000"})
+    public int catalogSize;
+
+    // Number of Products the threads pick from, 0 for the whole catalog.
+    @Param({"0", "16"})
+    public int hotSkus;
+
+    private Inventory inventory;
+
+    // The catalog's own productIds, so looking one up allocates nothing
+    private String[] productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        inventory = new Inventory();
+        productIds = new String[catalogSize];
+        List<Product> products = CatalogGenerator.generateProducts(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            Product product = products.get(i);
+            inventory.addNewProduct(product);
+            inventory.addQtyForProduct(product.getProductId(), STARTING_QTY);
+            productIds[i] = product.getProductId();
+        }
+    }
+
+    private String randomProductId() {
+        int range = hotSkus > 0 ? hotSkus : catalogSize;
+        return productIds[ThreadLocalRandom.current().nextInt(range)];
+    }
+
+    @Benchmark
+    public boolean addQtyForProduct() {
+        return inventory.addQtyForProduct(randomProductId(), 1);
+    }
+
+    @Benchmark
+    public boolean removeProducts() {
+        return inventory.removeProducts(randomProductId(), 1);
+    }
+
+    @Benchmark
+    @Group("tills")
+    @GroupThreads(3)
+    public boolean sell() {
+        return inventory.removeProducts(randomProductId(), 1);
+    }
+
+    @Benchmark
+    @Group("tills")
+    @GroupThreads(1)
+    public boolean restock() {
+        return inventory.addQtyForProduct(randomProductId(), 3);
+    }
+
+}
@@ -0,0 +1,215 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.learning.liquorstore.phasetwo.data.Inventory;
+import com.learning.liquorstore.phasetwo.data.InventoryView;
+import com.learning.liquorstore.phasetwo.data.ProductPage;
+import com.learning.liquorstore.phasetwo.data.ProductQuery;
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the hot paths of the Inventory against generated catalogs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx16g"})
+public class InventoryBenchmark {
+
+    // Large enough that removeProducts never runs a Product out of stock.
+    private static final int STARTING_QTY = Integer.MAX_VALUE / 2;
+
+    // Width of the price band used by getProductsInPriceRange
+    private static final double PRICE_BAND = 5.0;
+
+    // Number of matches asked for by the name searches, as in typeahead
+    private static final int NAME_MATCH_LIMIT = 20;
+
+    // Products per page, as displayed by the view command
+    private static final int PAGE_SIZE = 10;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int catalogSize;
+
+    private Inventory inventory;
+
+    // The catalog's own productIds, so looking one up allocates nothing
+    private String[] productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        inventory = new Inventory();
+        productIds = new String[catalogSize];
+        List<Product> products = CatalogGenerator.generateProducts(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            Product product = products.get(i);
+            inventory.addNewProduct(product);
+            inventory.addQtyForProduct(product.getProductId(), STARTING_QTY);
+            productIds[i] = product.getProductId();
+        }
+        // Every MEZCAL needs reordering, so the updates also keep the low
+        //   stock set
+        inventory.setDefaultReorderThreshold(AlcoholType.MEZCAL, STARTING_QTY + 1);
+    }
+
+    private String randomProductId() {
+        return productIds[ThreadLocalRandom.current().nextInt(catalogSize)];
+    }
+
+    @Benchmark
+    public boolean addQtyForProduct() {
+        return inventory.addQtyForProduct(randomProductId(), 1);
+    }
+
+    @Benchmark
+    public boolean removeProducts() {
+        return inventory.removeProducts(randomProductId(), 1);
+    }
+
+    @Benchmark
+    public int getQtyForProduct() {
+        return inventory.getQtyForProduct(randomProductId());
+    }
+
+    @Benchmark
+    public Set<Product> getProductsInPriceRange() {
+        double min = 5.0 + ThreadLocalRandom.current().nextInt(290);
+        return inventory.getProductsInPriceRange(min, min + PRICE_BAND);
+    }
+
+    @Benchmark
+    public Set<Product> findProducts() {
+        return inventory.findProducts(new ProductQuery()
+                .withAlcoholTypes(AlcoholType.SCOTCH)
+                .withBottleSizes(BottleSize.HANDLE)
+                .withPriceRange(30, 60)
+                .inStockOnly());
+    }
+
+    // A sale before each query, as at a busy till. The sale leaves its
+    //   Product in stock, so the query is still answered from the cache.
+    @Benchmark
+    public Set<Product> removeProductsThenFindProducts() {
+        inventory.removeProducts(randomProductId(), 1);
+        return findProducts();
+    }
+
+    // The same query as findProducts, answered by intersecting the
+    //   single filter results the way callers had to before.
+    @Benchmark
+    public Set<Product> intersectSingleFilters() {
+        Set<Product> products = new HashSet<>(inventory.getProductsByAlcoholType(AlcoholType.SCOTCH));
+        products.retainAll(inventory.getProductsByBottleSize(BottleSize.HANDLE));
+        products.retainAll(inventory.getProductsInPriceRange(30, 60));
+        products.removeIf(product -> inventory.getQtyForProduct(product.getProductId()) == 0);
+        return products;
+    }
+
+    @Benchmark
+    public List<Product> findProductsByNamePrefix() {
+        return inventory.findProductsByName("barr", NAME_MATCH_LIMIT);
+    }
+
+    @Benchmark
+    public List<Product> findProductsByNameSubstring() {
+        return inventory.findProductsByName("rrel 99", NAME_MATCH_LIMIT);
+    }
+
+    // The same search as findProductsByNameSubstring, answered by scanning
+    //   every name the way callers had to before.
+    @Benchmark
+    public List<Product> scanProductNames() {
+        List<Product> matches = new ArrayList<>();
+        for (Product product : inventory.getAllProducts()) {
+            if (product.getName().toLowerCase(Locale.ROOT).contains("rrel 99")) {
+                matches.add(product);
+                if (matches.size() == NAME_MATCH_LIMIT) {
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public ProductPage getFirstProductPage() {
+        return inventory.getProductPage(new ProductQuery(), null, PAGE_SIZE);
+    }
+
+    // A page from anywhere in the catalog, as when continuing from a cursor
+    @Benchmark
+    public ProductPage getProductPageFromCursor() {
+        String cursor = Integer.toString(ThreadLocalRandom.current().nextInt(catalogSize));
+        return inventory.getProductPage(new ProductQuery().withAlcoholTypes(AlcoholType.GIN), cursor, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Set<Product> getLowStockProducts() {
+        return inventory.getLowStockProducts();
+    }
+
+    // The same answer found the way callers had to before, by checking
+    //   every Product's quantity
+    @Benchmark
+    public Set<Product> scanForLowStock() {
+        Set<Product> products = new LinkedHashSet<>();
+        for (Product product : inventory.getAllProducts()) {
+            if (inventory.getQtyForProduct(product.getProductId())
+                    < inventory.getReorderThreshold(product.getProductId())) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
+    // A change followed by a view, the worst case for views: the view
+    //   can't be reused, and the change copies the chunk of quantities it
+    //   touches out of the previous view.
+    @Benchmark
+    public InventoryView changeThenGetView() {
+        inventory.addQtyForProduct(randomProductId(), 1);
+        return inventory.getView();
+    }
+
+    @Benchmark
+    public Set<Product> findProductsInView() {
+        return inventory.getView().findProducts(new ProductQuery()
+                .withAlcoholTypes(AlcoholType.SCOTCH)
+                .withBottleSizes(BottleSize.HANDLE)
+                .withPriceRange(30, 60)
+                .inStockOnly());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10, batchSize = 1)
+    public Set<Product> getAllProducts() {
+        return inventory.getAllProducts();
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.learning.liquorstore.phasetwo.data.BatchResult;
+import com.learning.liquorstore.phasetwo.data.Inventory;
+import com.learning.liquorstore.phasetwo.data.InventoryJournal;
+import com.learning.liquorstore.phasetwo.data.QuantityDeltas;
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures quantity updates that wait for their journal record to reach
+ *   disk. Run it with increasing thread counts to see group commit share
+ *   each fsync between more updates, e.g.
+ *   gradle :benchmarks:jmh -PjmhArgs="JournalBenchmark -t 16".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+
+    // Large enough that removeProducts never runs a Product out of stock.
+    private static final int STARTING_QTY = Integer.MAX_VALUE / 2;
+
+    // Lines in a checkout basket
+    private static final int BASKET_SIZE = 20;
+
+    @Param({"100000"})
+    public int catalogSize;
+
+    private Path directory;
+    private Inventory inventory;
+    private InventoryJournal journal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("liquor-store-bench");
+        inventory = new Inventory();
+        for (Product product : CatalogGenerator.generateProducts(catalogSize)) {
+            inventory.addNewProduct(product);
+            inventory.addQtyForProduct(product.getProductId(), STARTING_QTY);
+        }
+        journal = InventoryJournal.open(directory.resolve("inventory.journal").toString(),
+                directory.resolve("inventory.snapshot").toString(), inventory, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private String randomProductId() {
+        return CatalogGenerator.productId(ThreadLocalRandom.current().nextInt(catalogSize));
+    }
+
+    @Benchmark
+    public boolean addQtyForProduct() {
+        return inventory.addQtyForProduct(randomProductId(), 1);
+    }
+
+    @Benchmark
+    public boolean removeProducts() {
+        return inventory.removeProducts(randomProductId(), 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BASKET_SIZE)
+    public boolean checkoutLineByLine() {
+        boolean success = true;
+        for (int line = 0; line < BASKET_SIZE; line++) {
+            success &= inventory.removeProducts(randomProductId(), 1);
+        }
+        return success;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BASKET_SIZE)
+    public BatchResult checkoutBasket() {
+        QuantityDeltas basket = new QuantityDeltas(BASKET_SIZE);
+        for (int line = 0; line < BASKET_SIZE; line++) {
+            basket.add(randomProductId(), -1);
+        }
+        return inventory.applyQtyDeltas(basket, true);
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.learning.liquorstore.phasetwo.util.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures what a debug call costs on a hot path while debug logging is off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerBenchmark {
+
+    private int lineCount = 50007;
+    private String line = "P-50007,Maker's Mark Bourbon Whisky,BOURBON,HANDLE,45.99";
+
+    @Setup
+    public void setUp() {
+        Logger.isDebugging(false);
+    }
+
+    @Benchmark
+    public void disabledParameterized() {
+        Logger.debug("ProductId not found in ProductCatalog. ProductId='%s'.", line);
+    }
+
+    @Benchmark
+    public void disabledSupplier() {
+        Logger.debug(() -> String.format("CSV Line #%s='%s'", lineCount, line));
+    }
+
+}
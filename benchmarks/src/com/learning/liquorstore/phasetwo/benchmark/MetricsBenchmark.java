@@ -0,0 +1,62 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.learning.liquorstore.phasetwo.metrics.LatencyHistogram;
+import com.learning.liquorstore.phasetwo.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures what the always-on metrics add to each Inventory operation. Run
+ *   it with more threads to see recording under contention, e.g.
+ *   gradle :benchmarks:jmh -PjmhArgs="MetricsBenchmark -t 4".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final LatencyHistogram histogram = metrics.histogram("benchmark.latency");
+    private final LongAdder counter = metrics.counter("benchmark.count");
+
+    // The clock reads alone, to tell them apart from recording
+    @Benchmark
+    public long readClockTwice() {
+        return System.nanoTime() - System.nanoTime();
+    }
+
+    @Benchmark
+    public void record() {
+        histogram.record(1_234);
+    }
+
+    // What an instrumented operation pays: two clock reads and a record
+    @Benchmark
+    public void recordSince() {
+        histogram.recordSince(System.nanoTime());
+    }
+
+    @Benchmark
+    public void incrementCounter() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public LatencyHistogram.Snapshot snapshot() {
+        return histogram.snapshot();
+    }
+
+}
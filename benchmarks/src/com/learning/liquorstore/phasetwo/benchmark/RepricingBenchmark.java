@@ -0,0 +1,103 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.learning.liquorstore.phasetwo.data.BatchResult;
+import com.learning.liquorstore.phasetwo.data.ColumnarProductCatalog;
+import com.learning.liquorstore.phasetwo.data.Inventory;
+import com.learning.liquorstore.phasetwo.data.PriceSheet;
+import com.learning.liquorstore.phasetwo.data.ProductQuery;
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a weekly promotion: repricing every Product of one AlcoholType,
+ *   and applying a price sheet covering a tenth of the catalog, all at
+ *   once, against repricing the same Products one at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = 1)
+@Measurement(iterations = 5, batchSize = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx16g"})
+public class RepricingBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int catalogSize;
+
+    @Param({"heap", "columnar"})
+    public String catalog;
+
+    private Inventory inventory;
+    private PriceSheet priceSheet;
+    private String[] sheetProductIds;
+    private double[] sheetPrices;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        inventory = catalog.equals("columnar") ? new Inventory(new ColumnarProductCatalog()) : new Inventory();
+        CatalogGenerator.generateProducts(catalogSize, inventory::addNewProduct);
+
+        // Every tenth Product, with a new price
+        int sheetSize = catalogSize / 10;
+        priceSheet = new PriceSheet(sheetSize);
+        sheetProductIds = new String[sheetSize];
+        sheetPrices = new double[sheetSize];
+        for (int line = 0; line < sheetSize; line++) {
+            sheetProductIds[line] = CatalogGenerator.productId(line * 10);
+            sheetPrices[line] = 5 + ThreadLocalRandom.current().nextInt(29000) / 100.0;
+            priceSheet.add(sheetProductIds[line], sheetPrices[line]);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public boolean repriceProduct() {
+        int index = ThreadLocalRandom.current().nextInt(catalogSize);
+        return inventory.repriceProduct(CatalogGenerator.productId(index), 5 + index % 29000 / 100.0);
+    }
+
+    // 10% off, then back, so prices stay about where they were
+    @Benchmark
+    public int repriceAlcoholType() {
+        ProductQuery gin = new ProductQuery().withAlcoholTypes(AlcoholType.GIN);
+        return inventory.repriceProducts(gin, cents -> cents * 9 / 10)
+                + inventory.repriceProducts(gin, cents -> cents * 10 / 9);
+    }
+
+    @Benchmark
+    public BatchResult applyPriceSheet() {
+        return inventory.applyPriceSheet(priceSheet);
+    }
+
+    // The same sheet a line at a time. Each line path copies its own row
+    //   and price, and readers see the sheet half applied while it runs
+    @Benchmark
+    public int repriceOneAtATime() {
+        int repricedCount = 0;
+        for (int line = 0; line < sheetProductIds.length; line++) {
+            if (inventory.repriceProduct(sheetProductIds[line], sheetPrices[line])) {
+                repricedCount++;
+            }
+        }
+        return repricedCount;
+    }
+
+}
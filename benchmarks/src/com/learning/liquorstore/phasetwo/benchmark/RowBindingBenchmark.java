@@ -0,0 +1,87 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.concurrent.TimeUnit;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+import com.learning.liquorstore.phasetwo.util.CSVRowBinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares binding a CSV row to a Product in rows per second, using the
+ *   compiled CSVRowBinder against the per-row reflection the reader used
+ *   to do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowBindingBenchmark {
+
+    private static final String[] ROW = {"P-50007", "Maker's Mark Bourbon Whisky", "BOURBON", "HANDLE", "45.99"};
+
+    private CSVRowBinder<Product> rowBinder;
+    private Constructor<Product> constructor;
+    private Class<?>[] paramClasses;
+
+    @Setup
+    public void setUp() throws IOException, NoSuchMethodException {
+        rowBinder = CSVRowBinder.forClass(Product.class);
+        constructor = Product.class.getConstructor(String.class, String.class, AlcoholType.class, BottleSize.class,
+                double.class);
+        paramClasses = constructor.getParameterTypes();
+    }
+
+    @Benchmark
+    public Product compiledBinding() {
+        return rowBinder.bind(ROW);
+    }
+
+    @Benchmark
+    public Product reflectiveBinding() throws ReflectiveOperationException {
+        Object[] args = new Object[paramClasses.length];
+        for (int i = 0; i < paramClasses.length; i++) {
+            args[i] = parseValue(paramClasses[i], ROW[i]);
+        }
+        return constructor.newInstance(args);
+    }
+
+    // The if/else type chain the reader ran for every value before
+    private static Object parseValue(Class<?> paramClass, String value) {
+        if (String.class == paramClass) {
+            return value;
+        } else if (char.class == paramClass || Character.class == paramClass) {
+            return value.charAt(0);
+        } else if (int.class == paramClass || Integer.class == paramClass) {
+            return Integer.parseInt(value);
+        } else if (long.class == paramClass || Long.class == paramClass) {
+            return Long.parseLong(value);
+        } else if (double.class == paramClass || Double.class == paramClass) {
+            return Double.parseDouble(value);
+        } else if (float.class == paramClass || Float.class == paramClass) {
+            return Float.parseFloat(value);
+        } else if (boolean.class == paramClass || Boolean.class == paramClass) {
+            return Boolean.parseBoolean(value);
+        } else {
+            // Every other param class of Product is an enum
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Enum<?> enumValue = Enum.valueOf((Class<? extends Enum>) paramClass, value);
+            return enumValue;
+        }
+    }
+
+}
@@ -0,0 +1,304 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.learning.liquorstore.phasetwo.data.Inventory;
+import com.learning.liquorstore.phasetwo.data.InventoryJournal;
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.server.InventoryServer;
+
+/**
+ * Load tests the InventoryServer on localhost. Many terminals each send a
+ *   request, wait for its response and send the next, as a POS would:
+ *   mostly quantity lookups, with adds, removes and name searches mixed
+ *   in. Reports throughput and latency percentiles.
+ *
+ *   Each terminal waits for its response before sending again, so the
+ *   latencies are those seen by the terminals, not by requests arriving
+ *   at a fixed rate.
+ *
+ *   Run with gradle :benchmarks:loadTest [-Pconnections=N] [-Pseconds=N]
+ *   [-PcatalogSize=N] [-Pjournal=true].
+ */
+public class ServerLoadTest {
+
+    private static final int DEFAULT_CONNECTIONS = 2000;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int DEFAULT_CATALOG_SIZE = 100_000;
+    private static final int WARMUP_SECONDS = 3;
+
+    // Large enough that removes never run a Product out of stock
+    private static final int STARTING_QTY = Integer.MAX_VALUE / 2;
+
+    // Percent of requests of each kind; the rest are quantity lookups
+    private static final int ADD_PERCENT = 10;
+    private static final int REMOVE_PERCENT = 10;
+    private static final int VIEW_NAME_PERCENT = 5;
+
+    private static final String[] NAME_QUERIES = {"barr", "gold", "spi", "label 4", "rrel 9"};
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int connectionCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CONNECTIONS;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        int catalogSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CATALOG_SIZE;
+        boolean isJournaled = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+        Inventory inventory = new Inventory();
+        for (Product product : CatalogGenerator.generateProducts(catalogSize)) {
+            inventory.addNewProduct(product);
+            inventory.addQtyForProduct(product.getProductId(), STARTING_QTY);
+        }
+        Path directory = Files.createTempDirectory("liquor-store-load");
+        InventoryJournal journal = isJournaled
+                ? InventoryJournal.open(directory.resolve("inventory.journal").toString(),
+                        directory.resolve("inventory.snapshot").toString(), inventory, 0)
+                : null;
+
+        try (InventoryServer server = new InventoryServer(inventory, 0, InventoryServer.DEFAULT_WORKER_COUNT)) {
+            int clientCount = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+            Client[] clients = new Client[clientCount];
+            for (int i = 0; i < clientCount; i++) {
+                int connectionsForClient = connectionCount / clientCount + (i < connectionCount % clientCount ? 1 : 0);
+                clients[i] = new Client(server.getPort(), connectionsForClient, catalogSize);
+            }
+            for (Client client : clients) {
+                client.start();
+            }
+
+            TimeUnit.SECONDS.sleep(WARMUP_SECONDS);
+            long measureStart = System.nanoTime();
+            for (Client client : clients) {
+                client.measureFrom(measureStart);
+            }
+            TimeUnit.SECONDS.sleep(seconds);
+            long measureEnd = System.nanoTime();
+            for (Client client : clients) {
+                client.stopAt(measureEnd);
+            }
+
+            long[] latencies = new long[0];
+            long errorCount = 0;
+            for (Client client : clients) {
+                client.join();
+                long[] clientLatencies = client.getLatencies();
+                int offset = latencies.length;
+                latencies = Arrays.copyOf(latencies, offset + clientLatencies.length);
+                System.arraycopy(clientLatencies, 0, latencies, offset, clientLatencies.length);
+                errorCount += client.getErrorCount();
+            }
+            report(connectionCount, catalogSize, isJournaled, latencies, errorCount, measureEnd - measureStart);
+        } finally {
+            if (journal != null) {
+                journal.close();
+            }
+            try (var files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static void report(int connectionCount, int catalogSize, boolean isJournaled, long[] latencies,
+            long errorCount, long elapsedNanos) {
+        Arrays.sort(latencies);
+        double elapsedSeconds = elapsedNanos / 1e9;
+        System.out.printf("%,d connections, %,d Products, journal %s%n", connectionCount, catalogSize,
+                isJournaled ? "on" : "off");
+        System.out.printf("%,d requests in %.1fs: %,.0f requests/s, %,d errors%n", latencies.length,
+                elapsedSeconds, latencies.length / elapsedSeconds, errorCount);
+        System.out.printf("latency p50 %s, p99 %s, p99.9 %s, max %s%n", percentile(latencies, 50),
+                percentile(latencies, 99), percentile(latencies, 99.9), percentile(latencies, 100));
+    }
+
+    private static String percentile(long[] sortedLatencies, double percentile) {
+        if (sortedLatencies.length == 0) {
+            return "-";
+        }
+        int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+        long nanos = sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))];
+        return String.format("%.2fms", nanos / 1e6);
+    }
+
+    /**
+     * Drives a share of the connections from one thread with a Selector,
+     *   so thousands of terminals don't need thousands of threads.
+     */
+    private static class Client extends Thread {
+
+        private final Selector selector;
+        private final int catalogSize;
+
+        private volatile long measureStart = Long.MAX_VALUE;
+        private volatile long measureEnd = Long.MAX_VALUE;
+
+        // Latencies of the requests sent and answered while measuring
+        private long[] latencies = new long[1 << 16];
+        private int latencyCount;
+        private long errorCount;
+
+        Client(int port, int connectionCount, int catalogSize) throws IOException {
+            super("load-test-client");
+            this.selector = Selector.open();
+            this.catalogSize = catalogSize;
+            for (int i = 0; i < connectionCount; i++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Terminal(channel));
+            }
+        }
+
+        void measureFrom(long measureStart) {
+            this.measureStart = measureStart;
+        }
+
+        void stopAt(long measureEnd) {
+            this.measureEnd = measureEnd;
+            selector.wakeup();
+        }
+
+        long[] getLatencies() {
+            return Arrays.copyOf(latencies, latencyCount);
+        }
+
+        long getErrorCount() {
+            return errorCount;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    ((Terminal) key.attachment()).sendRequest();
+                }
+                while (System.nanoTime() < measureEnd) {
+                    selector.select();
+                    Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                    while (selectedKeys.hasNext()) {
+                        SelectionKey key = selectedKeys.next();
+                        selectedKeys.remove();
+                        ((Terminal) key.attachment()).readResponse();
+                    }
+                }
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            } catch (IOException e) {
+                throw new IllegalStateException("Load test connection failed", e);
+            }
+        }
+
+        private void record(long sentAt, long answeredAt) {
+            if (sentAt < measureStart || answeredAt > measureEnd) {
+                return;
+            }
+            if (latencyCount == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencyCount * 2);
+            }
+            latencies[latencyCount++] = answeredAt - sentAt;
+        }
+
+        /**
+         * One POS terminal, with at most one request outstanding.
+         */
+        private class Terminal {
+
+            private final SocketChannel channel;
+            private final ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+
+            // The first line of the response, which may arrive in pieces
+            private final StringBuilder firstLine = new StringBuilder();
+
+            private long sentAt;
+            private boolean isView;
+            private boolean isFirstLineRead;
+            private boolean isError;
+            // Lines still to come after the first, for VIEW responses
+            private int remainingLines;
+
+            Terminal(SocketChannel channel) {
+                this.channel = channel;
+            }
+
+            void sendRequest() throws IOException {
+                ByteBuffer request = ByteBuffer.wrap(nextRequest().getBytes(StandardCharsets.UTF_8));
+                sentAt = System.nanoTime();
+                // Requests are tiny, so the socket buffer always takes them whole
+                while (request.hasRemaining()) {
+                    channel.write(request);
+                }
+                firstLine.setLength(0);
+                isFirstLineRead = false;
+                isError = false;
+                remainingLines = 0;
+            }
+
+            void readResponse() throws IOException {
+                readBuffer.clear();
+                int bytesRead = channel.read(readBuffer);
+                if (bytesRead < 0) {
+                    throw new IOException("Server closed the connection");
+                }
+                for (int i = 0; i < bytesRead; i++) {
+                    byte b = readBuffer.get(i);
+                    if (isFirstLineRead) {
+                        if (b == '\n') {
+                            remainingLines--;
+                        }
+                    } else if (b != '\n') {
+                        // Responses' first lines are ASCII
+                        firstLine.append((char) b);
+                    } else {
+                        isFirstLineRead = true;
+                        isError = firstLine.indexOf("ERR") == 0;
+                        if (isView && !isError) {
+                            remainingLines = Integer.parseInt(firstLine.substring(3).trim());
+                        }
+                    }
+                }
+
+                if (isFirstLineRead && remainingLines == 0) {
+                    record(sentAt, System.nanoTime());
+                    if (isError) {
+                        errorCount++;
+                    }
+                    sendRequest();
+                }
+            }
+
+            private String nextRequest() {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                String productId = CatalogGenerator.productId(random.nextInt(catalogSize));
+                int kind = random.nextInt(100);
+                isView = false;
+                if (kind < ADD_PERCENT) {
+                    return "ADD " + productId + " 1\n";
+                } else if (kind < ADD_PERCENT + REMOVE_PERCENT) {
+                    return "REMOVE " + productId + " 1\n";
+                } else if (kind < ADD_PERCENT + REMOVE_PERCENT + VIEW_NAME_PERCENT) {
+                    isView = true;
+                    return "VIEW NAME " + NAME_QUERIES[random.nextInt(NAME_QUERIES.length)] + "\n";
+                }
+                return "QUANTITY " + productId + "\n";
+            }
+        }
+    }
+
+}
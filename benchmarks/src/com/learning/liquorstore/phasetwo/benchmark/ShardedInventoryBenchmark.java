@@ -0,0 +1,83 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.learning.liquorstore.phasetwo.data.ShardedInventory;
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures one store's catalog hash partitioned across shards, against a
+ *   single shard. Run it with more threads to see quantity changes scale,
+ *   e.g. gradle :benchmarks:jmh -PjmhArgs="ShardedInventory -t 8".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class ShardedInventoryBenchmark {
+
+    // Large enough that removeProducts never runs a Product out of stock.
+    private static final int STARTING_QTY = Integer.MAX_VALUE / 2;
+
+    @Param({"1000000"})
+    public int catalogSize;
+
+    @Param({"1", "8"})
+    public int shardCount;
+
+    private ShardedInventory inventory;
+
+    // The catalog's own productIds, so looking one up allocates nothing
+    private String[] productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        inventory = ShardedInventory.hashPartitioned(shardCount);
+        productIds = new String[catalogSize];
+        List<Product> products = CatalogGenerator.generateProducts(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            Product product = products.get(i);
+            inventory.addNewProduct(product);
+            inventory.addQtyForProduct(product.getProductId(), STARTING_QTY);
+            productIds[i] = product.getProductId();
+        }
+    }
+
+    private String randomProductId() {
+        return productIds[ThreadLocalRandom.current().nextInt(catalogSize)];
+    }
+
+    @Benchmark
+    public boolean removeProducts() {
+        return inventory.removeProducts(randomProductId(), 1);
+    }
+
+    @Benchmark
+    public long getTotalQuantity() {
+        return inventory.getTotalQuantity();
+    }
+
+    @Benchmark
+    public Set<Product> getProductsInPriceRange() {
+        double min = 5.0 + ThreadLocalRandom.current().nextInt(290);
+        return inventory.getProductsInPriceRange(min, min + 5.0);
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.learning.liquorstore.phasetwo.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import com.learning.liquorstore.phasetwo.data.Inventory;
+import com.learning.liquorstore.phasetwo.data.InventorySnapshot;
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.util.ProductDataCSVReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks starting an Inventory from a snapshot against starting it
+ *   from the CSV files the snapshot was written from.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, batchSize = 1)
+@Measurement(iterations = 5, batchSize = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx16g"})
+public class SnapshotBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int catalogSize;
+
+    private Path directory;
+    private Path productCSV;
+    private Path inventoryCSV;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ParseException {
+        directory = Files.createTempDirectory("liquor-store-bench");
+        productCSV = directory.resolve("product_data.csv");
+        inventoryCSV = directory.resolve("inventory_data.csv");
+        snapshot = directory.resolve("inventory.snapshot");
+        CatalogGenerator.writeProductCSV(catalogSize, productCSV);
+        CatalogGenerator.writeInventoryCSV(catalogSize, inventoryCSV);
+        InventorySnapshot.write(loadFromCSV(), snapshot.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(productCSV);
+        Files.deleteIfExists(inventoryCSV);
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Inventory loadFromCSV() throws IOException, ParseException {
+        Inventory inventory = new Inventory();
+        ProductDataCSVReader.loadProductDataFromCSVInParallel(Product.class, productCSV.toString(),
+                inventory::addNewProduct);
+        ProductDataCSVReader.loadProductQtyDataFromCSVInParallel(inventoryCSV.toString(),
+                inventory::addQtyForProduct);
+        return inventory;
+    }
+
+    @Benchmark
+    public Inventory loadFromSnapshot() throws IOException {
+        return InventorySnapshot.load(snapshot.toString());
+    }
+
+    @Benchmark
+    public Inventory loadColumnarFromSnapshot() throws IOException {
+        return InventorySnapshot.loadColumnar(snapshot.toString());
+    }
+
+}
@@ -1,17 +1,28 @@
 package com.learning.liquorstore.phasetwo;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.ParseException;
-import java.util.List;
-import java.util.Map;
 import java.util.Scanner;
 
+import javax.management.JMException;
+
 import com.learning.liquorstore.phasetwo.commandhandler.AddCommandHandler;
+import com.learning.liquorstore.phasetwo.commandhandler.CommandHandler;
 import com.learning.liquorstore.phasetwo.commandhandler.QuantityCommandHandler;
 import com.learning.liquorstore.phasetwo.commandhandler.RemoveCommandHandler;
 import com.learning.liquorstore.phasetwo.commandhandler.ViewCommandHandler;
+import com.learning.liquorstore.phasetwo.data.CatalogReloader;
+import com.learning.liquorstore.phasetwo.data.DeliveryImporter;
 import com.learning.liquorstore.phasetwo.data.Inventory;
+import com.learning.liquorstore.phasetwo.data.InventoryJournal;
+import com.learning.liquorstore.phasetwo.data.InventorySnapshot;
 import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.server.InventoryServer;
 import com.learning.liquorstore.phasetwo.util.Logger;
 import com.learning.liquorstore.phasetwo.util.ProductDataCSVReader;
 
@@ -23,18 +34,73 @@ public class LiquorStore {
     private static final String ADD_COMMAND = "add";
     private static final String REMOVE_COMMAND = "remove";
     private static final String QUANTITY_COMMAND = "quantity";
+    private static final String STATS_COMMAND = "stats";
     private static final String EXIT_COMMAND = "exit";
 
+    // Loaded instead of the CSV files when it is newer than both of them
+    private static final String SNAPSHOT_PATH = "src/com/learning/liquorstore/phasetwo/data/inventory.snapshot";
+    // Quantity changes since the snapshot, replayed on startup
+    private static final String JOURNAL_PATH = "src/com/learning/liquorstore/phasetwo/data/inventory.journal";
+
+    // Runs the store headless, serving the Inventory over TCP, e.g.
+    //   `--server 7070`. Only this machine can connect, unless --bind is given.
+    private static final String SERVER_ARG = "--server";
+
+    // The address the server listens on instead of the loopback address,
+    //   e.g. `--bind 0.0.0.0` for every address. Requests aren't
+    //   authenticated, so only widen it on a trusted network.
+    private static final String BIND_ARG = "--bind";
+
+    // Applies edits to the product CSV file while the store runs
+    private static final String WATCH_CATALOG_ARG = "--watch-catalog";
+
+    // Imports deliveries as they are appended to the inventory CSV file
+    private static final String FOLLOW_DELIVERIES_ARG = "--follow-deliveries";
+
+    // The name the Inventory's metrics are published under over JMX
+    private static final String METRICS_MBEAN_NAME = "com.learning.liquorstore:type=Metrics";
+
     private static Scanner scanner;
     private static Inventory inventory;
+    private static InventoryJournal journal;
+    private static CatalogReloader catalogReloader;
+    private static DeliveryImporter deliveryImporter;
+
+    // Whether the Inventory came from the snapshot rather than the CSV files
+    private static boolean loadedFromSnapshot;
+    // Whether the product CSV file changed after the snapshot was written
+    private static boolean isCatalogNewer;
 
     public static void main(String[] args) {
-        scanner = new Scanner(System.in);
-        inventory = new Inventory();
         Logger.isDebugging(true);
 
         // Initialize the LiquorStore/Inventory
-        initializeLiquorStore(inventory);
+        inventory = initializeLiquorStore();
+        journal = openJournal(inventory);
+        registerMetrics();
+        importDeliveries();
+
+        int serverPort = -1;
+        InetAddress bindAddress = InetAddress.getLoopbackAddress();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase(SERVER_ARG)) {
+                serverPort = InventoryServer.DEFAULT_PORT;
+                if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                    serverPort = Integer.parseInt(args[++i]);
+                }
+            } else if (args[i].equalsIgnoreCase(BIND_ARG) && i + 1 < args.length) {
+                bindAddress = parseBindAddress(args[++i]);
+            } else if (args[i].equalsIgnoreCase(WATCH_CATALOG_ARG)) {
+                watchCatalog();
+            } else if (args[i].equalsIgnoreCase(FOLLOW_DELIVERIES_ARG)) {
+                followDeliveries();
+            }
+        }
+        if (serverPort >= 0) {
+            runServer(bindAddress, serverPort);
+            return;
+        }
+        scanner = new Scanner(System.in);
 
         // Initialize Command Handlers
         ViewCommandHandler viewHandler = new ViewCommandHandler(scanner, inventory);
@@ -52,14 +118,20 @@ public class LiquorStore {
             if (menuSelection.equalsIgnoreCase(HELP_COMMAND)) {
                 displayHelp();
             } else if (menuSelection.equalsIgnoreCase(VIEW_COMMAND)) {
-                viewHandler.handleCommand();
+                handleTimedCommand(VIEW_COMMAND, viewHandler);
             } else if (menuSelection.equalsIgnoreCase(ADD_COMMAND)) {
-                addHandler.handleCommand();
+                handleTimedCommand(ADD_COMMAND, addHandler);
             } else if (menuSelection.equalsIgnoreCase(REMOVE_COMMAND)) {
-                removeHandler.handleCommand();
+                handleTimedCommand(REMOVE_COMMAND, removeHandler);
             } else if (menuSelection.equalsIgnoreCase(QUANTITY_COMMAND)) {
-                quantityHandler.handleCommand();
+                handleTimedCommand(QUANTITY_COMMAND, quantityHandler);
+            } else if (menuSelection.equalsIgnoreCase(STATS_COMMAND)) {
+                System.out.println();
+                System.out.print(inventory.getMetrics().report());
             } else if (menuSelection.equalsIgnoreCase(EXIT_COMMAND)) {
+                closeDeliveryImporter();
+                closeCatalogReloader();
+                closeJournal();
                 break;
             } else {
                 System.out.println("\nYou entered an invalid command, \"" + menuSelection + "\". Try again." );
@@ -68,20 +140,249 @@ public class LiquorStore {
     }
 
     /**
-     * Initialize the LiquorStore with seed data.
-     * @param inventory the inventory
+     * Handles a command, recording how long it took, prompts included, in
+     *   the "command." histogram of its name.
+     * @param command the command.
+     * @param handler the command's handler.
+     */
+    private static void handleTimedCommand(String command, CommandHandler handler) {
+        long startTime = System.nanoTime();
+        try {
+            handler.handleCommand();
+        } finally {
+            inventory.getMetrics().histogram("command." + command).recordSince(startTime);
+        }
+    }
+
+    /**
+     * Publishes the Inventory's metrics over JMX. The store runs fine
+     *   without them, so failing to is only logged.
+     */
+    private static void registerMetrics() {
+        try {
+            inventory.getMetrics().registerMBean(METRICS_MBEAN_NAME);
+        } catch (JMException e) {
+            Logger.debug("Failed to publish metrics over JMX: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Starts applying edits to the product CSV file to the Inventory. The
+     *   store runs fine without it, so failing to is only logged.
+     */
+    private static void watchCatalog() {
+        catalogReloader = new CatalogReloader(inventory, ProductDataCSVReader.PRODUCT_DATA_CSV);
+        try {
+            catalogReloader.start();
+        } catch (IOException e) {
+            Logger.debug("Failed to watch the product data: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Stops watching the product CSV file, if it was being watched.
+     */
+    private static void closeCatalogReloader() {
+        if (catalogReloader == null) {
+            return;
+        }
+        try {
+            catalogReloader.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Imports the deliveries appended to the inventory CSV file since the
+     *   last import. Deliveries aren't needed to run the store, so failing
+     *   to import them is only logged.
+     */
+    private static void importDeliveries() {
+        try {
+            deliveryImporter = new DeliveryImporter(inventory, ProductDataCSVReader.INVENTORY_DATA_CSV);
+            int rowCount = deliveryImporter.importNewDeliveries();
+            Logger.debug("Imported %d delivery rows.", rowCount);
+        } catch (IOException | ParseException | IllegalArgumentException e) {
+            Logger.debug("Failed to import deliveries: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Starts importing deliveries as they are appended to the inventory CSV
+     *   file. The store runs fine without it, so failing to is only logged.
+     */
+    private static void followDeliveries() {
+        if (deliveryImporter == null) {
+            return;
+        }
+        try {
+            deliveryImporter.start();
+        } catch (IOException e) {
+            Logger.debug("Failed to follow the inventory data: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Stops following the inventory CSV file, if it was being followed.
+     */
+    private static void closeDeliveryImporter() {
+        if (deliveryImporter == null) {
+            return;
+        }
+        try {
+            deliveryImporter.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Parses the address given with --bind, exiting if it can't be resolved.
+     * @param address the address, as a host name or IP address.
+     * @return the address.
      */
-    private static void initializeLiquorStore(Inventory inventory) {
+    private static InetAddress parseBindAddress(String address) {
         try {
-            List<Product> products = ProductDataCSVReader.loadProductDataFromCSV(Product.class);
-            inventory.addNewProducts(products);
+            return InetAddress.getByName(address);
+        } catch (UnknownHostException e) {
+            System.out.println("Can't bind to unknown address \"" + address + "\".");
+            closeDeliveryImporter();
+            closeCatalogReloader();
+            closeJournal();
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Serves the Inventory to terminals over TCP until the process is
+     *   stopped, then folds the journal into the snapshot.
+     * @param bindAddress the local address to listen on.
+     * @param port the port to listen on.
+     */
+    private static void runServer(InetAddress bindAddress, int port) {
+        InventoryServer server;
+        try {
+            server = new InventoryServer(inventory, bindAddress, port, InventoryServer.DEFAULT_WORKER_COUNT);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            closeDeliveryImporter();
+            closeCatalogReloader();
+            closeJournal();
+            System.exit(1);
+            return;
+        }
+        System.out.println("Kyle's Liquor Store is serving its Inventory on " + bindAddress.getHostAddress()
+                + " port " + server.getPort() + ".");
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+            closeDeliveryImporter();
+            closeCatalogReloader();
+            closeJournal();
+        }, "inventory-server-shutdown"));
+    }
+
+    /**
+     * Initialize the LiquorStore with seed data. The snapshot is used if
+     *   there is one, even when the product CSV file changed since, as it
+     *   holds every quantity change up to when it was written, and
+     *   openJournal reconciles its catalog with the file. Only without a
+     *   snapshot are the CSV files loaded, and openJournal writes a new
+     *   snapshot for next time. The snapshot is loaded columnar, adopting
+     *   its columns and indexes as they are, so startup is bound by how
+     *   fast the file can be read rather than by rebuilding the indexes.
+     * @return the inventory
+     */
+    private static Inventory initializeLiquorStore() {
+        if (Files.exists(Paths.get(SNAPSHOT_PATH))) {
+            isCatalogNewer = !isSnapshotUpToDate();
+            try {
+                Inventory inventory = InventorySnapshot.loadColumnar(SNAPSHOT_PATH);
+                loadedFromSnapshot = true;
+                return inventory;
+            } catch (IOException e) {
+                Logger.debug("Falling back to the CSV files: %s", e.getMessage());
+            }
+        }
 
-            Map<String, Integer> productQuantities = ProductDataCSVReader.loadProductQtyDataFromCSV();
-            inventory.addQtyForProducts(productQuantities);
+        Inventory inventory = new Inventory();
+        try {
+            // Parse the files in parallel and stream each row straight into
+            //   the Inventory rather than staging the whole file in memory.
+            //   Later deliveries are imported from where the parsed rows end.
+            ProductDataCSVReader.loadProductDataFromCSVInParallel(Product.class, inventory::addNewProduct);
+            inventory.skipDeliveriesTo(
+                    ProductDataCSVReader.loadProductQtyDataFromCSVInParallel(inventory::addQtyForProduct));
         } catch (IOException | ParseException e) {
             System.out.println(e.getMessage());
             System.exit(1);
         }
+
+        return inventory;
+    }
+
+    /**
+     * Replays the quantity changes made since the snapshot was written,
+     *   then journals every later change. If the product CSV file changed
+     *   since the snapshot, the catalog is then reconciled with it, keeping
+     *   the quantities. An Inventory rebuilt from the CSV files starts a new
+     *   journal instead, since the old one's changes were made to the data
+     *   it replaced.
+     * @param inventory the inventory
+     * @return the journal
+     */
+    private static InventoryJournal openJournal(Inventory inventory) {
+        try {
+            if (!loadedFromSnapshot) {
+                return InventoryJournal.openDiscarding(JOURNAL_PATH, SNAPSHOT_PATH, inventory);
+            }
+            // The snapshot already holds the journal up to its sequence
+            long snapshotSequence = InventorySnapshot.readJournalSequence(SNAPSHOT_PATH);
+            if (isCatalogNewer) {
+                return InventoryJournal.openReconciling(JOURNAL_PATH, SNAPSHOT_PATH, inventory, snapshotSequence,
+                        ProductDataCSVReader.PRODUCT_DATA_CSV);
+            }
+            return InventoryJournal.open(JOURNAL_PATH, SNAPSHOT_PATH, inventory, snapshotSequence);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Folds the journal into the snapshot before exiting.
+     */
+    private static void closeJournal() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Whether the snapshot exists and is newer than the product CSV file.
+     *   The snapshot records where the rows it holds from the inventory CSV
+     *   file end, and rows appended after them are imported as deliveries,
+     *   so changes to that file never make it stale.
+     * @return true if the snapshot's catalog needs no reconciling.
+     */
+    private static boolean isSnapshotUpToDate() {
+        Path snapshot = Paths.get(SNAPSHOT_PATH);
+        try {
+            return Files.exists(snapshot)
+                    && Files.getLastModifiedTime(snapshot).compareTo(
+                            Files.getLastModifiedTime(Paths.get(ProductDataCSVReader.PRODUCT_DATA_CSV))) > 0;
+        } catch (IOException e) {
+            return false;
+        }
     }
 
     /**
@@ -93,6 +394,7 @@ public class LiquorStore {
         System.out.println("\tadd - Add some quantity of a Product to the Inventory.");
         System.out.println("\tremove - Remove some quantity of a Product from the Inventory.");
         System.out.println("\tquantity - Lookup the quantity of a Product in the Inventory.");
+        System.out.println("\tstats - Display the latencies and counts of Inventory operations.");
         System.out.println("\texit - End the program.");
     }
 
@@ -1,11 +1,14 @@
 package com.learning.liquorstore.phasetwo.commandhandler;
 
 import com.learning.liquorstore.phasetwo.data.Inventory;
+import com.learning.liquorstore.phasetwo.data.ProductPage;
+import com.learning.liquorstore.phasetwo.data.ProductQuery;
 import com.learning.liquorstore.phasetwo.data.model.Product;
 
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Scanner;
 import java.util.Set;
 
@@ -16,8 +19,11 @@ public class ViewCommandHandler implements CommandHandler {
     private static final String VIEW_BY_ALCHOL_TYPE = "type";
     private static final String VIEW_BY_BOTTLE_SIZE = "size";
     private static final String VIEW_IN_PRICE_RANGE = "price";
+    private static final String VIEW_FILTERED = "filter";
+    private static final String VIEW_BY_NAME = "name";
 
     private static final int VIEW_PAGE_SIZE = 10;
+    private static final int VIEW_NAME_MATCH_LIMIT = 20;
 
     private final Scanner scanner;
     private final Inventory inventory;
@@ -39,36 +45,49 @@ public class ViewCommandHandler implements CommandHandler {
         System.out.println("\ttype - View all Products of the given AlcoholType.");
         System.out.println("\tsize - View all Products of the given BottleSize.");
         System.out.println("\tprice - View all Products with prices within the given price range.");
+        System.out.println("\tfilter - View all Products matching any combination of AlcoholType, BottleSize, price range and stock.");
+        System.out.println("\tname - View the Products best matching part of a name.");
         System.out.println("\tback - Return to main menu.");
         System.out.println("Please enter a command from the list above:");
         String menuSelection = scanner.nextLine();
 
+        // Views that are a ProductQuery are paged through the Inventory one
+        //   page at a time, rather than looked up whole.
+        ProductQuery query = null;
         Set<Product> products = new HashSet<>();
         if (menuSelection.equalsIgnoreCase(VIEW_ALL)) {
             // Display all the Products
-            products = inventory.getAllProducts();
+            query = new ProductQuery();
         } else if (menuSelection.equalsIgnoreCase(VIEW_BY_ALCHOL_TYPE)) {
-            products = getProductsForAlcoholType();
+            query = getAlcoholTypeQuery();
         } else if (menuSelection.equalsIgnoreCase(VIEW_BY_BOTTLE_SIZE)) {
-            products = getProductsForBottleSize();
+            query = getBottleSizeQuery();
         } else if (menuSelection.equalsIgnoreCase(VIEW_IN_PRICE_RANGE)) {
             products = getProductsInPriceRange();
+        } else if (menuSelection.equalsIgnoreCase(VIEW_FILTERED)) {
+            query = getFilteredQuery();
+        } else if (menuSelection.equalsIgnoreCase(VIEW_BY_NAME)) {
+            products = getProductsByName();
         } else if (menuSelection.equalsIgnoreCase(BACK_COMMAND)) {
             return true;
         } else {
             System.out.println("Unrecognized viewing command, '" + menuSelection + "'.");
         }
 
-        displayProducts(products);
+        if (query != null) {
+            displayProductPages(query);
+        } else {
+            displayProducts(products);
+        }
 
         return true;
     }
 
     /**
-     * Prompts user for AlcoholType and returns relevant Products.
-     * @return the Set of Products.
+     * Prompts user for AlcoholType and returns the query for its Products.
+     * @return the query, or null if the AlcoholType isn't recognized.
      */
-    private Set<Product> getProductsForAlcoholType() {
+    private ProductQuery getAlcoholTypeQuery() {
         // Display all the Products with the given AlcoholType
         System.out.println("\nAlcoholTypes: [BOURBON, GIN, MEZCAL, RUM, SCOTCH, TEQUILA, VODKA, WHISKY]");
         System.out.println("Please enter which AlcoholType to view:");
@@ -77,18 +96,18 @@ public class ViewCommandHandler implements CommandHandler {
         try {
             // Attempt to parse String input as AlcoholType enum
             Product.AlcoholType alcoholType = Product.AlcoholType.valueOf(userInput);
-            return inventory.getProductsByAlcoholType(alcoholType);
+            return new ProductQuery().withAlcoholTypes(alcoholType);
         } catch (Exception e) {
             System.out.println("Unrecognized AlcoholType, '" + userInput + "'");
-            return Collections.EMPTY_SET;
+            return null;
         }
     }
 
     /**
-     * Prompts user for BottleSize and returns relevant Products.
-     * @return the Set of Products.
+     * Prompts user for BottleSize and returns the query for its Products.
+     * @return the query, or null if the BottleSize isn't recognized.
      */
-    private Set<Product> getProductsForBottleSize() {
+    private ProductQuery getBottleSizeQuery() {
         // Display all the Products with the given BottleSize
         System.out.println("\nBottleSizes: [PINT, FIFTH, LITER, HANDLE]");
         System.out.println("Please enter which BottleSize to view:");
@@ -97,10 +116,10 @@ public class ViewCommandHandler implements CommandHandler {
         try {
             // Attempt to parse String input as BottleSize enum
             Product.BottleSize bottleSize = Product.BottleSize.valueOf(userInput);
-            return inventory.getProductsByBottleSize(bottleSize);
+            return new ProductQuery().withBottleSizes(bottleSize);
         } catch (Exception e) {
             System.out.println("Unrecognized BottleSize, '" + userInput + "'");
-            return Collections.EMPTY_SET;
+            return null;
         }
     }
 
@@ -125,6 +144,114 @@ public class ViewCommandHandler implements CommandHandler {
         return inventory.getProductsInPriceRange(min, max);
     }
 
+    /**
+     * Prompts user for each filter, any of which may be skipped, and
+     *   returns the query matching all of them.
+     * @return the query, or null if a filter isn't recognized.
+     */
+    private ProductQuery getFilteredQuery() {
+        ProductQuery query = new ProductQuery();
+
+        System.out.println("\nAlcoholTypes: [BOURBON, GIN, MEZCAL, RUM, SCOTCH, TEQUILA, VODKA, WHISKY]");
+        System.out.println("Please enter which AlcoholType to view, or press ENTER for any:");
+        String userInput = scanner.nextLine();
+        if (!userInput.isEmpty()) {
+            try {
+                query.withAlcoholTypes(Product.AlcoholType.valueOf(userInput));
+            } catch (Exception e) {
+                System.out.println("Unrecognized AlcoholType, '" + userInput + "'");
+                return null;
+            }
+        }
+
+        System.out.println("\nBottleSizes: [PINT, FIFTH, LITER, HANDLE]");
+        System.out.println("Please enter which BottleSize to view, or press ENTER for any:");
+        userInput = scanner.nextLine();
+        if (!userInput.isEmpty()) {
+            try {
+                query.withBottleSizes(Product.BottleSize.valueOf(userInput));
+            } catch (Exception e) {
+                System.out.println("Unrecognized BottleSize, '" + userInput + "'");
+                return null;
+            }
+        }
+
+        System.out.println("\nPlease enter the minimum price to view, or press ENTER for any:");
+        String minInput = scanner.nextLine();
+        System.out.println("Please enter the maximum price to view, or press ENTER for any:");
+        String maxInput = scanner.nextLine();
+        if (!minInput.isEmpty() || !maxInput.isEmpty()) {
+            try {
+                // A blank bound leaves that end of the range open
+                double min = minInput.isEmpty() ? Double.NEGATIVE_INFINITY : Double.parseDouble(minInput);
+                double max = maxInput.isEmpty() ? Double.POSITIVE_INFINITY : Double.parseDouble(maxInput);
+                if (min > max) {
+                    System.out.println("The minimum must be less than the maximum.");
+                    return null;
+                }
+                if (!minInput.isEmpty()) {
+                    query.withMinPrice(min);
+                }
+                if (!maxInput.isEmpty()) {
+                    query.withMaxPrice(max);
+                }
+            } catch (IllegalArgumentException e) {
+                // NaN parses, but isn't a price
+                System.out.println("Unrecognized price, '" + (minInput + " " + maxInput).trim() + "'");
+                return null;
+            }
+        }
+
+        System.out.println("\nOnly view Products that are in stock? [y/n]:");
+        if (scanner.nextLine().equalsIgnoreCase("y")) {
+            query.inStockOnly();
+        }
+
+        return query;
+    }
+
+    /**
+     * Prompts user for part of a name and returns the best matching Products.
+     * @return the Set of Products, best match first.
+     */
+    private Set<Product> getProductsByName() {
+        System.out.println("\nPlease enter part of the Product's name:");
+        String userInput = scanner.nextLine();
+
+        return new LinkedHashSet<>(inventory.findProductsByName(userInput, VIEW_NAME_MATCH_LIMIT));
+    }
+
+    /**
+     * Displays the Products matching the given query in pages of size
+     *   VIEW_PAGE_SIZE, in catalog order. Each page is looked up as it is
+     *   displayed, so a large catalog costs nothing until it is paged through.
+     * @param query the query.
+     */
+    private void displayProductPages(ProductQuery query) {
+        ProductPage page = inventory.getProductPage(query, null, VIEW_PAGE_SIZE);
+        if (page.getProducts().isEmpty()) {
+            System.out.println("\nNo Products found.");
+            return;
+        }
+
+        System.out.println("\nDisplaying selected Products...");
+        while (true) {
+            for (Product product : page.getProducts()) {
+                System.out.println("\t" + product.toString());
+            }
+            if (!page.hasNextPage()) {
+                System.out.println("Press ENTER to continue:");
+                scanner.nextLine();
+                return;
+            }
+            System.out.println("Press ENTER to continue, or enter back to stop:");
+            if (BACK_COMMAND.equalsIgnoreCase(scanner.nextLine())) {
+                return;
+            }
+            page = inventory.getProductPage(query, page.getNextCursor(), VIEW_PAGE_SIZE);
+        }
+    }
+
     /**
      * Displays the given Products in pages of size VIEW_PAGE_SIZE.
      * @param products the products to display.
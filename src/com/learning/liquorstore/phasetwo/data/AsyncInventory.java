@@ -0,0 +1,229 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An asynchronous front to an Inventory, so callers can have many requests
+ *   in flight instead of waiting on each in turn, and so a crowd of
+ *   requests for the same hot Product costs about as much as one.
+ *
+ *   Quantity lookups of a Product that arrive while a lookup of it is
+ *   still queued share that lookup. A lookup is dequeued before it reads,
+ *   so every caller gets a quantity read after it asked.
+ *
+ *   Quantity changes are queued and applied by one drain at a time. Each
+ *   drain nets the changes queued for each Product into a single delta,
+ *   and applies every Product's delta as one basket, which is journaled
+ *   with a single fsync. Changes that arrive while a drain is applying
+ *   wait for the next, so the busier the Inventory, the larger the
+ *   batches. Changes to the same Product in one drain are concurrent, so
+ *   they may be applied in any order. When a Product's net delta would
+ *   take its quantity negative, its changes are applied one at a time in
+ *   the order they arrived instead, so each is accepted or refused on its
+ *   own, just as if it had been made directly.
+ */
+public class AsyncInventory {
+
+    private final Inventory inventory;
+    private final Executor executor;
+
+    // The queued lookup of each Product, which later lookups join
+    private final Map<String, CompletableFuture<Integer>> queuedLookups = new ConcurrentHashMap<>();
+
+    // Quantity changes waiting for the next drain, in arrival order
+    private final Queue<QuantityChange> queuedChanges = new ConcurrentLinkedQueue<>();
+    // Whether a drain is queued or running. Only one runs at a time.
+    private final AtomicBoolean isDraining = new AtomicBoolean();
+
+    // Lookups answered by joining another's
+    private final LongAdder coalescedLookupCount;
+    // Drains, each applying one basket
+    private final LongAdder changeBatchCount;
+    // Changes applied one at a time, after their net delta was refused
+    private final LongAdder unbatchedChangeCount;
+
+    /**
+     * Constructor for AsyncInventory. Requests are carried out on the
+     *   common ForkJoinPool.
+     * @param inventory the Inventory.
+     */
+    public AsyncInventory(Inventory inventory) {
+        this(inventory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for AsyncInventory that carries out requests on the given
+     *   Executor, e.g. one whose threads may block on the journal's fsync.
+     * @param inventory the Inventory.
+     * @param executor runs the lookups and drains.
+     */
+    public AsyncInventory(Inventory inventory, Executor executor) {
+        this.inventory = inventory;
+        this.executor = executor;
+        this.coalescedLookupCount = inventory.getMetrics().counter("async.coalescedLookups");
+        this.changeBatchCount = inventory.getMetrics().counter("async.changeBatches");
+        this.unbatchedChangeCount = inventory.getMetrics().counter("async.unbatchedChanges");
+    }
+
+    /**
+     * Lookup the quantity of a given Product in the Inventory, sharing the
+     *   lookup with any other caller asking for the same Product meanwhile.
+     * @param productId the Id of the Product to lookup.
+     * @return the Product's quantity, once read.
+     */
+    public CompletableFuture<Integer> getQtyForProduct(String productId) {
+        CompletableFuture<Integer> newLookup = new CompletableFuture<>();
+        CompletableFuture<Integer> lookup = queuedLookups.putIfAbsent(productId, newLookup);
+        if (lookup != null) {
+            coalescedLookupCount.increment();
+            return lookup;
+        }
+
+        executor.execute(() -> {
+            // Callers from here on need a read that starts after they asked
+            queuedLookups.remove(productId, newLookup);
+            try {
+                newLookup.complete(inventory.getQtyForProduct(productId));
+            } catch (RuntimeException e) {
+                newLookup.completeExceptionally(e);
+            }
+        });
+        return newLookup;
+    }
+
+    /**
+     * Add to the quantity of the Product with the given productId in the
+     *   Inventory, in the next batch.
+     * @param productId the Id of the Product to add.
+     * @param quantity the number of units to add to the Inventory.
+     * @return the success of the add operation, once applied.
+     * @throws IllegalArgumentException - if quantity is negative.
+     */
+    public CompletableFuture<Boolean> addQtyForProduct(String productId, int quantity) {
+        checkQuantity(quantity);
+        return queueChange(productId, quantity);
+    }
+
+    /**
+     * Remove from the quantity of the Product with the given productId in
+     *   the Inventory, in the next batch.
+     * @param productId the Id of the Product to remove.
+     * @param quantity the number of units to remove from the Inventory.
+     * @return the success of the remove operation, once applied.
+     * @throws IllegalArgumentException - if quantity is negative.
+     */
+    public CompletableFuture<Boolean> removeProducts(String productId, int quantity) {
+        checkQuantity(quantity);
+        return queueChange(productId, -quantity);
+    }
+
+    private static void checkQuantity(int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative, was " + quantity);
+        }
+    }
+
+    private CompletableFuture<Boolean> queueChange(String productId, int delta) {
+        QuantityChange change = new QuantityChange(productId, delta);
+        queuedChanges.add(change);
+        if (isDraining.compareAndSet(false, true)) {
+            executor.execute(this::drainChanges);
+        }
+        return change.result;
+    }
+
+    /**
+     * Applies queued changes until the queue is empty.
+     */
+    private void drainChanges() {
+        while (true) {
+            Map<String, List<QuantityChange>> changesByProduct = new LinkedHashMap<>();
+            QuantityChange change;
+            while ((change = queuedChanges.poll()) != null) {
+                changesByProduct.computeIfAbsent(change.productId, productId -> new ArrayList<>()).add(change);
+            }
+            if (!changesByProduct.isEmpty()) {
+                try {
+                    applyChanges(changesByProduct);
+                } catch (RuntimeException e) {
+                    for (List<QuantityChange> changes : changesByProduct.values()) {
+                        for (QuantityChange failedChange : changes) {
+                            failedChange.result.completeExceptionally(e);
+                        }
+                    }
+                }
+                continue;
+            }
+
+            // A change queued after the poll found nothing either sees
+            //   isDraining false and starts a drain, or is taken here
+            isDraining.set(false);
+            if (queuedChanges.isEmpty() || !isDraining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void applyChanges(Map<String, List<QuantityChange>> changesByProduct) {
+        changeBatchCount.increment();
+        QuantityDeltas netDeltas = new QuantityDeltas(changesByProduct.size());
+        List<List<QuantityChange>> lines = new ArrayList<>(changesByProduct.size());
+        for (Map.Entry<String, List<QuantityChange>> productChanges : changesByProduct.entrySet()) {
+            long netDelta = 0;
+            for (QuantityChange change : productChanges.getValue()) {
+                netDelta += change.delta;
+            }
+            if (netDelta < -Integer.MAX_VALUE || netDelta > Integer.MAX_VALUE) {
+                applyOneAtATime(productChanges.getValue());
+                continue;
+            }
+            netDeltas.add(productChanges.getKey(), (int) netDelta);
+            lines.add(productChanges.getValue());
+        }
+
+        BatchResult batchResult = inventory.applyQtyDeltas(netDeltas, false);
+        for (int line = 0; line < lines.size(); line++) {
+            BatchResult.LineStatus status = batchResult.getStatus(line);
+            if (status == BatchResult.LineStatus.INSUFFICIENT_QUANTITY) {
+                applyOneAtATime(lines.get(line));
+                continue;
+            }
+            for (QuantityChange change : lines.get(line)) {
+                change.result.complete(status == BatchResult.LineStatus.APPLIED);
+            }
+        }
+    }
+
+    private void applyOneAtATime(List<QuantityChange> changes) {
+        unbatchedChangeCount.add(changes.size());
+        for (QuantityChange change : changes) {
+            change.result.complete(change.delta >= 0
+                    ? inventory.addQtyForProduct(change.productId, change.delta)
+                    : inventory.removeProducts(change.productId, -change.delta));
+        }
+    }
+
+    private static class QuantityChange {
+
+        private final String productId;
+        private final int delta;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        QuantityChange(String productId, int delta) {
+            this.productId = productId;
+            this.delta = delta;
+        }
+    }
+
+}
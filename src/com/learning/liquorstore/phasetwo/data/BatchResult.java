@@ -0,0 +1,70 @@
+package com.learning.liquorstore.phasetwo.data;
+
+/**
+ * The outcome of each line of a QuantityDeltas basket or a PriceSheet,
+ *   stored as one byte per line.
+ */
+public class BatchResult {
+
+    public enum LineStatus {
+        APPLIED, UNKNOWN_PRODUCT, INSUFFICIENT_QUANTITY,
+        // The line was fine, but another line failed an all-or-nothing batch
+        NOT_APPLIED
+    }
+
+    private static final LineStatus[] STATUSES = LineStatus.values();
+
+    private final byte[] statuses;
+    private int failedLineCount;
+
+    BatchResult(int lineCount) {
+        statuses = new byte[lineCount];
+    }
+
+    void setStatus(int line, LineStatus status) {
+        LineStatus previous = STATUSES[statuses[line]];
+        if (previous != LineStatus.APPLIED) {
+            failedLineCount--;
+        }
+        if (status != LineStatus.APPLIED) {
+            failedLineCount++;
+        }
+        statuses[line] = (byte) status.ordinal();
+    }
+
+    /**
+     * Marks every line that was applied as NOT_APPLIED.
+     */
+    void rejectAll() {
+        for (int line = 0; line < statuses.length; line++) {
+            if (statuses[line] == LineStatus.APPLIED.ordinal()) {
+                setStatus(line, LineStatus.NOT_APPLIED);
+            }
+        }
+    }
+
+    public LineStatus getStatus(int line) {
+        return STATUSES[statuses[line]];
+    }
+
+    public boolean isApplied(int line) {
+        return statuses[line] == LineStatus.APPLIED.ordinal();
+    }
+
+    /**
+     * Whether every line was applied.
+     * @return true if no line failed.
+     */
+    public boolean isFullyApplied() {
+        return failedLineCount == 0;
+    }
+
+    public int getFailedLineCount() {
+        return failedLineCount;
+    }
+
+    public int getLineCount() {
+        return statuses.length;
+    }
+
+}
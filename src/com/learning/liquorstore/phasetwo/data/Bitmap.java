@@ -0,0 +1,133 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A growable bitmap that can be read while it is written. Words are
+ *   stored in fixed size chunks, and chunks that haven't been written yet
+ *   read as zero.
+ *
+ *   As with QuantityTable, the bitmap can be frozen in O(1). Freezing
+ *   keeps the current array of chunks, and each chunk still in it is
+ *   copied on its next write, so the frozen bitmap never changes. Freezing
+ *   must not overlap any write.
+ */
+class Bitmap {
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile AtomicLongArray[] chunks;
+
+    // The chunks as of the latest freeze. A chunk that is still in it is
+    //   shared with a frozen bitmap, and must be copied before it is written.
+    private volatile AtomicLongArray[] frozenChunks;
+
+    Bitmap() {
+        this(new AtomicLongArray[0]);
+    }
+
+    /**
+     * Constructor for a frozen bitmap. Its chunks are all frozen, so
+     *   writing to it would only copy them.
+     */
+    private Bitmap(AtomicLongArray[] frozenChunks) {
+        this.chunks = frozenChunks;
+        this.frozenChunks = frozenChunks;
+    }
+
+    long word(int wordIndex) {
+        AtomicLongArray[] currentChunks = chunks;
+        int chunkIndex = wordIndex >>> CHUNK_SHIFT;
+        return chunkIndex < currentChunks.length ? currentChunks[chunkIndex].get(wordIndex & CHUNK_MASK) : 0;
+    }
+
+    /**
+     * Sets or clears the bit at the given index.
+     * @param index the index.
+     * @param value whether to set the bit.
+     * @return whether the bit changed.
+     */
+    boolean set(int index, boolean value) {
+        int wordIndex = index >>> 6;
+        long bit = 1L << index;
+        AtomicLongArray chunk = writableChunk(wordIndex >>> CHUNK_SHIFT);
+        int wordInChunk = wordIndex & CHUNK_MASK;
+
+        long word;
+        long updatedWord;
+        do {
+            word = chunk.get(wordInChunk);
+            updatedWord = value ? word | bit : word & ~bit;
+            if (updatedWord == word) {
+                return false;
+            }
+        } while (!chunk.compareAndSet(wordInChunk, word, updatedWord));
+        return true;
+    }
+
+    boolean get(int index) {
+        return (word(index >>> 6) & 1L << index) != 0;
+    }
+
+    /**
+     * Freezes the bitmap as it is now. Must not be called while any write
+     *   is in progress.
+     * @return the frozen bitmap, which never changes.
+     */
+    Bitmap freeze() {
+        AtomicLongArray[] currentChunks = chunks;
+        frozenChunks = currentChunks;
+        return new Bitmap(currentChunks);
+    }
+
+    private AtomicLongArray writableChunk(int chunkIndex) {
+        AtomicLongArray[] currentChunks = chunks;
+        if (chunkIndex >= currentChunks.length) {
+            return grow(chunkIndex);
+        }
+        AtomicLongArray chunk = currentChunks[chunkIndex];
+        AtomicLongArray[] currentFrozenChunks = frozenChunks;
+        if (chunkIndex < currentFrozenChunks.length && currentFrozenChunks[chunkIndex] == chunk) {
+            return copyOnWrite(chunkIndex);
+        }
+        return chunk;
+    }
+
+    private synchronized AtomicLongArray copyOnWrite(int chunkIndex) {
+        AtomicLongArray[] currentChunks = chunks;
+        AtomicLongArray chunk = currentChunks[chunkIndex];
+        if (frozenChunks[chunkIndex] != chunk) {
+            // Another writer copied it first
+            return chunk;
+        }
+        AtomicLongArray copiedChunk = new AtomicLongArray(CHUNK_SIZE);
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            copiedChunk.setPlain(i, chunk.getPlain(i));
+        }
+        AtomicLongArray[] updatedChunks = currentChunks.clone();
+        updatedChunks[chunkIndex] = copiedChunk;
+        chunks = updatedChunks;
+        return copiedChunk;
+    }
+
+    private synchronized AtomicLongArray grow(int chunkIndex) {
+        AtomicLongArray[] currentChunks = chunks;
+        if (chunkIndex >= currentChunks.length) {
+            int chunkCount = Math.max(chunkIndex + 1, currentChunks.length + (currentChunks.length >> 1));
+            AtomicLongArray[] grownChunks = Arrays.copyOf(currentChunks, chunkCount);
+            for (int i = currentChunks.length; i < chunkCount; i++) {
+                grownChunks[i] = new AtomicLongArray(CHUNK_SIZE);
+            }
+            chunks = grownChunks;
+            currentChunks = grownChunks;
+        }
+        // A chunk that existed before may have been frozen since
+        return chunkIndex < frozenChunks.length && frozenChunks[chunkIndex] == currentChunks[chunkIndex]
+                ? copyOnWrite(chunkIndex)
+                : currentChunks[chunkIndex];
+    }
+
+}
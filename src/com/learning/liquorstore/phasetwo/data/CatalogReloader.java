@@ -0,0 +1,169 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.util.Logger;
+import com.learning.liquorstore.phasetwo.util.ProductDataCSVReader;
+
+/**
+ * Keeps an Inventory's catalog in step with the product CSV file while the
+ *   store runs. Whenever the file changes, it is read again and compared
+ *   to the catalog, and only the differences are applied: new Products are
+ *   added, changed ones updated all at once, and ones no longer in the
+ *   file are discontinued. Nothing is rebuilt, and every change is made under
+ *   the same shared lock as a sale, so readers never wait on a reload.
+ *
+ *   Products are never removed from an Inventory, since their indexes are
+ *   dense and the journal and snapshots refer to them, so a Product
+ *   dropped from the file is discontinued, and reinstated if it returns.
+ */
+public class CatalogReloader implements Closeable {
+
+    private final Inventory inventory;
+    private final Path csvPath;
+
+    private FileWatcher fileWatcher;
+
+    /**
+     * Constructor for CatalogReloader.
+     * @param inventory the Inventory to keep in step.
+     * @param csvPath the path of the product CSV file.
+     */
+    public CatalogReloader(Inventory inventory, String csvPath) {
+        this.inventory = inventory;
+        this.csvPath = Paths.get(csvPath).toAbsolutePath();
+    }
+
+    /**
+     * Reconciles the catalog with the file, then starts watching the file
+     *   for changes on a daemon thread.
+     * @throws IOException - if the file's directory can't be watched.
+     */
+    public synchronized void start() throws IOException {
+        if (fileWatcher != null) {
+            return;
+        }
+        reloadQuietly();
+        fileWatcher = new FileWatcher(csvPath, "catalog-reloader", this::reloadQuietly);
+    }
+
+    /**
+     * Reads the file and applies whatever differs from the catalog.
+     * @return how many Products were changed, by kind of change.
+     * @throws IOException - if the file can't be read.
+     * @throws ParseException - if the file can't be parsed, in which case
+     *   nothing is changed.
+     */
+    public synchronized ReloadResult reload() throws IOException, ParseException {
+        // Parse the whole file before changing anything, so a half written
+        //   file never discontinues the Products it hasn't reached yet
+        Set<Product> fileProducts = new LinkedHashSet<>();
+        ProductDataCSVReader.loadProductDataFromCSV(Product.class, csvPath.toString(), fileProducts::add);
+
+        ProductCatalog productCatalog = inventory.getProductCatalog();
+        ReloadResult result = new ReloadResult();
+        List<Product> updatedProducts = new ArrayList<>();
+        for (Product fileProduct : fileProducts) {
+            Product product = productCatalog.getProduct(fileProduct.getProductId());
+            if (product == null) {
+                inventory.addNewProduct(fileProduct);
+                result.addedCount++;
+                continue;
+            }
+            if (inventory.isDiscontinued(fileProduct.getProductId())) {
+                inventory.reinstateProduct(fileProduct.getProductId());
+                result.reinstatedCount++;
+            }
+            if (!hasSameValues(product, fileProduct)) {
+                updatedProducts.add(fileProduct);
+            }
+        }
+        result.updatedCount = inventory.updateProducts(updatedProducts);
+
+        int productCount = productCatalog.size();
+        for (int index = 0; index < productCount; index++) {
+            Product product = productCatalog.getProduct(index);
+            if (!fileProducts.contains(product) && !inventory.isDiscontinued(product.getProductId())) {
+                inventory.discontinueProduct(product.getProductId());
+                result.discontinuedCount++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stops watching the file.
+     * @throws IOException - if the watch service can't be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (fileWatcher != null) {
+            fileWatcher.close();
+            fileWatcher = null;
+        }
+    }
+
+    /**
+     * Reloads, logging rather than throwing if the file can't be read. A
+     *   file caught part way through being written is read again on its
+     *   next change.
+     */
+    private void reloadQuietly() {
+        try {
+            ReloadResult result = reload();
+            Logger.debug("Reloaded %s: %s", csvPath.getFileName(), result);
+        } catch (IOException | ParseException e) {
+            Logger.debug("Failed to reload %s: %s", csvPath.getFileName(), e.getMessage());
+        }
+    }
+
+    private static boolean hasSameValues(Product product, Product fileProduct) {
+        return product.getName().equals(fileProduct.getName())
+                && product.getAlcoholType() == fileProduct.getAlcoholType()
+                && product.getBottleSize() == fileProduct.getBottleSize()
+                && product.getPriceInCents() == fileProduct.getPriceInCents();
+    }
+
+    /**
+     * How many Products a reload changed, by kind of change.
+     */
+    public static class ReloadResult {
+
+        private int addedCount;
+        private int updatedCount;
+        private int discontinuedCount;
+        private int reinstatedCount;
+
+        public int getAddedCount() {
+            return addedCount;
+        }
+
+        public int getUpdatedCount() {
+            return updatedCount;
+        }
+
+        public int getDiscontinuedCount() {
+            return discontinuedCount;
+        }
+
+        public int getReinstatedCount() {
+            return reinstatedCount;
+        }
+
+        @Override
+        public String toString() {
+            return addedCount + " added, " + updatedCount + " updated, " + discontinuedCount + " discontinued, "
+                    + reinstatedCount + " reinstated";
+        }
+    }
+
+}
@@ -0,0 +1,756 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+
+/**
+ * A ProductCatalog that stores Products column by column instead of as
+ *   one object each. AlcoholType and BottleSize are kept as ordinal bytes,
+ *   prices as cents, and productIds and names as UTF-8 bytes packed end to
+ *   end in two byte arenas. A productId hash table holds nothing but int
+ *   indexes. The Products handed out are lightweight views that read their
+ *   values from the columns they were created from when asked.
+ *
+ * Writes are serialized. Reads never lock: every column is written before
+ *   the size is bumped, and grown columns are published before any row is
+ *   written to them, so a reader that reads the size first always sees
+ *   complete rows. Rows already published are never written again:
+ *   updateProduct, updatePrice and updatePrices publish a new Columns,
+ *   sharing every column they don't change, so a view or Reader created
+ *   from the old Columns keeps its values, and the prices and the price
+ *   index over them always change together. The only write a shared
+ *   column sees is a new row, past the size of any older reader.
+ *
+ * The prices and the price index are persistent, so a new Columns for
+ *   one reprice copies only the O(log n) nodes on the paths to its row
+ *   and its price, not the columns.
+ */
+public class ColumnarProductCatalog implements ProductCatalog {
+
+    private static final AlcoholType[] ALCOHOL_TYPES = AlcoholType.values();
+    private static final BottleSize[] BOTTLE_SIZES = BottleSize.values();
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_ARENA_CAPACITY = 16 * 1024;
+
+    // Each slot of the productId table holds index + 1, so 0 means empty
+    private static final int EMPTY_SLOT = 0;
+
+    private volatile Columns columns;
+
+    // The number of Products. Written after every column of a new row.
+    private volatile int size;
+
+    /**
+     * Constructor for ColumnarProductCatalog.
+     */
+    public ColumnarProductCatalog() {
+        columns = new Columns(INITIAL_CAPACITY, INITIAL_ARENA_CAPACITY, INITIAL_ARENA_CAPACITY);
+    }
+
+    /**
+     * Constructor used when reading a snapshot. Adopts the given columns
+     *   and price index as they are.
+     */
+    private ColumnarProductCatalog(Columns columns, int size) {
+        this.columns = columns;
+        this.size = size;
+    }
+
+    @Override
+    public synchronized int addProduct(Product product) {
+        // Don't add the same Product twice
+        if (indexOf(product.getProductId()) >= 0) {
+            return -1;
+        }
+
+        byte[] idBytes = product.getProductId().getBytes(StandardCharsets.UTF_8);
+        byte[] nameBytes = product.getName().getBytes(StandardCharsets.UTF_8);
+
+        int index = size;
+        Columns cols = columns;
+        int idStart = cols.idStart(index);
+        int nameStart = cols.nameStart(index);
+        if (index == cols.capacity()
+                || idStart + idBytes.length > cols.idArena.length
+                || nameStart + nameBytes.length > cols.nameArena.length) {
+            cols = cols.grow(index, idStart + idBytes.length, nameStart + nameBytes.length);
+            columns = cols;
+        }
+
+        cols.alcoholTypes[index] = (byte) product.getAlcoholType().ordinal();
+        cols.bottleSizes[index] = (byte) product.getBottleSize().ordinal();
+        PersistentArray prices = cols.prices.appendLong(index, product.getPriceInCents());
+        System.arraycopy(idBytes, 0, cols.idArena, idStart, idBytes.length);
+        cols.idEnds[index] = idStart + idBytes.length;
+        System.arraycopy(nameBytes, 0, cols.nameArena, nameStart, nameBytes.length);
+        cols.nameEnds[index] = nameStart + nameBytes.length;
+        cols.insertIntoIdTable(index);
+        columns = cols.withPrices(prices, cols.indexesByPrice.with(product.getPriceInCents(), index));
+
+        // Publish the row
+        size = index + 1;
+
+        return index;
+    }
+
+    @Override
+    public synchronized void updateProducts(int[] indexes, Product[] products) {
+        // Each column is copied on its first change, and shared if it has none
+        Columns cols = columns;
+        byte[] alcoholTypes = cols.alcoholTypes;
+        byte[] bottleSizes = cols.bottleSizes;
+        Map<Integer, String> renamedNames = cols.renamedNames;
+        int[] repricedIndexes = new int[indexes.length];
+        long[] pricesInCents = new long[indexes.length];
+        int repricedCount = 0;
+
+        for (int i = 0; i < indexes.length; i++) {
+            int index = indexes[i];
+            Product product = products[i];
+
+            byte alcoholType = (byte) product.getAlcoholType().ordinal();
+            if (alcoholTypes[index] != alcoholType) {
+                if (alcoholTypes == cols.alcoholTypes) {
+                    alcoholTypes = alcoholTypes.clone();
+                }
+                alcoholTypes[index] = alcoholType;
+            }
+            byte bottleSize = (byte) product.getBottleSize().ordinal();
+            if (bottleSizes[index] != bottleSize) {
+                if (bottleSizes == cols.bottleSizes) {
+                    bottleSizes = bottleSizes.clone();
+                }
+                bottleSizes[index] = bottleSize;
+            }
+            if (!product.getName().equals(cols.name(index))) {
+                if (renamedNames == cols.renamedNames) {
+                    renamedNames = new HashMap<>(renamedNames);
+                }
+                if (product.getName().equals(cols.packedName(index))) {
+                    renamedNames.remove(index);
+                } else {
+                    renamedNames.put(index, product.getName());
+                }
+            }
+            if (cols.prices.getLong(index) != product.getPriceInCents()) {
+                repricedIndexes[repricedCount] = index;
+                pricesInCents[repricedCount] = product.getPriceInCents();
+                repricedCount++;
+            }
+        }
+
+        Columns updatedCols = cols.withRows(alcoholTypes, bottleSizes, renamedNames);
+        if (repricedCount > 0) {
+            updatedCols = withPrices(updatedCols, Arrays.copyOf(repricedIndexes, repricedCount),
+                    Arrays.copyOf(pricesInCents, repricedCount));
+        }
+        columns = updatedCols;
+    }
+
+    @Override
+    public synchronized long updatePrice(int index, long priceInCents) {
+        Columns cols = columns;
+        long oldPriceInCents = cols.prices.getLong(index);
+        if (oldPriceInCents != priceInCents) {
+            columns = cols.withPrices(cols.prices.withLong(index, priceInCents),
+                    cols.indexesByPrice.moved(index, oldPriceInCents, priceInCents));
+        }
+        return oldPriceInCents;
+    }
+
+    @Override
+    public synchronized void updatePrices(int[] indexes, long[] pricesInCents) {
+        columns = withPrices(columns, indexes, pricesInCents);
+    }
+
+    /**
+     * Returns a copy of the given Columns with the given prices, and the
+     *   price index moved to match. Where an index is given more than once
+     *   the last price wins.
+     */
+    private static Columns withPrices(Columns cols, int[] indexes, long[] pricesInCents) {
+        // Keep the last change to each index that changes its price
+        BitSet isChanged = new BitSet();
+        int[] changedIndexes = new int[indexes.length];
+        long[] oldPricesInCents = new long[indexes.length];
+        long[] newPricesInCents = new long[indexes.length];
+        int changedCount = 0;
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            int index = indexes[i];
+            if (isChanged.get(index)) {
+                continue;
+            }
+            isChanged.set(index);
+            long oldPriceInCents = cols.prices.getLong(index);
+            if (oldPriceInCents != pricesInCents[i]) {
+                changedIndexes[changedCount] = index;
+                oldPricesInCents[changedCount] = oldPriceInCents;
+                newPricesInCents[changedCount] = pricesInCents[i];
+                changedCount++;
+            }
+        }
+        if (changedCount == 0) {
+            return cols;
+        }
+
+        changedIndexes = Arrays.copyOf(changedIndexes, changedCount);
+        newPricesInCents = Arrays.copyOf(newPricesInCents, changedCount);
+        return cols.withPrices(cols.prices.withLongs(changedIndexes, newPricesInCents),
+                cols.indexesByPrice.movedAll(changedIndexes, Arrays.copyOf(oldPricesInCents, changedCount),
+                        newPricesInCents));
+    }
+
+    @Override
+    public int indexOf(String productId) {
+        // Read the size before the columns, see the class comment
+        int productCount = size;
+        Columns cols = columns;
+
+        int[] idTable = cols.idTable;
+        int mask = idTable.length - 1;
+        int slot = hashProductId(productId) & mask;
+        while (true) {
+            int entry = idTable[slot];
+            if (entry == EMPTY_SLOT) {
+                return -1;
+            }
+            int index = entry - 1;
+            if (index < productCount && cols.productIdEquals(index, productId)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public Product getProduct(int index) {
+        return new ProductView(columns, index);
+    }
+
+    @Override
+    public long getPriceInCents(int index) {
+        return columns.prices.getLong(index);
+    }
+
+    @Override
+    public Reader getReader() {
+        Columns cols = columns;
+        return new Reader() {
+            @Override
+            public Product getProduct(int index) {
+                return new ProductView(cols, index);
+            }
+
+            @Override
+            public long getPriceInCents(int index) {
+                return cols.prices.getLong(index);
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Product> getAllProducts() {
+        int productCount = size;
+        Columns cols = columns;
+        Set<Product> allProducts = new LinkedHashSet<>();
+        for (int index = 0; index < productCount; index++) {
+            allProducts.add(new ProductView(cols, index));
+        }
+        return allProducts;
+    }
+
+    @Override
+    public Set<Product> getProductsByAlcoholType(AlcoholType alcoholType) {
+        // Scanning a byte column is cheap enough that no per type index is kept
+        int productCount = size;
+        Columns cols = columns;
+        byte ordinal = (byte) alcoholType.ordinal();
+
+        Set<Product> products = new LinkedHashSet<>();
+        for (int index = 0; index < productCount; index++) {
+            if (cols.alcoholTypes[index] == ordinal) {
+                products.add(new ProductView(cols, index));
+            }
+        }
+        return products;
+    }
+
+    @Override
+    public Set<Product> getProductsByBottleSize(BottleSize bottleSize) {
+        int productCount = size;
+        Columns cols = columns;
+        byte ordinal = (byte) bottleSize.ordinal();
+
+        Set<Product> products = new LinkedHashSet<>();
+        for (int index = 0; index < productCount; index++) {
+            if (cols.bottleSizes[index] == ordinal) {
+                products.add(new ProductView(cols, index));
+            }
+        }
+        return products;
+    }
+
+    @Override
+    public Set<Product> getProductsInPriceRange(long minCents, long maxCents) {
+        Columns cols = columns;
+        Set<Product> productsInPriceRange = new LinkedHashSet<>();
+        cols.indexesByPrice.forEachInRange(minCents, maxCents,
+                index -> productsInPriceRange.add(new ProductView(cols, index)));
+        return productsInPriceRange;
+    }
+
+    /**
+     * Writes the first productCount Products' columns, along with the
+     *   productId table and the price index, in the layout readFrom expects.
+     * @param out where to write.
+     * @param productCount how many Products to write, at most size.
+     * @throws IOException - if writing fails.
+     */
+    synchronized void writeTo(DataOutputStream out, int productCount) throws IOException {
+        Columns cols = columns;
+
+        out.writeInt(productCount);
+        out.write(cols.alcoholTypes, 0, productCount);
+        out.write(cols.bottleSizes, 0, productCount);
+        for (int index = 0; index < productCount; index++) {
+            out.writeLong(cols.prices.getLong(index));
+        }
+        writeInts(out, cols.idEnds, productCount);
+        int idArenaLength = cols.idStart(productCount);
+        out.writeInt(idArenaLength);
+        out.write(cols.idArena, 0, idArenaLength);
+        writeNames(out, cols, productCount);
+
+        // The prebuilt indexes. The productId table can't drop entries
+        //   without breaking its probe chains, so when writing fewer than
+        //   every Product it is left for readFrom to rebuild.
+        if (productCount == size) {
+            out.writeInt(cols.idTable.length);
+            writeInts(out, cols.idTable, cols.idTable.length);
+        } else {
+            out.writeInt(0);
+        }
+
+        // The price index, as the indexes below productCount at each price
+        long[] pricesInCents = new long[productCount];
+        int[] indexes = new int[productCount];
+        int[] entryCount = {0};
+        cols.indexesByPrice.forEach((priceInCents, index) -> {
+            if (index < productCount) {
+                pricesInCents[entryCount[0]] = priceInCents;
+                indexes[entryCount[0]++] = index;
+            }
+        });
+        int priceCount = 0;
+        for (int i = 0; i < entryCount[0]; i++) {
+            if (i == 0 || pricesInCents[i] != pricesInCents[i - 1]) {
+                priceCount++;
+            }
+        }
+        out.writeInt(priceCount);
+        int from = 0;
+        while (from < entryCount[0]) {
+            int to = from + 1;
+            while (to < entryCount[0] && pricesInCents[to] == pricesInCents[from]) {
+                to++;
+            }
+            out.writeLong(pricesInCents[from]);
+            out.writeInt(to - from);
+            for (int i = from; i < to; i++) {
+                out.writeInt(indexes[i]);
+            }
+            from = to;
+        }
+    }
+
+    /**
+     * Writes the name ends and arena of the first productCount Products,
+     *   packing in any renamed names.
+     */
+    private static void writeNames(DataOutputStream out, Columns cols, int productCount) throws IOException {
+        if (cols.renamedNames.isEmpty()) {
+            writeInts(out, cols.nameEnds, productCount);
+            int nameArenaLength = cols.nameStart(productCount);
+            out.writeInt(nameArenaLength);
+            out.write(cols.nameArena, 0, nameArenaLength);
+            return;
+        }
+
+        ByteArrayOutputStream nameArena = new ByteArrayOutputStream(cols.nameStart(productCount));
+        int[] nameEnds = new int[productCount];
+        for (int index = 0; index < productCount; index++) {
+            String renamedName = cols.renamedNames.get(index);
+            if (renamedName == null) {
+                nameArena.write(cols.nameArena, cols.nameStart(index), cols.nameEnds[index] - cols.nameStart(index));
+            } else {
+                nameArena.write(renamedName.getBytes(StandardCharsets.UTF_8));
+            }
+            nameEnds[index] = nameArena.size();
+        }
+        writeInts(out, nameEnds, productCount);
+        out.writeInt(nameArena.size());
+        nameArena.writeTo(out);
+    }
+
+    /**
+     * Reads a catalog written by writeTo. The columns and indexes are
+     *   copied out in bulk, nothing is parsed or rehashed.
+     * @param in the snapshot, positioned at the catalog.
+     * @return the catalog.
+     */
+    static ColumnarProductCatalog readFrom(ByteBuffer in) {
+        int productCount = in.getInt();
+        int capacity = Math.max(productCount, INITIAL_CAPACITY);
+
+        byte[] alcoholTypes = readBytes(in, productCount, capacity);
+        byte[] bottleSizes = readBytes(in, productCount, capacity);
+        long[] pricesInCents = new long[productCount];
+        in.asLongBuffer().get(pricesInCents, 0, productCount);
+        in.position(in.position() + productCount * Long.BYTES);
+        int[] idEnds = readInts(in, productCount, capacity);
+        int idArenaLength = in.getInt();
+        byte[] idArena = readBytes(in, idArenaLength, idArenaLength);
+        int[] nameEnds = readInts(in, productCount, capacity);
+        int nameArenaLength = in.getInt();
+        byte[] nameArena = readBytes(in, nameArenaLength, nameArenaLength);
+
+        int idTableLength = in.getInt();
+        int[] idTable = readInts(in, idTableLength, idTableLength);
+
+        // The prices are in order, but older snapshots may not have the
+        //   indexes at each price in order
+        long[] indexPricesInCents = new long[productCount];
+        int[] indexes = new int[productCount];
+        int entryCount = 0;
+        int priceCount = in.getInt();
+        for (int i = 0; i < priceCount; i++) {
+            long priceInCents = in.getLong();
+            int indexCount = in.getInt();
+            in.asIntBuffer().get(indexes, entryCount, indexCount);
+            in.position(in.position() + indexCount * Integer.BYTES);
+            Arrays.sort(indexes, entryCount, entryCount + indexCount);
+            Arrays.fill(indexPricesInCents, entryCount, entryCount + indexCount, priceInCents);
+            entryCount += indexCount;
+        }
+
+        Columns cols = new Columns(alcoholTypes, bottleSizes, PersistentArray.ofLongs(pricesInCents, productCount),
+                idEnds, idArena, nameEnds, nameArena, idTable,
+                PriceIndex.build(indexPricesInCents, indexes, entryCount), productCount);
+        return new ColumnarProductCatalog(cols, productCount);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer in, int count, int capacity) {
+        byte[] values = new byte[capacity];
+        in.get(values, 0, count);
+        return values;
+    }
+
+    private static int[] readInts(ByteBuffer in, int count, int capacity) {
+        int[] values = new int[capacity];
+        in.asIntBuffer().get(values, 0, count);
+        in.position(in.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * Hashes a productId the same way Columns hashes its UTF-8 bytes,
+     *   without encoding it when it's plain ASCII.
+     */
+    private static int hashProductId(String productId) {
+        int hash = 0;
+        for (int i = 0; i < productId.length(); i++) {
+            char c = productId.charAt(i);
+            if (c >= 0x80) {
+                byte[] idBytes = productId.getBytes(StandardCharsets.UTF_8);
+                return hashBytes(idBytes, 0, idBytes.length);
+            }
+            hash = 31 * hash + c;
+        }
+        return spread(hash);
+    }
+
+    private static int hashBytes(byte[] bytes, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return spread(hash);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Every column, sized together, and the price index. Growing creates a
+     *   new Columns so a reader holding the old one still sees consistent
+     *   arrays. The prices are persistent and grow in place, so they are
+     *   shared by a grown Columns.
+     */
+    private static class Columns {
+
+        private final byte[] alcoholTypes;
+        private final byte[] bottleSizes;
+        private final PersistentArray prices;
+
+        // The productId of row i is idArena[idEnds[i - 1]..idEnds[i]), same for names
+        private final int[] idEnds;
+        private final byte[] idArena;
+        private final int[] nameEnds;
+        private final byte[] nameArena;
+
+        // Open addressing table of productId hash to row index + 1
+        private final int[] idTable;
+
+        // Indexes of the Products by price in cents. Shared by a grown Columns.
+        private final PriceIndex indexesByPrice;
+
+        // Names changed by updateProduct, by index. Names are packed end to
+        //   end in the arena, so a new one can't replace the old in place.
+        //   Never changed once published. The next snapshot packs them in.
+        private final Map<Integer, String> renamedNames;
+
+        Columns(int capacity, int idArenaCapacity, int nameArenaCapacity) {
+            alcoholTypes = new byte[capacity];
+            bottleSizes = new byte[capacity];
+            prices = PersistentArray.ofLongs();
+            idEnds = new int[capacity];
+            idArena = new byte[idArenaCapacity];
+            nameEnds = new int[capacity];
+            nameArena = new byte[nameArenaCapacity];
+            idTable = new int[idTableSize(capacity)];
+            indexesByPrice = PriceIndex.EMPTY;
+            renamedNames = Collections.emptyMap();
+        }
+
+        /**
+         * Adopts columns read from a snapshot. The snapshot's productId table
+         *   is kept if it is big enough for the capacity, otherwise rebuilt.
+         */
+        Columns(byte[] alcoholTypes, byte[] bottleSizes, PersistentArray prices, int[] idEnds, byte[] idArena,
+                int[] nameEnds, byte[] nameArena, int[] idTable, PriceIndex indexesByPrice, int rowCount) {
+            this.alcoholTypes = alcoholTypes;
+            this.bottleSizes = bottleSizes;
+            this.prices = prices;
+            this.idEnds = idEnds;
+            this.idArena = idArena;
+            this.nameEnds = nameEnds;
+            this.nameArena = nameArena;
+            this.indexesByPrice = indexesByPrice;
+            this.renamedNames = Collections.emptyMap();
+
+            if (idTable.length >= idTableSize(capacity()) && Integer.bitCount(idTable.length) == 1) {
+                this.idTable = idTable;
+            } else {
+                this.idTable = new int[idTableSize(capacity())];
+                for (int index = 0; index < rowCount; index++) {
+                    insertIntoIdTable(index);
+                }
+            }
+        }
+
+        private Columns(Columns old, int rowCount, int capacity, int idArenaCapacity, int nameArenaCapacity) {
+            alcoholTypes = Arrays.copyOf(old.alcoholTypes, capacity);
+            bottleSizes = Arrays.copyOf(old.bottleSizes, capacity);
+            prices = old.prices;
+            idEnds = Arrays.copyOf(old.idEnds, capacity);
+            idArena = Arrays.copyOf(old.idArena, idArenaCapacity);
+            nameEnds = Arrays.copyOf(old.nameEnds, capacity);
+            nameArena = Arrays.copyOf(old.nameArena, nameArenaCapacity);
+            indexesByPrice = old.indexesByPrice;
+            renamedNames = old.renamedNames;
+
+            if (capacity == old.capacity()) {
+                idTable = old.idTable;
+            } else {
+                idTable = new int[idTableSize(capacity)];
+                for (int index = 0; index < rowCount; index++) {
+                    insertIntoIdTable(index);
+                }
+            }
+        }
+
+        private Columns(Columns old, byte[] alcoholTypes, byte[] bottleSizes, PersistentArray prices,
+                PriceIndex indexesByPrice, Map<Integer, String> renamedNames) {
+            this.alcoholTypes = alcoholTypes;
+            this.bottleSizes = bottleSizes;
+            this.prices = prices;
+            idEnds = old.idEnds;
+            idArena = old.idArena;
+            nameEnds = old.nameEnds;
+            nameArena = old.nameArena;
+            idTable = old.idTable;
+            this.indexesByPrice = indexesByPrice;
+            this.renamedNames = renamedNames;
+        }
+
+        int capacity() {
+            return alcoholTypes.length;
+        }
+
+        /**
+         * Returns a copy sharing every column but the prices, which are
+         *   replaced along with their index.
+         */
+        Columns withPrices(PersistentArray prices, PriceIndex indexesByPrice) {
+            return new Columns(this, alcoholTypes, bottleSizes, prices, indexesByPrice, renamedNames);
+        }
+
+        /**
+         * Returns a copy sharing every column but the AlcoholTypes,
+         *   BottleSizes and renamed names, which are replaced.
+         */
+        Columns withRows(byte[] alcoholTypes, byte[] bottleSizes, Map<Integer, String> renamedNames) {
+            return new Columns(this, alcoholTypes, bottleSizes, prices, indexesByPrice, renamedNames);
+        }
+
+        // Keep the productId table at most half full
+        private static int idTableSize(int capacity) {
+            return Integer.highestOneBit(capacity - 1) << 2;
+        }
+
+        /**
+         * Returns a copy with room for one more row and the given arena sizes.
+         *   Rows grow by half again and arenas by a quarter, to keep the
+         *   unused tail small.
+         */
+        Columns grow(int rowCount, int idArenaNeeded, int nameArenaNeeded) {
+            int capacity = rowCount < capacity() ? capacity() : capacity() + (capacity() >> 1);
+            return new Columns(this, rowCount, capacity,
+                    Math.max(idArena.length, idArenaNeeded + (idArenaNeeded >> 2)),
+                    Math.max(nameArena.length, nameArenaNeeded + (nameArenaNeeded >> 2)));
+        }
+
+        int idStart(int index) {
+            return index == 0 ? 0 : idEnds[index - 1];
+        }
+
+        int nameStart(int index) {
+            return index == 0 ? 0 : nameEnds[index - 1];
+        }
+
+        void insertIntoIdTable(int index) {
+            int mask = idTable.length - 1;
+            int slot = hashBytes(idArena, idStart(index), idEnds[index]) & mask;
+            while (idTable[slot] != EMPTY_SLOT) {
+                slot = (slot + 1) & mask;
+            }
+            idTable[slot] = index + 1;
+        }
+
+        boolean productIdEquals(int index, String productId) {
+            int start = idStart(index);
+            int end = idEnds[index];
+            int length = productId.length();
+            if (end - start == length) {
+                // Fast path for ASCII productIds, no encoding needed
+                int i = 0;
+                while (i < length && productId.charAt(i) < 0x80 && idArena[start + i] == productId.charAt(i)) {
+                    i++;
+                }
+                if (i == length) {
+                    return true;
+                }
+                if (productId.charAt(i) < 0x80) {
+                    return false;
+                }
+            }
+            byte[] idBytes = productId.getBytes(StandardCharsets.UTF_8);
+            return Arrays.equals(idArena, start, end, idBytes, 0, idBytes.length);
+        }
+
+        String productId(int index) {
+            int start = idStart(index);
+            return new String(idArena, start, idEnds[index] - start, StandardCharsets.UTF_8);
+        }
+
+        String name(int index) {
+            if (!renamedNames.isEmpty()) {
+                String renamedName = renamedNames.get(index);
+                if (renamedName != null) {
+                    return renamedName;
+                }
+            }
+            return packedName(index);
+        }
+
+        String packedName(int index) {
+            int start = nameStart(index);
+            return new String(nameArena, start, nameEnds[index] - start, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * A Product that reads its values from the columns of its row. It holds
+     *   nothing but the Columns it was created from and the row index, and
+     *   is created fresh for every lookup. That Columns is never written at
+     *   its row again, so the view never changes.
+     */
+    private static class ProductView extends Product {
+
+        private final Columns cols;
+        private final int index;
+
+        ProductView(Columns cols, int index) {
+            this.cols = cols;
+            this.index = index;
+        }
+
+        @Override
+        public String getProductId() {
+            return cols.productId(index);
+        }
+
+        @Override
+        public String getName() {
+            return cols.name(index);
+        }
+
+        @Override
+        public AlcoholType getAlcoholType() {
+            return ALCOHOL_TYPES[cols.alcoholTypes[index]];
+        }
+
+        @Override
+        public BottleSize getBottleSize() {
+            return BOTTLE_SIZES[cols.bottleSizes[index]];
+        }
+
+        @Override
+        public double getPrice() {
+            return getPriceInCents() / 100.0;
+        }
+
+        @Override
+        public long getPriceInCents() {
+            return cols.prices.getLong(index);
+        }
+    }
+
+}
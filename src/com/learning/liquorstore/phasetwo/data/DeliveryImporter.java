@@ -0,0 +1,151 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+
+import com.learning.liquorstore.phasetwo.util.Logger;
+import com.learning.liquorstore.phasetwo.util.ProductDataCSVReader;
+
+/**
+ * Imports the delivery rows appended to an inventory CSV file since the
+ *   last import, rather than reading the whole file again. The byte offset
+ *   where the last imported row ends is kept by the Inventory, so it is
+ *   saved in its snapshot and journal along with the quantities, and an
+ *   import after a restart picks up where the last one left off. Once
+ *   started, it also follows the file, importing new rows as they are
+ *   appended.
+ *
+ *   Each import adds its rows to the Inventory as one delivery, journaled
+ *   in a single record with the offset where its rows end. So a crash
+ *   either keeps both the rows and the new offset or neither, and a row is
+ *   never imported twice or lost.
+ *
+ *   A file shorter than the offset was replaced or truncated rather than
+ *   appended to. Its rows can't be told apart from the ones already
+ *   imported, so it is refused until startNewFile marks it as new.
+ */
+public class DeliveryImporter implements Closeable {
+
+    // Rows expected per import, for sizing the basket
+    private static final int EXPECTED_ROWS = 64;
+
+    private final Inventory inventory;
+    private final Path csvPath;
+
+    private FileWatcher fileWatcher;
+
+    /**
+     * Constructor for DeliveryImporter.
+     * @param inventory the Inventory to add the deliveries to, which keeps
+     *   the offset of the last import.
+     * @param csvPath the path of the inventory CSV file.
+     */
+    public DeliveryImporter(Inventory inventory, String csvPath) {
+        this.inventory = inventory;
+        this.csvPath = Paths.get(csvPath);
+    }
+
+    /**
+     * Getter for the offset where the last imported row ends.
+     * @return the offset.
+     */
+    public long getOffset() {
+        return inventory.getDeliveryOffset();
+    }
+
+    /**
+     * Marks the file as imported up to the given offset, e.g. after the
+     *   whole file was loaded some other way.
+     * @param offset the offset, which must be at the end of a row.
+     * @throws IllegalArgumentException - if the offset is negative.
+     */
+    public synchronized void skipTo(long offset) {
+        inventory.skipDeliveriesTo(offset);
+    }
+
+    /**
+     * Marks the file as replaced by a new one, e.g. after the old rows were
+     *   archived, so the next import reads it from the top.
+     */
+    public synchronized void startNewFile() {
+        skipTo(0);
+    }
+
+    /**
+     * Adds the quantities of every row appended to the file since the last
+     *   import to the Inventory.
+     * @return the number of rows imported.
+     * @throws IOException - if the file can't be read, or is shorter than
+     *   the last import.
+     * @throws ParseException - if an appended row can't be parsed, in which
+     *   case none are imported.
+     */
+    public synchronized int importNewDeliveries() throws IOException, ParseException {
+        long offset = inventory.getDeliveryOffset();
+        long fileSize = Files.size(csvPath);
+        if (fileSize < offset) {
+            throw new IOException(String.format("'%s' is shorter than the last import, offset=%d, so it was "
+                    + "replaced rather than appended to. Mark it as a new file to import it from the top.",
+                    csvPath, offset));
+        }
+        if (fileSize == offset) {
+            return 0;
+        }
+
+        QuantityDeltas deliveries = new QuantityDeltas(EXPECTED_ROWS);
+        long importedOffset = ProductDataCSVReader.loadProductQtyDataFromCSV(csvPath.toString(), offset,
+                deliveries::add);
+        if (importedOffset == offset) {
+            // Only part of a row so far
+            return 0;
+        }
+        BatchResult batchResult = inventory.applyDelivery(deliveries, importedOffset);
+        if (!batchResult.isFullyApplied()) {
+            Logger.debug("Skipped %d delivery rows that couldn't be applied.", batchResult.getFailedLineCount());
+        }
+        return deliveries.size();
+    }
+
+    /**
+     * Imports any new rows, then keeps importing rows as they are appended
+     *   to the file, on a daemon thread.
+     * @throws IOException - if the file's directory can't be watched.
+     */
+    public synchronized void start() throws IOException {
+        if (fileWatcher != null) {
+            return;
+        }
+        importQuietly();
+        fileWatcher = new FileWatcher(csvPath, "delivery-importer", this::importQuietly);
+    }
+
+    /**
+     * Stops following the file.
+     * @throws IOException - if the watch service can't be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (fileWatcher != null) {
+            fileWatcher.close();
+            fileWatcher = null;
+        }
+    }
+
+    /**
+     * Imports, logging rather than throwing if the file can't be read. A
+     *   bad row holds up the rows after it until it is fixed.
+     */
+    private void importQuietly() {
+        try {
+            int rowCount = importNewDeliveries();
+            Logger.debug("Imported %d delivery rows from '%s'.", rowCount, csvPath);
+        } catch (IOException | ParseException | IllegalArgumentException e) {
+            Logger.debug("Failed to import deliveries from '%s': %s", csvPath, e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Calls back whenever a file is created or changed, on a daemon thread of
+ *   its own. Only directories can be watched, so the file's directory is,
+ *   and events for other files are ignored.
+ *
+ *   A file is usually written in several steps, each with its own event,
+ *   so the watcher waits for the file to settle and answers the whole
+ *   burst with a single callback.
+ */
+class FileWatcher implements Closeable {
+
+    private static final long SETTLE_MILLIS = 200;
+
+    private final Path fileName;
+    private final Runnable changeHandler;
+    private final WatchService watchService;
+    private final Thread watcherThread;
+
+    /**
+     * Starts watching the given file.
+     * @param file the file.
+     * @param threadName the name of the watching thread.
+     * @param changeHandler called after each burst of changes.
+     * @throws IOException - if the file's directory can't be watched.
+     */
+    FileWatcher(Path file, String threadName, Runnable changeHandler) throws IOException {
+        Path absoluteFile = file.toAbsolutePath();
+        this.fileName = absoluteFile.getFileName();
+        this.changeHandler = changeHandler;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        try {
+            absoluteFile.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+        this.watcherThread = new Thread(this::watch, threadName);
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    /**
+     * Stops watching. A callback already running is interrupted.
+     * @throws IOException - if the watch service can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        watcherThread.interrupt();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean isFileChanged = isFileChanged(key);
+                key.reset();
+                if (!isFileChanged) {
+                    continue;
+                }
+
+                // Let the writer finish, and fold its later events into this callback
+                Thread.sleep(SETTLE_MILLIS);
+                WatchKey laterKey;
+                while ((laterKey = watchService.poll()) != null) {
+                    laterKey.pollEvents();
+                    laterKey.reset();
+                }
+                changeHandler.run();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed
+        }
+    }
+
+    private boolean isFileChanged(WatchKey key) {
+        boolean isFileChanged = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                isFileChanged = true;
+            }
+        }
+        return isFileChanged;
+    }
+
+}
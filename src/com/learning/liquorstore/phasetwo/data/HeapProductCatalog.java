@@ -0,0 +1,269 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+
+/**
+ * A ProductCatalog that keeps every Product as its own object on the
+ *   heap, with hash and tree based indexes over them.
+ *
+ *   Products are immutable, so updating one replaces its object. The
+ *   AlcoholType and BottleSize lookups hold indexes into the array, so
+ *   only the array holds Products. The array and the price index are
+ *   persistent, and published together as one State. updateProduct,
+ *   updatePrice and updatePrices never write over a published Product:
+ *   they publish a new State that copies only the paths to the changed
+ *   slots and prices, O(log n) nodes for one Product. Every lookup reads
+ *   its Products from just one State, so it sees one price sheet, and a
+ *   Reader holding the old State keeps the old Products.
+ */
+public class HeapProductCatalog implements ProductCatalog {
+
+    // The index of every Product by productId.
+    private final Map<String, Integer> indexesByProductId;
+
+    // Every Product at its index, and the price index over them
+    private volatile State state;
+
+    // The number of Products. Written after the Product itself, so
+    //   readers that see the new size also see the new Product.
+    private volatile int size;
+
+    // Indexes of the Products of each Alcohol Type. Concurrent sets, so
+    //   they can be read while Products are added.
+    private final Map<AlcoholType, Set<Integer>> indexesByAlcoholType;
+
+    // Indexes of the Products of each Bottle Size
+    private final Map<BottleSize, Set<Integer>> indexesByBottleSize;
+
+    /**
+     * Constructor for HeapProductCatalog.
+     */
+    public HeapProductCatalog() {
+        indexesByProductId = new ConcurrentHashMap<>();
+        state = new State(PersistentArray.ofObjects(), PriceIndex.EMPTY);
+
+        indexesByAlcoholType = new HashMap<>(AlcoholType.values().length);
+        for (AlcoholType alcoholType : AlcoholType.values()) {
+            indexesByAlcoholType.put(alcoholType, ConcurrentHashMap.newKeySet());
+        }
+
+        indexesByBottleSize = new HashMap<>(BottleSize.values().length);
+        for (BottleSize bottleSize : BottleSize.values()) {
+            indexesByBottleSize.put(bottleSize, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    @Override
+    public synchronized int addProduct(Product product) {
+        // Don't add the same Product twice
+        if (indexesByProductId.containsKey(product.getProductId())) {
+            return -1;
+        }
+
+        // Fill the next slot in place, then publish the State indexing it
+        int index = size;
+        State current = state;
+        state = new State(current.products.append(index, product),
+                current.indexesByPrice.with(product.getPriceInCents(), index));
+        size = index + 1;
+        indexesByProductId.put(product.getProductId(), index);
+
+        // Add Product to the set of Products with the same AlcoholType
+        indexesByAlcoholType.get(product.getAlcoholType()).add(index);
+
+        // Add Product to the set of Products with the same BottleSize
+        indexesByBottleSize.get(product.getBottleSize()).add(index);
+
+        return index;
+    }
+
+    @Override
+    public synchronized void updateProducts(int[] indexes, Product[] updatedProducts) {
+        State current = state;
+        for (int i = 0; i < indexes.length; i++) {
+            int index = indexes[i];
+            Product oldProduct = current.get(index);
+            Product product = updatedProducts[i];
+            if (oldProduct.getAlcoholType() != product.getAlcoholType()) {
+                indexesByAlcoholType.get(oldProduct.getAlcoholType()).remove(index);
+                indexesByAlcoholType.get(product.getAlcoholType()).add(index);
+            }
+            if (oldProduct.getBottleSize() != product.getBottleSize()) {
+                indexesByBottleSize.get(oldProduct.getBottleSize()).remove(index);
+                indexesByBottleSize.get(product.getBottleSize()).add(index);
+            }
+        }
+
+        replaceProducts(indexes, updatedProducts);
+    }
+
+    @Override
+    public synchronized long updatePrice(int index, long priceInCents) {
+        State current = state;
+        Product oldProduct = current.get(index);
+        if (oldProduct.getPriceInCents() != priceInCents) {
+            state = new State(current.products.with(index, withPrice(oldProduct, priceInCents)),
+                    current.indexesByPrice.moved(index, oldProduct.getPriceInCents(), priceInCents));
+        }
+        return oldProduct.getPriceInCents();
+    }
+
+    @Override
+    public synchronized void updatePrices(int[] indexes, long[] pricesInCents) {
+        State current = state;
+        Product[] repriced = new Product[indexes.length];
+        Arrays.parallelSetAll(repriced, i -> withPrice(current.get(indexes[i]), pricesInCents[i]));
+        replaceProducts(indexes, repriced);
+    }
+
+    /**
+     * Publishes a State with the Products at the given indexes replaced,
+     *   and those whose price changed moved in the price index. Where an
+     *   index is given more than once the last Product wins. Called while
+     *   holding this catalog's monitor.
+     */
+    private void replaceProducts(int[] indexes, Product[] replacements) {
+        State current = state;
+
+        // Keep the last replacement of each index that changes its price
+        BitSet isReplaced = new BitSet();
+        int[] movedIndexes = new int[indexes.length];
+        long[] oldPricesInCents = new long[indexes.length];
+        long[] newPricesInCents = new long[indexes.length];
+        int movedCount = 0;
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            int index = indexes[i];
+            if (isReplaced.get(index)) {
+                continue;
+            }
+            isReplaced.set(index);
+            long oldPriceInCents = current.get(index).getPriceInCents();
+            if (oldPriceInCents != replacements[i].getPriceInCents()) {
+                movedIndexes[movedCount] = index;
+                oldPricesInCents[movedCount] = oldPriceInCents;
+                newPricesInCents[movedCount] = replacements[i].getPriceInCents();
+                movedCount++;
+            }
+        }
+
+        state = new State(current.products.withAll(indexes, replacements),
+                current.indexesByPrice.movedAll(Arrays.copyOf(movedIndexes, movedCount),
+                        Arrays.copyOf(oldPricesInCents, movedCount), Arrays.copyOf(newPricesInCents, movedCount)));
+    }
+
+    private static Product withPrice(Product product, long priceInCents) {
+        return new Product(product.getProductId(), product.getName(), product.getAlcoholType(),
+                product.getBottleSize(), priceInCents / 100.0);
+    }
+
+    @Override
+    public int indexOf(String productId) {
+        Integer index = indexesByProductId.get(productId);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public Product getProduct(int index) {
+        return state.get(index);
+    }
+
+    @Override
+    public Reader getReader() {
+        State current = state;
+        return new Reader() {
+            @Override
+            public Product getProduct(int index) {
+                return current.get(index);
+            }
+
+            @Override
+            public long getPriceInCents(int index) {
+                return current.get(index).getPriceInCents();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Product> getAllProducts() {
+        int productCount = size;
+        State current = state;
+        Set<Product> allProducts = new HashSet<>();
+        for (int index = 0; index < productCount; index++) {
+            allProducts.add(current.get(index));
+        }
+        return allProducts;
+    }
+
+    @Override
+    public Set<Product> getProductsByAlcoholType(AlcoholType alcoholType) {
+        return productsAt(indexesByAlcoholType.get(alcoholType));
+    }
+
+    @Override
+    public Set<Product> getProductsByBottleSize(BottleSize bottleSize) {
+        return productsAt(indexesByBottleSize.get(bottleSize));
+    }
+
+    /**
+     * Returns the Products at the given indexes, all from the same State.
+     */
+    private Set<Product> productsAt(Set<Integer> indexes) {
+        // Read the size before the State, so it has every index counted
+        int productCount = size;
+        State current = state;
+        Set<Product> productsAtIndexes = new HashSet<>();
+        for (int index : indexes) {
+            if (index < productCount) {
+                productsAtIndexes.add(current.get(index));
+            }
+        }
+        return productsAtIndexes;
+    }
+
+    @Override
+    public Set<Product> getProductsInPriceRange(long minCents, long maxCents) {
+        // Seek straight to the first price in range, then only visit
+        //   the prices that fall inside it.
+        State current = state;
+        Set<Product> productsInPriceRange = new LinkedHashSet<>();
+        current.indexesByPrice.forEachInRange(minCents, maxCents,
+                index -> productsInPriceRange.add(current.get(index)));
+        return productsInPriceRange;
+    }
+
+    /**
+     * Every Product at its index, and the price index over them, published
+     *   together.
+     */
+    private static class State {
+
+        private final PersistentArray products;
+        private final PriceIndex indexesByPrice;
+
+        State(PersistentArray products, PriceIndex indexesByPrice) {
+            this.products = products;
+            this.indexesByPrice = indexesByPrice;
+        }
+
+        Product get(int index) {
+            return (Product) products.get(index);
+        }
+    }
+
+}
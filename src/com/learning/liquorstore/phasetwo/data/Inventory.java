@@ -1,58 +1,123 @@
 package com.learning.liquorstore.phasetwo.data;
 
-import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.IntStream;
 
 import com.learning.liquorstore.phasetwo.data.model.Product;
 import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
 import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+import com.learning.liquorstore.phasetwo.metrics.LatencyHistogram;
+import com.learning.liquorstore.phasetwo.metrics.MetricsRegistry;
 import com.learning.liquorstore.phasetwo.util.Logger;
-import com.learning.liquorstore.phasetwo.util.ProductPriceComparator;
+import com.learning.liquorstore.phasetwo.util.PriceConverter;
 
 public class Inventory {
 
-    // A collection of every available Product.
-    private HashMap<String, Product> productCatalog;
+    // Enough for every view a dashboard shows, and a few ad hoc queries
+    private static final int QUERY_CACHE_CAPACITY = 256;
 
-    // The quantity of each Product in the Inventory.
-    private Map<Product, Integer> productQuantities;
+    // A collection of every available Product, along with
+    //   its lookups by AlcoholType, BottleSize and price.
+    private ProductCatalog productCatalog;
 
-    // Products by Alcohol Type
-    private Map<AlcoholType, Set<Product>> productsByAlcoholType;
+    // The quantity of each Product in the Inventory, at the Product's index
+    //   in the productCatalog. Updates to the same Product are made with
+    //   compare-and-set, and nothing is boxed.
+    private final QuantityTable productQuantities = new QuantityTable();
 
-    // Products by Bottle Size
-    private Map<BottleSize, Set<Product>> productsByBottleSize;
+    // Bitmaps of the Products of each AlcoholType and BottleSize, and of
+    //   the Products in stock, for answering ProductQuerys.
+    private final ProductFilterIndex filterIndex = new ProductFilterIndex();
 
-    // List of Products sorted by Price
-    private SortedSet<Product> productsByPrice;
+    // Finds Products by part of their name
+    private final ProductNameIndex nameIndex = new ProductNameIndex();
+
+    // The results of recent queries, evicted as the Products they could
+    //   hold change
+    private final ProductQueryCache queryCache;
+
+    // Held while a price sheet is worked out and applied. Sheets are worked
+    //   out from the prices before them, so they take turns.
+    private final Object priceSheetLock = new Object();
+
+    // The number of Products no longer sold. While there are none, reads
+    //   that don't go through the filterIndex skip checking for them.
+    private final AtomicInteger discontinuedCount = new AtomicInteger();
+
+    // The Products below their reorder threshold, kept up to date by each
+    //   quantity change rather than by scanning the catalog
+    private final LowStockWatcher lowStockWatcher;
+
+    // Records every quantity change once attached, so changes survive a restart
+    private volatile InventoryJournal journal;
+
+    // Where the rows imported from the inventory CSV file end. Moved under
+    //   the read lock of changeLock along with the quantities those rows
+    //   added, so views, snapshots and journal records hold both or neither.
+    private volatile long deliveryOffset;
+
+    // Held shared by every change, and exclusively while an InventoryView
+    //   is taken or the journal is compacted. So a view never sees part of
+    //   a change, and compaction never captures a change whose journal
+    //   record hasn't been appended yet.
+    private final ReentrantReadWriteLock changeLock = new ReentrantReadWriteLock();
+
+    // Whether anything changed since the latest view was taken. Only
+    //   written when it flips, so changes don't contend on it.
+    private volatile boolean hasChangedSinceView = true;
+
+    // The latest view, handed out again while nothing changes. Guarded by
+    //   the write lock of changeLock.
+    private InventoryView latestView;
+
+    // Latencies and counts of the hot paths. Always on, as recording costs
+    //   two clock reads and a few uncontended increments.
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final LatencyHistogram addQtyLatency = metrics.histogram("inventory.addQtyForProduct");
+    private final LatencyHistogram removeLatency = metrics.histogram("inventory.removeProducts");
+    private final LatencyHistogram priceRangeLatency = metrics.histogram("inventory.getProductsInPriceRange");
+    private final LatencyHistogram repriceLatency = metrics.histogram("inventory.repriceProducts");
+    // Lookups of a productId that isn't in the catalog
+    private final LongAdder unknownProductCount = metrics.counter("inventory.unknownProducts");
+    // Removes refused for lack of stock
+    private final LongAdder rejectedRemoveCount = metrics.counter("inventory.rejectedRemoves");
 
     /**
-     * Constructor for Inventory.
+     * Constructor for Inventory. Keeps each Product as its own object.
      */
     public Inventory() {
-        productCatalog = new HashMap<>();
-        productQuantities = new HashMap<>();
-
-        productsByAlcoholType = new HashMap<>(AlcoholType.values().length);
-        for (AlcoholType alcoholType : AlcoholType.values()) {
-            productsByAlcoholType.put(alcoholType, new HashSet<>());
-        }
+        this(new HeapProductCatalog());
+    }
 
-        productsByBottleSize = new HashMap<>(BottleSize.values().length);
-        for (BottleSize bottleSize : BottleSize.values()) {
-            productsByBottleSize.put(bottleSize, new HashSet<>());
+    /**
+     * Constructor for Inventory that stores its Products in the given
+     *   ProductCatalog, e.g. a ColumnarProductCatalog for very large catalogs.
+     * @param productCatalog the ProductCatalog. Any Products it already
+     *   holds start with a quantity of zero.
+     */
+    public Inventory(ProductCatalog productCatalog) {
+        this.productCatalog = productCatalog;
+        this.queryCache = new ProductQueryCache(QUERY_CACHE_CAPACITY, metrics);
+        this.lowStockWatcher = new LowStockWatcher(productCatalog, productQuantities);
+        for (int index = 0; index < productCatalog.size(); index++) {
+            Product product = productCatalog.getProduct(index);
+            filterIndex.addProduct(index, product);
+            nameIndex.addName(index, product.getName());
         }
-
-        // Pass our Comparator into the constructor. This will tell the
-        //   Set how to sort our Products when we add them to the Set.
-        productsByPrice = new TreeSet<>(new ProductPriceComparator());
     }
 
     /**
@@ -61,25 +126,289 @@ public class Inventory {
      * @param product the new Product to add
      */
     public void addNewProduct(Product product) {
-        // Don't add the same Product twice
-        if (productCatalog.containsKey(product)) {
-            Logger.debug("Skipping duplicate productId='%s'.", product.getProductId());
-            return;
+        changeLock.readLock().lock();
+        try {
+            // Add Product to the productCatalog, the master record of all Products.
+            //   Don't add the same Product twice.
+            int index = productCatalog.addProduct(product);
+            if (index < 0) {
+                Logger.debug("Skipping duplicate productId='%s'.", product.getProductId());
+                return;
+            }
+
+            // Start the Product's quantity at zero
+            productQuantities.set(index, 0);
+            filterIndex.addProduct(index, product);
+            nameIndex.addName(index, product.getName());
+            lowStockWatcher.addProduct(index, product);
+            // Out of stock, so only results that don't need stock can hold it
+            queryCache.invalidate(product.getAlcoholType(), product.getBottleSize(), product.getPriceInCents(),
+                    false);
+            markChanged();
+        } finally {
+            changeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the name, AlcoholType, BottleSize and price of a Product in
+     *   the catalog and every index over it, e.g. when the catalog file is
+     *   edited. The Product keeps its quantity. Readers are never blocked,
+     *   though one racing the update may see some of the new values and
+     *   not others.
+     * @param product the Product's new values.
+     * @return false if the Product isn't in the Inventory.
+     */
+    public boolean updateProduct(Product product) {
+        return updateProducts(List.of(product)) == 1;
+    }
+
+    /**
+     * Replaces the values of many Products at once, as updateProduct does
+     *   for one, e.g. every Product edited in the catalog file. The catalog
+     *   copies what changes once for the whole batch, rather than once per
+     *   Product. Products that aren't in the Inventory are skipped. When the
+     *   same productId appears more than once, the last one wins.
+     * @param products the Products' new values.
+     * @return the number of Products updated.
+     */
+    public int updateProducts(Collection<Product> products) {
+        Map<Integer, Product> productsByIndex = new LinkedHashMap<>();
+        for (Product product : products) {
+            int index = productCatalog.indexOf(product.getProductId());
+            if (index >= 0) {
+                productsByIndex.put(index, product);
+            }
+        }
+        if (productsByIndex.isEmpty()) {
+            return 0;
+        }
+        int[] indexes = productsByIndex.keySet().stream().mapToInt(Integer::intValue).toArray();
+        Product[] updatedProducts = productsByIndex.values().toArray(new Product[0]);
+
+        changeLock.readLock().lock();
+        try {
+            // Products are never written over, so this keeps the old values
+            ProductCatalog.Reader oldCatalogReader = productCatalog.getReader();
+            productCatalog.updateProducts(indexes, updatedProducts);
+
+            for (int i = 0; i < indexes.length; i++) {
+                int index = indexes[i];
+                Product oldProduct = oldCatalogReader.getProduct(index);
+                Product product = updatedProducts[i];
+                filterIndex.updateProduct(index, oldProduct.getAlcoholType(), oldProduct.getBottleSize(), product);
+                if (!oldProduct.getName().equals(product.getName())) {
+                    nameIndex.addName(index, product.getName());
+                }
+                if (oldProduct.getAlcoholType() != product.getAlcoholType()) {
+                    lowStockWatcher.updateProduct(index, product);
+                }
+                queryCache.invalidate(oldProduct.getAlcoholType(), oldProduct.getBottleSize(),
+                        oldProduct.getPriceInCents(), true);
+                queryCache.invalidate(product.getAlcoholType(), product.getBottleSize(), product.getPriceInCents(),
+                        true);
+            }
+            markChanged();
+        } finally {
+            changeLock.readLock().unlock();
+        }
+        return indexes.length;
+    }
+
+    /**
+     * Stops selling a Product. It is left out of every search and listing,
+     *   but keeps its quantity, and can still be looked up by productId, so
+     *   the journal and snapshots of it stay valid.
+     * @param productId the Id of the Product.
+     * @return false if the Product isn't in the Inventory.
+     */
+    public boolean discontinueProduct(String productId) {
+        return setListed(productId, false);
+    }
+
+    /**
+     * Sells a discontinued Product again.
+     * @param productId the Id of the Product.
+     * @return false if the Product isn't in the Inventory.
+     */
+    public boolean reinstateProduct(String productId) {
+        return setListed(productId, true);
+    }
+
+    /**
+     * Whether the given Product has been discontinued.
+     * @param productId the Id of the Product.
+     * @return true if the Product is in the Inventory and discontinued.
+     */
+    public boolean isDiscontinued(String productId) {
+        int index = productCatalog.indexOf(productId);
+        return index >= 0 && !filterIndex.isListed(index);
+    }
+
+    private boolean setListed(String productId, boolean isListed) {
+        int index = productCatalog.indexOf(productId);
+        if (index < 0) {
+            return false;
+        }
+        setListedAtIndex(index, isListed);
+        return true;
+    }
+
+    private void setListedAtIndex(int index, boolean isListed) {
+        changeLock.readLock().lock();
+        try {
+            if (filterIndex.setListed(index, isListed)) {
+                discontinuedCount.addAndGet(isListed ? -1 : 1);
+                Product product = productCatalog.getProduct(index);
+                queryCache.invalidate(product.getAlcoholType(), product.getBottleSize(), product.getPriceInCents(),
+                        true);
+                markChanged();
+            }
+        } finally {
+            changeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Changes the price of a Product. Like updateProduct, readers are
+     *   never blocked, and the catalog copies the O(log n) nodes on the
+     *   paths to the Product's row and price rather than writing over
+     *   them, so views and results taken before keep the old price.
+     *   Repricing many Products is cheaper with repriceProducts or
+     *   applyPriceSheet, which copy each shared node once for all of them.
+     * @param productId the Id of the Product.
+     * @param price the new price.
+     * @return false if the Product isn't in the Inventory.
+     * @throws IllegalArgumentException - if the price is negative.
+     */
+    public boolean repriceProduct(String productId, double price) {
+        if (price < 0) {
+            throw new IllegalArgumentException("Price must not be negative, was " + price);
         }
+        int index = productCatalog.indexOf(productId);
+        if (index < 0) {
+            return false;
+        }
+
+        long priceInCents = PriceConverter.toCents(price);
+        changeLock.readLock().lock();
+        try {
+            Product product = productCatalog.getProduct(index);
+            AlcoholType alcoholType = product.getAlcoholType();
+            BottleSize bottleSize = product.getBottleSize();
 
-        // Add Product to the productCatalog, the master record of all Products.
-        productCatalog.put(product.getProductId(), product);
+            // The catalog swaps the price, so a racing reprice can't change
+            //   it between reading the old price and writing the new one
+            long oldPriceInCents = productCatalog.updatePrice(index, priceInCents);
+            queryCache.invalidate(alcoholType, bottleSize, oldPriceInCents, true);
+            queryCache.invalidate(alcoholType, bottleSize, priceInCents, true);
+            markChanged();
+        } finally {
+            changeLock.readLock().unlock();
+        }
+        return true;
+    }
 
-        // Add Product to the set of Products with the same AlcoholType
-        Set<Product> productsOfSameAlcoholType = productsByAlcoholType.get(product.getAlcoholType());
-        productsOfSameAlcoholType.add(product);
+    /**
+     * Applies every line of a price sheet at once. Readers see every new
+     *   price or none of them, never part of the sheet, and are never
+     *   blocked meanwhile. The Products are looked up, and their new prices
+     *   and price index built, in parallel on the common ForkJoinPool.
+     * @param priceSheet the sheet of productId and new price lines.
+     * @return the outcome of each line. Lines for Products that aren't in
+     *   the Inventory are skipped, and the rest applied.
+     */
+    public BatchResult applyPriceSheet(PriceSheet priceSheet) {
+        int lineCount = priceSheet.size();
+        BatchResult batchResult = new BatchResult(lineCount);
+        int[] lineIndexes = new int[lineCount];
+        Arrays.parallelSetAll(lineIndexes, line -> productCatalog.indexOf(priceSheet.getProductId(line)));
 
-        // Add Product to the set of Products with the same BottleSize
-        Set<Product> productsOfSameBottleSize = productsByBottleSize.get(product.getBottleSize());
-        productsOfSameBottleSize.add(product);
+        // The last line for each Product wins, so keep the first seen going
+        //   backwards
+        Bitmap isRepriced = new Bitmap();
+        int[] indexes = new int[lineCount];
+        long[] pricesInCents = new long[lineCount];
+        int repricedCount = 0;
+        for (int line = lineCount - 1; line >= 0; line--) {
+            int index = lineIndexes[line];
+            if (index < 0) {
+                Logger.debug("ProductId not found in ProductCatalog. ProductId='%s'.", priceSheet.getProductId(line));
+                batchResult.setStatus(line, BatchResult.LineStatus.UNKNOWN_PRODUCT);
+            } else if (isRepriced.set(index, true)) {
+                indexes[repricedCount] = index;
+                pricesInCents[repricedCount] = priceSheet.getPriceInCents(line);
+                repricedCount++;
+            }
+        }
 
-        // Add Product to the set of Products ordered by price.
-        productsByPrice.add(product);
+        if (repricedCount > 0) {
+            synchronized (priceSheetLock) {
+                applyPrices(Arrays.copyOf(indexes, repricedCount), Arrays.copyOf(pricesInCents, repricedCount));
+            }
+        }
+        return batchResult;
+    }
+
+    /**
+     * Reprices every Product matching the given query at once, e.g. takes
+     *   10% off every GIN with
+     *   repriceProducts(new ProductQuery().withAlcoholTypes(AlcoholType.GIN), cents -> cents * 9 / 10).
+     *   The matches are found with the filter bitmaps, and their new prices
+     *   worked out in parallel on the common ForkJoinPool. As with
+     *   applyPriceSheet, readers see every new price or none of them.
+     *   Discontinued Products are left as they are. A Product repriced on
+     *   its own meanwhile gets the price worked out from its old one.
+     * @param query the Products to reprice.
+     * @param repricer gives each Product's new price in cents from its old.
+     * @return the number of Products repriced.
+     * @throws IllegalArgumentException - if the repricer gives a negative
+     *   price, in which case nothing is repriced.
+     */
+    public int repriceProducts(ProductQuery query, LongUnaryOperator repricer) {
+        if (query.hasPriceRange() && query.getMinPriceInCents() > query.getMaxPriceInCents()) {
+            return 0;
+        }
+
+        synchronized (priceSheetLock) {
+            int productCount = productCatalog.size();
+            ProductCatalog.Reader catalogReader = productCatalog.getReader();
+            IntStream.Builder matches = IntStream.builder();
+            filterIndex.forEachMatch(query, productCount, catalogReader, matches::add);
+            int[] indexes = matches.build().toArray();
+            if (indexes.length == 0) {
+                return 0;
+            }
+
+            long[] pricesInCents = new long[indexes.length];
+            Arrays.parallelSetAll(pricesInCents, i -> {
+                long priceInCents = repricer.applyAsLong(catalogReader.getPriceInCents(indexes[i]));
+                if (priceInCents < 0) {
+                    throw new IllegalArgumentException("Price must not be negative, was " + priceInCents
+                            + " cents for productId='" + catalogReader.getProduct(indexes[i]).getProductId() + "'.");
+                }
+                return priceInCents;
+            });
+            applyPrices(indexes, pricesInCents);
+            return indexes.length;
+        }
+    }
+
+    /**
+     * Publishes the given prices to the catalog all at once. Called while
+     *   holding priceSheetLock.
+     */
+    private void applyPrices(int[] indexes, long[] pricesInCents) {
+        long startTime = System.nanoTime();
+        changeLock.readLock().lock();
+        try {
+            productCatalog.updatePrices(indexes, pricesInCents);
+            queryCache.invalidateAll();
+            markChanged();
+        } finally {
+            changeLock.readLock().unlock();
+            repriceLatency.recordSince(startTime);
+        }
     }
 
     /**
@@ -101,16 +430,33 @@ public class Inventory {
      * @return the success of the add operation.
      */
     public boolean addQtyForProduct(String productId, int quantity) {
-        if (!productCatalog.containsKey(productId)) {
-            Logger.debug("ProductId not found in ProductCatalog. ProductId='%s'.", productId);
-            return false;
-        }
+        long startTime = System.nanoTime();
+        try {
+            int index = productCatalog.indexOf(productId);
+            if (index < 0) {
+                unknownProductCount.increment();
+                Logger.debug("ProductId not found in ProductCatalog. ProductId='%s'.", productId);
+                return false;
+            }
 
-        Product product = productCatalog.get(productId);
-        int existingQty = productQuantities.getOrDefault(product, 0);
-        int updatedQty = existingQty + quantity;
-        productQuantities.put(product, updatedQty);
-        return true;
+            InventoryJournal journal = this.journal;
+            long sequence = 0;
+            changeLock.readLock().lock();
+            try {
+                addQty(index, quantity);
+                if (journal != null) {
+                    sequence = journal.append(productId, quantity);
+                }
+            } finally {
+                changeLock.readLock().unlock();
+            }
+            if (journal != null) {
+                journal.awaitDurable(sequence);
+            }
+            return true;
+        } finally {
+            addQtyLatency.recordSince(startTime);
+        }
     }
 
     /**
@@ -121,14 +467,182 @@ public class Inventory {
      * @return collection of productId and boolean results flag pairs.
      */
     public Map<String, Boolean> addQtyForProducts(Map<String, Integer> productQuantities) {
-        Map<String, Boolean> addResults = new HashMap<>(productQuantities.size());
+        QuantityDeltas quantityDeltas = new QuantityDeltas(productQuantities.size());
         for (Map.Entry<String, Integer> prodQty : productQuantities.entrySet()) {
-            boolean success = addQtyForProduct(prodQty.getKey(), prodQty.getValue());
-            addResults.put(prodQty.getKey(), success);
+            quantityDeltas.add(prodQty.getKey(), prodQty.getValue());
+        }
+        BatchResult batchResult = applyQtyDeltas(quantityDeltas, false);
+
+        Map<String, Boolean> addResults = new HashMap<>(productQuantities.size());
+        for (int line = 0; line < quantityDeltas.size(); line++) {
+            addResults.put(quantityDeltas.getProductId(line), batchResult.isApplied(line));
         }
         return addResults;
     }
 
+    /**
+     * Applies every line of the given basket in one pass. Positive deltas
+     *   add stock and negative deltas remove it, and no line ever makes a
+     *   quantity negative. When journaled, the whole basket shares a
+     *   single fsync.
+     * @param quantityDeltas the basket of productId and signed delta lines.
+     * @param allOrNothing if true, nothing is applied unless every line can
+     *   be. Otherwise each line is applied if it can be.
+     * @return the outcome of each line.
+     */
+    public BatchResult applyQtyDeltas(QuantityDeltas quantityDeltas, boolean allOrNothing) {
+        return applyQtyDeltas(quantityDeltas, allOrNothing, -1);
+    }
+
+    /**
+     * Applies a delivery read from the inventory CSV file like
+     *   applyQtyDeltas, and moves the delivery offset to where its rows
+     *   end. The offset is journaled in the same record as the delivery,
+     *   so after a crash both are replayed or neither is, and a row is
+     *   never imported twice.
+     * @param deliveries the delivery's productId and quantity lines.
+     * @param deliveryOffset where the delivery's last row ends in the file.
+     * @return the outcome of each line.
+     * @throws IllegalArgumentException - if the offset is negative.
+     */
+    public BatchResult applyDelivery(QuantityDeltas deliveries, long deliveryOffset) {
+        if (deliveryOffset < 0) {
+            throw new IllegalArgumentException("Delivery offset must not be negative, offset=" + deliveryOffset + ".");
+        }
+        return applyQtyDeltas(deliveries, false, deliveryOffset);
+    }
+
+    /**
+     * Moves the delivery offset without applying any rows, e.g. after the
+     *   whole inventory CSV file was loaded some other way, or to 0 when
+     *   the file was replaced by a new one. Journaled like a delivery.
+     * @param deliveryOffset where the rows already in the Inventory end.
+     * @throws IllegalArgumentException - if the offset is negative.
+     */
+    public void skipDeliveriesTo(long deliveryOffset) {
+        applyDelivery(new QuantityDeltas(0), deliveryOffset);
+    }
+
+    /**
+     * Getter for where the rows imported from the inventory CSV file end.
+     * @return the offset, or 0 if none were imported.
+     */
+    public long getDeliveryOffset() {
+        return deliveryOffset;
+    }
+
+    /**
+     * Applies a basket, and if deliveryOffset isn't negative, moves the
+     *   delivery offset along with it.
+     */
+    private BatchResult applyQtyDeltas(QuantityDeltas quantityDeltas, boolean allOrNothing, long deliveryOffset) {
+        int lineCount = quantityDeltas.size();
+        BatchResult batchResult = new BatchResult(lineCount);
+
+        // Look up each line's Product once, before changing anything
+        int[] indexes = new int[lineCount];
+        for (int line = 0; line < lineCount; line++) {
+            indexes[line] = productCatalog.indexOf(quantityDeltas.getProductId(line));
+            if (indexes[line] < 0) {
+                Logger.debug("ProductId not found in ProductCatalog. ProductId='%s'.",
+                        quantityDeltas.getProductId(line));
+                batchResult.setStatus(line, BatchResult.LineStatus.UNKNOWN_PRODUCT);
+            }
+        }
+        if (allOrNothing && !batchResult.isFullyApplied()) {
+            batchResult.rejectAll();
+            return batchResult;
+        }
+
+        // Views see the whole basket or none of it
+        InventoryJournal journal = this.journal;
+        long sequence = 0;
+        changeLock.readLock().lock();
+        try {
+            applyLines(quantityDeltas, indexes, batchResult, allOrNothing);
+            if (deliveryOffset >= 0) {
+                this.deliveryOffset = deliveryOffset;
+                markChanged();
+            }
+            if (journal != null) {
+                sequence = deliveryOffset < 0
+                        ? journal.appendAll(quantityDeltas, batchResult)
+                        : journal.appendDelivery(quantityDeltas, batchResult, deliveryOffset);
+            }
+        } finally {
+            changeLock.readLock().unlock();
+        }
+        if (journal != null) {
+            journal.awaitDurable(sequence);
+        }
+        return batchResult;
+    }
+
+    /**
+     * Applies the lines of a basket whose Products were found. Removals go
+     *   first, each reserving its stock with a compare-and-set, so no racing
+     *   remove can take the quantity negative. Nothing derived from the
+     *   quantities, the in stock bitmap, the query cache or the low stock
+     *   notifications, is brought up to date until every line is in, so a
+     *   failed all-or-nothing basket gives its reservations back without
+     *   anyone being notified of them, and undoing it only ever means
+     *   adding stock back, which can't fail.
+     *
+     *   Until they are given back, the reservations do hold the stock: a
+     *   racing remove of the same Product, or a read of its quantity, can
+     *   see it taken by a basket that is about to be refused, and be
+     *   refused itself. Views never see them, as they are taken between
+     *   baskets.
+     */
+    private void applyLines(QuantityDeltas quantityDeltas, int[] indexes, BatchResult batchResult,
+                            boolean allOrNothing) {
+        for (int line = 0; line < indexes.length; line++) {
+            int delta = quantityDeltas.getDelta(line);
+            if (indexes[line] < 0 || delta >= 0) {
+                continue;
+            }
+            if (!reserve(indexes[line], quantityDeltas.getProductId(line), -delta)) {
+                batchResult.setStatus(line, BatchResult.LineStatus.INSUFFICIENT_QUANTITY);
+                if (allOrNothing) {
+                    giveBack(quantityDeltas, indexes, line);
+                    batchResult.rejectAll();
+                    return;
+                }
+            }
+        }
+
+        for (int line = 0; line < indexes.length; line++) {
+            int delta = quantityDeltas.getDelta(line);
+            if (indexes[line] >= 0 && delta >= 0) {
+                productQuantities.addAndGet(indexes[line], delta);
+            }
+        }
+
+        // The basket is in, so bring what derives from its quantities up to date
+        for (int line = 0; line < indexes.length; line++) {
+            if (batchResult.isApplied(line)) {
+                quantityChanged(indexes[line]);
+            }
+        }
+    }
+
+    /**
+     * Gives back the stock reserved by the removals before the given line.
+     *   Nothing derived from their quantities was brought up to date, so
+     *   this is normally all it takes. Only if a racing change brought some
+     *   of it up to date with a reserved quantity does quantityChanged find
+     *   anything to undo.
+     */
+    private void giveBack(QuantityDeltas quantityDeltas, int[] indexes, int failedLine) {
+        for (int line = 0; line < failedLine; line++) {
+            int delta = quantityDeltas.getDelta(line);
+            if (delta < 0) {
+                productQuantities.addAndGet(indexes[line], -delta);
+                quantityChanged(indexes[line]);
+            }
+        }
+    }
+
     /**
      * Remove from the quantity of the Product with the given
      *   productId in the Inventory.
@@ -137,39 +651,165 @@ public class Inventory {
      * @return the success of the remove operation.
      */
     public boolean removeProducts(String productId, int quantity) {
-        if (!productCatalog.containsKey(productId)) {
-            Logger.debug("ProductId not found in ProductCatalog. ProductId='%s'.", productId);
-            return false;
+        long startTime = System.nanoTime();
+        try {
+            int index = productCatalog.indexOf(productId);
+            if (index < 0) {
+                unknownProductCount.increment();
+                Logger.debug("ProductId not found in ProductCatalog. ProductId='%s'.", productId);
+                return false;
+            }
+
+            InventoryJournal journal = this.journal;
+            long sequence = 0;
+            changeLock.readLock().lock();
+            try {
+                if (!tryRemove(index, productId, quantity)) {
+                    rejectedRemoveCount.increment();
+                    return false;
+                }
+                if (journal != null) {
+                    sequence = journal.append(productId, -quantity);
+                }
+            } finally {
+                changeLock.readLock().unlock();
+            }
+            if (journal != null) {
+                journal.awaitDurable(sequence);
+            }
+            return true;
+        } finally {
+            removeLatency.recordSince(startTime);
         }
+    }
 
-        Product product = productCatalog.get(productId);
-        Integer existingQty = productQuantities.get(product);
-        if (existingQty == null || existingQty < quantity) {
-            Logger.debug("Not enough quantity for Remove. ProductId='%s'.", productId);
+    /**
+     * Removes the given quantity from the Product at the given index,
+     *   unless that would make its quantity negative.
+     * @return the success of the remove.
+     */
+    private boolean tryRemove(int index, String productId, int quantity) {
+        if (!reserve(index, productId, quantity)) {
             return false;
         }
+        quantityChanged(index);
+        return true;
+    }
 
-        int updatedQty = existingQty - quantity;
-        productQuantities.put(product, updatedQty);
+    /**
+     * Removes the given quantity from the Product at the given index,
+     *   unless that would make its quantity negative, without bringing
+     *   anything derived from the quantity up to date.
+     * @return the success of the remove.
+     */
+    private boolean reserve(int index, String productId, int quantity) {
+        // Retry until no other thread has changed the quantity between our
+        //   read and our write, so the quantity can never go negative.
+        int existingQty;
+        do {
+            existingQty = productQuantities.get(index);
+            if (existingQty < quantity) {
+                Logger.debug("Not enough quantity for Remove. ProductId='%s'.", productId);
+                return false;
+            }
+        } while (!productQuantities.compareAndSet(index, existingQty, existingQty - quantity));
         return true;
     }
 
+    /**
+     * Adds the given delta to the quantity of the Product at the given index.
+     */
+    private void addQty(int index, int delta) {
+        productQuantities.addAndGet(index, delta);
+        quantityChanged(index);
+    }
+
+    /**
+     * Brings everything derived from the quantity of the Product at the
+     *   given index up to date. Call after every quantity change, while
+     *   holding the read lock of changeLock.
+     */
+    private void quantityChanged(int index) {
+        if (filterIndex.updateInStock(index, productQuantities)) {
+            Product product = productCatalog.getProduct(index);
+            queryCache.invalidateInStock(product.getAlcoholType(), product.getBottleSize(),
+                    product.getPriceInCents());
+        }
+        lowStockWatcher.update(index);
+        markChanged();
+    }
+
+    /**
+     * Records that the Inventory changed since the latest view. Call while
+     *   holding the read lock of changeLock, so the next view sees it.
+     */
+    private void markChanged() {
+        if (!hasChangedSinceView) {
+            hasChangedSinceView = true;
+        }
+    }
+
+    /**
+     * Returns an immutable view of the whole Inventory as of now: every
+     *   Product, its quantity and the indexes over them. Taking a view
+     *   only holds off changes for as long as it takes to freeze the
+     *   quantity table and filter bitmaps, which is constant time. Changes
+     *   made afterwards copy the parts of them they touch, and catalog
+     *   edits publish new Products rather than overwriting the old, so a
+     *   long scan of a view neither blocks them nor sees any of them.
+     * @return the view.
+     */
+    public InventoryView getView() {
+        changeLock.writeLock().lock();
+        try {
+            if (hasChangedSinceView || latestView == null) {
+                long version = latestView == null ? 1 : latestView.getVersion() + 1;
+                // Read the size before taking the Reader, so it has every Product counted
+                int productCount = productCatalog.size();
+                latestView = new InventoryView(productCatalog, productCatalog.getReader(), filterIndex.freeze(),
+                        productQuantities.freeze(), productCount, version);
+                hasChangedSinceView = false;
+            }
+            return latestView;
+        } finally {
+            changeLock.writeLock().unlock();
+        }
+    }
+
     /**
      * Lookup the quantity of a given Product in the Inventory.
      * @param productId the Id of the Product to lookup.
      * @return the Product's quantity.
      */
     public int getQtyForProduct(String productId) {
-        Product product = productCatalog.get(productId);
-        return productQuantities.getOrDefault(product, 0);
+        int index = productCatalog.indexOf(productId);
+        if (index < 0) {
+            unknownProductCount.increment();
+            return 0;
+        }
+        return productQuantities.get(index);
+    }
+
+    /**
+     * Adds up the quantities of every Product.
+     * @return the total number of units in stock.
+     */
+    public long getTotalQuantity() {
+        long totalQuantity = 0;
+        int productCount = productCatalog.size();
+        for (int index = 0; index < productCount; index++) {
+            totalQuantity += productQuantities.get(index);
+        }
+        return totalQuantity;
     }
 
     /**
      * Return a Set of all the Products.
-     * @return a Set of all the Products.
+     * @return a Set of all the Products, in catalog order. It is cached,
+     *   so it can't be modified.
      */
     public Set<Product> getAllProducts() {
-        return new HashSet<>(productCatalog.values());
+        return findProducts(new ProductQuery());
     }
 
     /**
@@ -178,7 +818,8 @@ public class Inventory {
      * @return the Set of Products.
      */
     public Set<Product> getProductsByAlcoholType(AlcoholType alcoholType) {
-        return productsByAlcoholType.get(alcoholType);
+        // A new Set from the bitmaps, never one the catalog keeps updating
+        return findProducts(new ProductQuery().withAlcoholTypes(alcoholType));
     }
 
     /**
@@ -187,7 +828,7 @@ public class Inventory {
      * @return the Set of Products.
      */
     public Set<Product> getProductsByBottleSize(BottleSize bottleSize) {
-        return productsByBottleSize.get(bottleSize);
+        return findProducts(new ProductQuery().withBottleSizes(bottleSize));
     }
 
     /**
@@ -197,20 +838,242 @@ public class Inventory {
      * @return the Set of Products in range.
      */
     public Set<Product> getProductsInPriceRange(double min, double max) {
-        Set<Product> productsInPriceRange = new HashSet<>();
-        Iterator<Product> iter = productsByPrice.iterator();
-        while (iter.hasNext()) {
-            Product product = iter.next();
-            if (product.getPrice() >= min) {
-                if (product.getPrice() <= max) {
-                    productsInPriceRange.add(product);
-                } else {
-                    break;
-                }
+        long startTime = System.nanoTime();
+        try {
+            // Results are in price order.
+            return findProducts(new ProductQuery().withPriceRange(min, max));
+        } finally {
+            priceRangeLatency.recordSince(startTime);
+        }
+    }
+
+    /**
+     * Returns every Product matching all the filters of the given query.
+     *   Recent results are cached until a Product they could hold changes,
+     *   so asking the same query again is usually answered from memory.
+     * @param query the query.
+     * @return the Set of matching Products, in catalog order, or in price
+     *   order if the price range is the only filter. It is cached, so it
+     *   can't be modified.
+     */
+    public Set<Product> findProducts(ProductQuery query) {
+        if (query.hasPriceRange() && query.getMinPriceInCents() > query.getMaxPriceInCents()) {
+            return Collections.emptySet();
+        }
+        return queryCache.get(query, () -> computeProducts(query));
+    }
+
+    private Set<Product> computeProducts(ProductQuery query) {
+        if (query.hasPriceRange() && query.getAlcoholTypes() == null && query.getBottleSizes() == null
+                && !query.isInStockOnly()) {
+            // The catalog's price index beats scanning every Product's price
+            return withoutDiscontinued(
+                    productCatalog.getProductsInPriceRange(query.getMinPriceInCents(), query.getMaxPriceInCents()));
+        }
+
+        // One Reader throughout, so every price is from the same sheet
+        int productCount = productCatalog.size();
+        ProductCatalog.Reader catalogReader = productCatalog.getReader();
+        Set<Product> products = new LinkedHashSet<>();
+        filterIndex.forEachMatch(query, productCount, catalogReader, index -> {
+            // The in stock bitmap can briefly lag a racing quantity change
+            if (!query.isInStockOnly() || productQuantities.get(index) > 0) {
+                products.add(catalogReader.getProduct(index));
+            }
+        });
+        return products;
+    }
+
+    /**
+     * Returns the given Products of the catalog less those discontinued,
+     *   in the same order.
+     */
+    private Set<Product> withoutDiscontinued(Set<Product> products) {
+        if (discontinuedCount.get() == 0) {
+            return products;
+        }
+        Set<Product> listedProducts = new LinkedHashSet<>();
+        for (Product product : products) {
+            if (filterIndex.isListed(productCatalog.indexOf(product.getProductId()))) {
+                listedProducts.add(product);
             }
         }
+        return listedProducts;
+    }
+
+    /**
+     * Returns one page of the Products matching all the filters of the
+     *   given query, in the order they were added to the catalog. Only the
+     *   Products up to the end of the page are looked at, so a page costs
+     *   the same however large the catalog or the full result is. Pages
+     *   are cached like findProducts' results, so paging through the same
+     *   result again is answered from memory.
+     * @param query the query.
+     * @param cursor the nextCursor of the previous page, or null for the
+     *   first page.
+     * @param pageSize the maximum number of Products on the page.
+     * @return the page.
+     * @throws IllegalArgumentException - if the cursor wasn't returned by
+     *   getProductPage, or pageSize isn't positive.
+     */
+    public ProductPage getProductPage(ProductQuery query, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive, was " + pageSize);
+        }
+        int fromIndex = cursor == null ? 0 : parseCursor(cursor);
+        if (query.hasPriceRange() && query.getMinPriceInCents() > query.getMaxPriceInCents()) {
+            return new ProductPage(Collections.emptyList(), null);
+        }
+
+        return queryCache.getPage(query, fromIndex, pageSize, () -> computePage(query, fromIndex, pageSize));
+    }
+
+    private ProductPage computePage(ProductQuery query, int fromIndex, int pageSize) {
+        // Look one Product past the page, to know whether there is another
+        List<Product> products = new ArrayList<>(pageSize);
+        int[] nextIndex = {-1};
+        int productCount = productCatalog.size();
+        ProductCatalog.Reader catalogReader = productCatalog.getReader();
+        filterIndex.forEachMatch(query, true, catalogReader, productCount, fromIndex, index -> {
+            // The in stock bitmap can briefly lag a racing quantity change
+            if (query.isInStockOnly() && productQuantities.get(index) <= 0) {
+                return true;
+            } else if (products.size() == pageSize) {
+                nextIndex[0] = index;
+                return false;
+            }
+            products.add(catalogReader.getProduct(index));
+            return true;
+        });
+        return new ProductPage(Collections.unmodifiableList(products),
+                nextIndex[0] < 0 ? null : Integer.toString(nextIndex[0]));
+    }
+
+    private static int parseCursor(String cursor) {
+        try {
+            int index = Integer.parseInt(cursor);
+            if (index >= 0) {
+                return index;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Unrecognized cursor, '" + cursor + "'");
+    }
+
+    /**
+     * Returns the Products whose names best match the given part of a name,
+     *   ignoring case. Names starting with it come first, then names with
+     *   a word starting with it, then names containing it anywhere. Parts
+     *   shorter than three characters only match the start of a word.
+     * @param partialName part of a Product's name.
+     * @param limit the maximum number of Products to return.
+     * @return the matching Products, best first.
+     */
+    public List<Product> findProductsByName(String partialName, int limit) {
+        int[] indexes = nameIndex.find(partialName, limit, productCatalog, filterIndex::isListed);
+        List<Product> products = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            products.add(productCatalog.getProduct(index));
+        }
+        return products;
+    }
+
+    /**
+     * Sets the reorder threshold of the given Product. It is below its
+     *   threshold, and reported to LowStockListeners, while it has fewer
+     *   units in stock than the threshold.
+     * @param productId the Id of the Product.
+     * @param threshold the threshold, or 0 to never reorder it.
+     * @return false if the Product isn't in the Inventory.
+     * @throws IllegalArgumentException - if threshold is negative.
+     */
+    public boolean setReorderThreshold(String productId, int threshold) {
+        checkThreshold(threshold);
+        int index = productCatalog.indexOf(productId);
+        if (index < 0) {
+            return false;
+        }
+        lowStockWatcher.setThreshold(index, threshold);
+        return true;
+    }
+
+    /**
+     * Returns the given Product to the default reorder threshold of its
+     *   AlcoholType.
+     * @param productId the Id of the Product.
+     * @return false if the Product isn't in the Inventory.
+     */
+    public boolean clearReorderThreshold(String productId) {
+        int index = productCatalog.indexOf(productId);
+        if (index < 0) {
+            return false;
+        }
+        lowStockWatcher.clearThreshold(index);
+        return true;
+    }
+
+    /**
+     * Sets the reorder threshold of every Product of the given AlcoholType
+     *   that doesn't have one of its own, including Products added later.
+     * @param alcoholType the AlcoholType.
+     * @param threshold the threshold, or 0 to never reorder them.
+     * @throws IllegalArgumentException - if threshold is negative.
+     */
+    public void setDefaultReorderThreshold(AlcoholType alcoholType, int threshold) {
+        checkThreshold(threshold);
+        lowStockWatcher.setDefaultThreshold(alcoholType, threshold);
+    }
+
+    /**
+     * Lookup the reorder threshold of a given Product.
+     * @param productId the Id of the Product to lookup.
+     * @return the Product's threshold, 0 if it has none.
+     */
+    public int getReorderThreshold(String productId) {
+        int index = productCatalog.indexOf(productId);
+        return index < 0 ? 0 : lowStockWatcher.getThreshold(index);
+    }
+
+    /**
+     * Returns every Product with fewer units in stock than its reorder
+     *   threshold. The set is kept up to date as quantities change, so
+     *   this reads one bit per Product rather than every quantity.
+     * @return the Set of Products, in catalog order.
+     */
+    public Set<Product> getLowStockProducts() {
+        return withoutDiscontinued(lowStockWatcher.getProductsBelowThreshold());
+    }
+
+    /**
+     * Registers a listener to be told whenever a Product falls below its
+     *   reorder threshold or is restocked.
+     * @param listener the listener.
+     */
+    public void addLowStockListener(LowStockListener listener) {
+        lowStockWatcher.addListener(listener);
+    }
+
+    /**
+     * Unregisters a listener added with addLowStockListener.
+     * @param listener the listener.
+     */
+    public void removeLowStockListener(LowStockListener listener) {
+        lowStockWatcher.removeListener(listener);
+    }
+
+    private static void checkThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Reorder threshold must not be negative, was " + threshold);
+        }
+    }
 
-        return productsInPriceRange;
+    /**
+     * Getter for the metrics, to which callers may add their own.
+     * @return the metrics.
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
     }
 
     /**
@@ -219,7 +1082,121 @@ public class Inventory {
      * @return the Product.
      */
     public Product getProductById(String productId) {
-        return productCatalog.get(productId);
+        return productCatalog.getProduct(productId);
+    }
+
+    /**
+     * Getter for the ProductCatalog, for writing snapshots.
+     * @return the productCatalog.
+     */
+    ProductCatalog getProductCatalog() {
+        return productCatalog;
+    }
+
+    /**
+     * Getter for the attached InventoryJournal.
+     * @return the journal, or null if changes aren't being journaled.
+     */
+    InventoryJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Setter for the InventoryJournal that records every quantity change.
+     * @param journal the journal, or null to stop journaling.
+     */
+    void setJournal(InventoryJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Getter for the lock that holds off every change while a journal is
+     *   being compacted.
+     * @return the lock.
+     */
+    Lock getJournalBarrier() {
+        return changeLock.writeLock();
+    }
+
+    /**
+     * Applies a quantity change read back from the journal. Unlike
+     *   removeProducts, this is never refused, since the change was
+     *   already accepted before it was journaled.
+     * @param productId the Id of the Product.
+     * @param delta the signed change in quantity.
+     * @return false if the Product doesn't exist.
+     */
+    boolean applyJournaledDelta(String productId, int delta) {
+        int index = productCatalog.indexOf(productId);
+        if (index < 0) {
+            return false;
+        }
+        changeLock.readLock().lock();
+        try {
+            addQty(index, delta);
+        } finally {
+            changeLock.readLock().unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Setter for the delivery offset, for restoring snapshots and replaying
+     *   the journal.
+     * @param deliveryOffset where the rows already in the Inventory end.
+     */
+    void setDeliveryOffset(long deliveryOffset) {
+        changeLock.readLock().lock();
+        try {
+            this.deliveryOffset = deliveryOffset;
+            markChanged();
+        } finally {
+            changeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Getter for the quantity of the Product at the given catalog index.
+     * @param index the index of the Product in the productCatalog.
+     * @return the quantity.
+     */
+    int getQtyAtIndex(int index) {
+        return productQuantities.get(index);
+    }
+
+    /**
+     * Setter for the quantity of the Product at the given catalog index,
+     *   for restoring snapshots.
+     * @param index the index of the Product in the productCatalog.
+     * @param quantity the quantity.
+     */
+    void setQtyAtIndex(int index, int quantity) {
+        changeLock.readLock().lock();
+        try {
+            productQuantities.set(index, quantity);
+            quantityChanged(index);
+        } finally {
+            changeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether the Product at the given catalog index is listed, for
+     *   writing snapshots.
+     * @param index the index of the Product in the productCatalog.
+     * @return false if the Product is discontinued.
+     */
+    boolean isListedAtIndex(int index) {
+        return filterIndex.isListed(index);
+    }
+
+    /**
+     * Discontinues the Product at the given catalog index, for restoring
+     *   snapshots.
+     * @param index the index of the Product in the productCatalog.
+     */
+    void discontinueAtIndex(int index) {
+        setListedAtIndex(index, false);
     }
 
 }
@@ -0,0 +1,632 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+
+import com.learning.liquorstore.phasetwo.util.Logger;
+
+/**
+ * An append-only journal of the quantity changes made to an Inventory, so
+ *   they survive a restart. Each change is written as a record of its
+ *   sequence number, productId and signed delta, followed by a CRC of the
+ *   record so a torn write at the end of the file can be detected.
+ *
+ *   A delivery imported from the inventory CSV file is written as one
+ *   record holding all of its lines and the offset where its rows end, so
+ *   the Inventory's delivery offset is replayed exactly when the rows are.
+ *   It has DELIVERY_RECORD in place of the productId length, the line
+ *   count in place of the delta, then long deliveryOffset and per line:
+ *   short productIdLength, byte[] productId, int delta.
+ *
+ *   Records are written by a background thread in batches, with a single
+ *   fsync per batch (group commit). A caller waits only until the batch
+ *   holding its record is on disk, so many concurrent changes share the
+ *   cost of one fsync.
+ *
+ *   Compaction writes an InventorySnapshot holding every change up to some
+ *   sequence and then deletes the records it folded in. Changes are sums,
+ *   so replaying them in any order gives the same quantities.
+ */
+public class InventoryJournal implements Closeable {
+
+    // Size of the sequence, delta and productId length fields of a record
+    private static final int RECORD_HEADER_SIZE = Long.BYTES + Integer.BYTES + Short.BYTES;
+    // Marks a delivery record, where a productId length would be
+    private static final short DELIVERY_RECORD = -1;
+    private static final int INITIAL_BATCH_CAPACITY = 1 << 16;
+
+    // Compact once this many records have been written since the last compaction
+    private static final long COMPACTION_THRESHOLD = 100_000;
+    private static final long COMPACTION_CHECK_SECONDS = 30;
+
+    private final Inventory inventory;
+    private final Path journalPath;
+    // The records being folded into a snapshot. Kept until the snapshot is written.
+    private final Path compactingPath;
+    private final String snapshotPath;
+
+    private FileChannel channel;
+
+    // Records waiting for the writer thread, and the buffer it is writing.
+    //   Both, and the fields below, are guarded by this journal's monitor.
+    private ByteBuffer pendingRecords = ByteBuffer.allocate(INITIAL_BATCH_CAPACITY);
+    private ByteBuffer writingRecords = ByteBuffer.allocate(INITIAL_BATCH_CAPACITY);
+    private long appendedSequence;
+    private long durableSequence;
+    private long recordsSinceCompaction;
+    private IOException writeFailure;
+    private boolean closed;
+
+    private final Thread writerThread;
+    private final ScheduledExecutorService compactor;
+
+    // Held for a whole compaction, so an older snapshot can never
+    //   overwrite a newer one.
+    private final Object compactionLock = new Object();
+
+    private InventoryJournal(Inventory inventory, Path journalPath, String snapshotPath, long lastSequence)
+            throws IOException {
+        this.inventory = inventory;
+        this.journalPath = journalPath;
+        this.compactingPath = journalPath.resolveSibling(journalPath.getFileName() + ".compacting");
+        this.snapshotPath = snapshotPath;
+        this.appendedSequence = lastSequence;
+        this.durableSequence = lastSequence;
+
+        channel = openForAppend();
+
+        writerThread = new Thread(this::writeBatches, "inventory-journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compactIfLong,
+                COMPACTION_CHECK_SECONDS, COMPACTION_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Replays the journal at the given path on top of the given Inventory,
+     *   then attaches the journal to the Inventory so every later quantity
+     *   change is recorded. If anything was replayed, the journal is
+     *   compacted into the snapshot at snapshotPath straight away.
+     * @param journalPath the path of the journal. Created if it doesn't exist.
+     * @param snapshotPath where compaction writes its snapshot.
+     * @param inventory the Inventory, already holding the loaded data.
+     * @param snapshotSequence the last record already included in the loaded
+     *   data, or 0 if it was not loaded from a snapshot.
+     * @return the journal.
+     * @throws IOException - if the journal cannot be read or opened.
+     */
+    public static InventoryJournal open(String journalPath, String snapshotPath, Inventory inventory,
+                                        long snapshotSequence) throws IOException {
+        return open(journalPath, snapshotPath, inventory, snapshotSequence, null);
+    }
+
+    /**
+     * Same as open, for an Inventory loaded from a snapshot older than the
+     *   product CSV file. Once the journal is replayed, the catalog is
+     *   reconciled with the file as CatalogReloader does, adding, updating
+     *   and discontinuing only what differs, so every quantity in the
+     *   snapshot and the journal is kept. Products new to the file start
+     *   with no stock. The result is compacted into a
+     *   new snapshot straight away, so the records that follow refer to
+     *   the reconciled catalog. If the file can't be read the snapshot's
+     *   catalog is kept, and reconciling is tried again next time.
+     * @param journalPath the path of the journal. Created if it doesn't exist.
+     * @param snapshotPath where compaction writes its snapshot.
+     * @param inventory the Inventory, loaded from the snapshot.
+     * @param snapshotSequence the last record already included in the snapshot.
+     * @param productCsvPath the path of the product CSV file.
+     * @return the journal.
+     * @throws IOException - if the journal cannot be read or opened, or the snapshot cannot be written.
+     */
+    public static InventoryJournal openReconciling(String journalPath, String snapshotPath, Inventory inventory,
+                                                   long snapshotSequence, String productCsvPath)
+            throws IOException {
+        return open(journalPath, snapshotPath, inventory, snapshotSequence, productCsvPath);
+    }
+
+    private static InventoryJournal open(String journalPath, String snapshotPath, Inventory inventory,
+                                         long snapshotSequence, String productCsvPath) throws IOException {
+        Path path = Paths.get(journalPath);
+        Path compactingPath = path.resolveSibling(path.getFileName() + ".compacting");
+
+        // Replay the records of an unfinished compaction first, then the journal
+        ReplayResult replayed = new ReplayResult(snapshotSequence);
+        replay(compactingPath, inventory, replayed);
+        replay(path, inventory, replayed);
+        Logger.debug("Replayed %d journal records from '%s'.", replayed.recordCount, journalPath);
+
+        InventoryJournal journal = new InventoryJournal(inventory, path, snapshotPath, replayed.lastSequence);
+        inventory.setJournal(journal);
+        boolean isReconciled = productCsvPath != null && reconcileCatalog(inventory, productCsvPath);
+        if (replayed.recordCount > 0 || isReconciled) {
+            journal.compact(snapshotPath);
+        }
+        return journal;
+    }
+
+    /**
+     * Attaches a new, empty journal to an Inventory rebuilt from the CSV
+     *   files instead of loaded from the snapshot, and writes a snapshot of
+     *   it. The records left in the old journal are changes to the data the
+     *   old snapshot held, so replaying them onto the rebuilt Inventory
+     *   would count them twice. They are moved aside to a ".discarded" file
+     *   rather than deleted.
+     * @param journalPath the path of the journal.
+     * @param snapshotPath where compaction writes its snapshot.
+     * @param inventory the Inventory, already holding the rebuilt data.
+     * @return the journal.
+     * @throws IOException - if the old journal cannot be moved aside, or the snapshot cannot be written.
+     */
+    public static InventoryJournal openDiscarding(String journalPath, String snapshotPath, Inventory inventory)
+            throws IOException {
+        Path path = Paths.get(journalPath);
+        Path compactingPath = path.resolveSibling(path.getFileName() + ".compacting");
+        Path discardedPath = path.resolveSibling(path.getFileName() + ".discarded");
+
+        // Only the latest discarded records are kept, in the order they were written
+        Files.deleteIfExists(discardedPath);
+        setAside(compactingPath, discardedPath);
+        setAside(path, discardedPath);
+        if (Files.exists(discardedPath)) {
+            Logger.debug("Moved the records of '%s' aside to '%s'.", journalPath, discardedPath);
+        }
+
+        InventoryJournal journal = new InventoryJournal(inventory, path, snapshotPath, 0);
+        inventory.setJournal(journal);
+        journal.compact(snapshotPath);
+        return journal;
+    }
+
+    /**
+     * Applies whatever differs between the catalog and the product CSV file.
+     * @return false if the file couldn't be read.
+     */
+    private static boolean reconcileCatalog(Inventory inventory, String productCsvPath) {
+        try {
+            CatalogReloader.ReloadResult result = new CatalogReloader(inventory, productCsvPath).reload();
+            Logger.debug("Reconciled the catalog with '%s': %s", productCsvPath, result);
+            return true;
+        } catch (IOException | ParseException e) {
+            Logger.debug("Failed to reconcile the catalog with '%s': %s", productCsvPath, e.getMessage());
+            return false;
+        }
+    }
+
+    private static void setAside(Path path, Path asidePath) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (OutputStream out = Files.newOutputStream(asidePath, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+            Files.copy(path, out);
+        }
+        Files.delete(path);
+    }
+
+    /**
+     * Adds a record of a quantity change to the next batch. Must be called
+     *   while holding the Inventory's journal lock, right after making the
+     *   change, so compaction never sees a change without its record.
+     * @param productId the Id of the Product that changed.
+     * @param delta the signed change in quantity.
+     * @return the sequence of the record, to pass to awaitDurable.
+     */
+    synchronized long append(String productId, int delta) {
+        byte[] productIdBytes = toProductIdBytes(productId);
+        ensurePendingCapacity(Integer.BYTES + RECORD_HEADER_SIZE + productIdBytes.length + Integer.BYTES);
+
+        long sequence = ++appendedSequence;
+        int recordStart = pendingRecords.position();
+        pendingRecords.putInt(RECORD_HEADER_SIZE + productIdBytes.length)
+                .putLong(sequence)
+                .putInt(delta)
+                .putShort((short) productIdBytes.length)
+                .put(productIdBytes);
+        pendingRecords.putInt(checksum(pendingRecords.array(), recordStart + Integer.BYTES,
+                RECORD_HEADER_SIZE + productIdBytes.length));
+
+        recordsSinceCompaction++;
+        notifyAll();
+        return sequence;
+    }
+
+    /**
+     * Adds a record for every applied line of a basket to the same batch,
+     *   so the whole basket reaches disk in one write. Must be called while
+     *   holding the Inventory's journal lock, like append.
+     * @param quantityDeltas the basket.
+     * @param batchResult which lines were applied.
+     * @return the sequence of the last record, to pass to awaitDurable.
+     */
+    synchronized long appendAll(QuantityDeltas quantityDeltas, BatchResult batchResult) {
+        long sequence = appendedSequence;
+        for (int line = 0; line < quantityDeltas.size(); line++) {
+            if (batchResult.isApplied(line) && quantityDeltas.getDelta(line) != 0) {
+                sequence = append(quantityDeltas.getProductId(line), quantityDeltas.getDelta(line));
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Adds one record holding every applied line of a delivery and the
+     *   offset where its rows end, so a crash can't keep the quantities
+     *   and lose the offset, or the other way round. Must be called while
+     *   holding the Inventory's journal lock, like append.
+     * @param deliveries the delivery's lines.
+     * @param batchResult which lines were applied.
+     * @param deliveryOffset where the delivery's last row ends in the file.
+     * @return the sequence of the record, to pass to awaitDurable.
+     */
+    synchronized long appendDelivery(QuantityDeltas deliveries, BatchResult batchResult, long deliveryOffset) {
+        byte[][] productIdBytes = new byte[deliveries.size()][];
+        int lineCount = 0;
+        int recordLength = RECORD_HEADER_SIZE + Long.BYTES;
+        for (int line = 0; line < deliveries.size(); line++) {
+            if (batchResult.isApplied(line) && deliveries.getDelta(line) != 0) {
+                productIdBytes[line] = toProductIdBytes(deliveries.getProductId(line));
+                recordLength += Short.BYTES + productIdBytes[line].length + Integer.BYTES;
+                lineCount++;
+            }
+        }
+        ensurePendingCapacity(Integer.BYTES + recordLength + Integer.BYTES);
+
+        long sequence = ++appendedSequence;
+        int recordStart = pendingRecords.position();
+        pendingRecords.putInt(recordLength)
+                .putLong(sequence)
+                .putInt(lineCount)
+                .putShort(DELIVERY_RECORD)
+                .putLong(deliveryOffset);
+        for (int line = 0; line < deliveries.size(); line++) {
+            if (productIdBytes[line] != null) {
+                pendingRecords.putShort((short) productIdBytes[line].length)
+                        .put(productIdBytes[line])
+                        .putInt(deliveries.getDelta(line));
+            }
+        }
+        pendingRecords.putInt(checksum(pendingRecords.array(), recordStart + Integer.BYTES, recordLength));
+
+        recordsSinceCompaction += Math.max(lineCount, 1);
+        notifyAll();
+        return sequence;
+    }
+
+    private static byte[] toProductIdBytes(String productId) {
+        byte[] productIdBytes = productId.getBytes(StandardCharsets.UTF_8);
+        if (productIdBytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("ProductId is too long to journal. ProductId='" + productId + "'.");
+        }
+        return productIdBytes;
+    }
+
+    /**
+     * Grows the pending buffer, if needed, so the next recordSize bytes fit.
+     */
+    private void ensurePendingCapacity(int recordSize) {
+        if (pendingRecords.remaining() < recordSize) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pendingRecords.capacity() * 2,
+                    pendingRecords.position() + recordSize));
+            pendingRecords.flip();
+            grown.put(pendingRecords);
+            pendingRecords = grown;
+        }
+    }
+
+    /**
+     * Blocks until the record with the given sequence is on disk.
+     * @param sequence the sequence returned by append.
+     * @throws UncheckedIOException - if the journal could not be written.
+     */
+    synchronized void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        while (durableSequence < sequence && writeFailure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (durableSequence < sequence) {
+            throw new UncheckedIOException("Failed to write inventory journal.", writeFailure);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the Inventory holding every change recorded so
+     *   far, then deletes the records it folded in. Changes keep being
+     *   accepted while the snapshot is written.
+     * @param snapshotPath where to write the snapshot.
+     * @throws IOException - if the snapshot cannot be written.
+     */
+    public void compact(String snapshotPath) throws IOException {
+        synchronized (compactionLock) {
+            long compactedSequence;
+            InventoryView view;
+            long deliveryOffset;
+
+            // Wait for in-flight changes, so the view holds exactly the
+            //   changes up to compactedSequence. Taking the view is cheap,
+            //   so changes are only held off while the journal is rotated.
+            Lock barrier = inventory.getJournalBarrier();
+            barrier.lock();
+            try {
+                compactedSequence = rotate();
+                view = inventory.getView();
+                deliveryOffset = inventory.getDeliveryOffset();
+            } finally {
+                barrier.unlock();
+            }
+
+            InventorySnapshot.write(inventory, view.copyQuantities(), compactedSequence, deliveryOffset,
+                    snapshotPath);
+            Files.deleteIfExists(compactingPath);
+            Logger.debug("Compacted inventory journal up to sequence=%d.", compactedSequence);
+        }
+    }
+
+    /**
+     * Compacts the journal into the snapshot and stops writing records.
+     *   Later quantity changes are no longer recorded.
+     * @throws IOException - if the final compaction fails.
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compact(snapshotPath);
+        } finally {
+            inventory.setJournal(null);
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+        }
+    }
+
+    private void compactIfLong() {
+        synchronized (this) {
+            if (recordsSinceCompaction < COMPACTION_THRESHOLD) {
+                return;
+            }
+        }
+        try {
+            compact(snapshotPath);
+        } catch (IOException e) {
+            Logger.debug("Failed to compact inventory journal: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Moves every record written so far to the compacting file, and starts
+     *   a new, empty journal. Must be called with no appends in progress.
+     * @return the sequence of the last moved record.
+     */
+    private long rotate() throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = appendedSequence;
+        }
+        awaitDurable(sequence);
+
+        synchronized (this) {
+            channel.close();
+            if (Files.exists(compactingPath)) {
+                // A previous compaction didn't finish, so its records are
+                //   still needed. Add ours after them.
+                try (FileChannel compacting = FileChannel.open(compactingPath,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                     FileChannel journal = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = journal.size();
+                    while (position < size) {
+                        position += journal.transferTo(position, size - position, compacting);
+                    }
+                    compacting.force(false);
+                }
+                Files.delete(journalPath);
+            } else {
+                Files.move(journalPath, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+            channel = openForAppend();
+            recordsSinceCompaction = 0;
+        }
+        return sequence;
+    }
+
+    private void writeBatches() {
+        while (true) {
+            ByteBuffer batch;
+            long batchSequence;
+            FileChannel batchChannel;
+            synchronized (this) {
+                while (pendingRecords.position() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pendingRecords.position() == 0) {
+                    return;
+                }
+
+                // Swap buffers, so appends carry on while this batch is written
+                batch = pendingRecords;
+                pendingRecords = writingRecords;
+                writingRecords = batch;
+                batchSequence = appendedSequence;
+                batchChannel = channel;
+            }
+
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    batchChannel.write(batch);
+                }
+                batchChannel.force(false);
+                batch.clear();
+            } catch (IOException e) {
+                synchronized (this) {
+                    writeFailure = e;
+                    notifyAll();
+                }
+                return;
+            }
+
+            synchronized (this) {
+                durableSequence = batchSequence;
+                notifyAll();
+            }
+        }
+    }
+
+    private FileChannel openForAppend() throws IOException {
+        return FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Applies every record in the given file with a sequence after the
+     *   last one already applied. A torn or corrupt record ends the file,
+     *   and is cut off so new records aren't written after it.
+     */
+    private static void replay(Path path, Inventory inventory, ReplayResult replayed) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        long fileSize = Files.size(path);
+        long validLength = 0;
+        try (InputStream fileIn = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn))) {
+            byte[] record = new byte[RECORD_HEADER_SIZE + Short.MAX_VALUE];
+            while (true) {
+                int recordLength;
+                try {
+                    recordLength = in.readInt();
+                    // A delivery can be any size, but never more than what's left of the file
+                    if (recordLength < RECORD_HEADER_SIZE
+                            || recordLength > fileSize - validLength - 2 * Integer.BYTES) {
+                        break;
+                    }
+                    if (recordLength > record.length) {
+                        record = new byte[recordLength];
+                    }
+                    in.readFully(record, 0, recordLength);
+                    if (in.readInt() != checksum(record, 0, recordLength)) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+
+                ByteBuffer fields = ByteBuffer.wrap(record, 0, recordLength);
+                long sequence = fields.getLong();
+                int delta = fields.getInt();
+                int productIdLength = fields.getShort();
+
+                if (sequence > replayed.skipThrough) {
+                    if (productIdLength == DELIVERY_RECORD) {
+                        replayDelivery(fields, delta, inventory);
+                    } else {
+                        replayDelta(readProductId(fields, productIdLength), delta, inventory);
+                    }
+                    replayed.recordCount++;
+                }
+                replayed.lastSequence = Math.max(replayed.lastSequence, sequence);
+                validLength += Integer.BYTES + recordLength + Integer.BYTES;
+            }
+        }
+
+        if (validLength < Files.size(path)) {
+            Logger.debug("Truncating torn journal record at offset=%d of '%s'.", validLength, path);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+    }
+
+    /**
+     * Applies the lines of a delivery record, then moves the Inventory's
+     *   delivery offset to where the delivery ends.
+     */
+    private static void replayDelivery(ByteBuffer fields, int lineCount, Inventory inventory) {
+        long deliveryOffset = fields.getLong();
+        for (int line = 0; line < lineCount; line++) {
+            String productId = readProductId(fields, fields.getShort());
+            replayDelta(productId, fields.getInt(), inventory);
+        }
+        inventory.setDeliveryOffset(deliveryOffset);
+    }
+
+    private static void replayDelta(String productId, int delta, Inventory inventory) {
+        if (!inventory.applyJournaledDelta(productId, delta)) {
+            Logger.debug("Skipping journal record for unknown productId='%s'.", productId);
+        }
+    }
+
+    private static String readProductId(ByteBuffer fields, int productIdLength) {
+        String productId = new String(fields.array(), fields.position(), productIdLength, StandardCharsets.UTF_8);
+        fields.position(fields.position() + productIdLength);
+        return productId;
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * What replay has seen so far.
+     */
+    private static class ReplayResult {
+
+        // Records up to here are already in the loaded data
+        private final long skipThrough;
+        private long lastSequence;
+        private int recordCount;
+
+        ReplayResult(long skipThrough) {
+            this.skipThrough = skipThrough;
+            this.lastSequence = skipThrough;
+        }
+    }
+
+}
@@ -0,0 +1,246 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Lock;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.util.Logger;
+
+/**
+ * Reads and writes a binary snapshot of an Inventory, so that startup can
+ *   skip parsing the CSV files. The snapshot holds the catalog columns, the
+ *   prebuilt productId and price indexes, the quantities and the
+ *   discontinued Products, all in catalog index order:
+ *
+ *   int magic, int version, long journalSequence, long deliveryOffset,
+ *   int productCount,
+ *   byte[] alcoholTypes, byte[] bottleSizes, long[] pricesInCents,
+ *   int[] idEnds, int idArenaLength, byte[] idArena,
+ *   int[] nameEnds, int nameArenaLength, byte[] nameArena,
+ *   int idTableLength, int[] idTable,
+ *   int priceCount, then per price: long priceInCents, int count, int[] indexes,
+ *   int[] quantities,
+ *   int discontinuedCount, int[] discontinuedIndexes
+ *
+ *   Snapshots are written to a temporary file and moved into place, so a
+ *   crash mid-write never leaves a half written snapshot behind. The
+ *   journalSequence is the last InventoryJournal record folded into the
+ *   snapshot, so replay can skip everything up to it. The deliveryOffset
+ *   is where the rows imported from the inventory CSV file end, as of the
+ *   same point.
+ */
+public class InventorySnapshot {
+
+    // "LQSN"
+    private static final int MAGIC = 0x4C51534E;
+    private static final int VERSION = 4;
+
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Writes a snapshot of the given Inventory to the given path. If the
+     *   Inventory has an InventoryJournal, this compacts the journal into
+     *   the snapshot.
+     * @param inventory the Inventory.
+     * @param snapshotPath where to write the snapshot.
+     * @throws IOException - if the snapshot cannot be written.
+     */
+    public static void write(Inventory inventory, String snapshotPath) throws IOException {
+        InventoryJournal journal = inventory.getJournal();
+        if (journal != null) {
+            journal.compact(snapshotPath);
+            return;
+        }
+
+        // Take the delivery offset along with the view, so it matches the quantities
+        InventoryView view;
+        long deliveryOffset;
+        Lock barrier = inventory.getJournalBarrier();
+        barrier.lock();
+        try {
+            view = inventory.getView();
+            deliveryOffset = inventory.getDeliveryOffset();
+        } finally {
+            barrier.unlock();
+        }
+        write(inventory, view.copyQuantities(), 0, deliveryOffset, snapshotPath);
+    }
+
+    /**
+     * Writes a snapshot of the first quantities.length Products of the given
+     *   Inventory, with the given quantities.
+     * @param inventory the Inventory.
+     * @param quantities the quantities, in catalog index order.
+     * @param journalSequence the last journal record the quantities include.
+     * @param deliveryOffset where the delivery rows the quantities include end.
+     * @param snapshotPath where to write the snapshot.
+     * @throws IOException - if the snapshot cannot be written.
+     */
+    static void write(Inventory inventory, int[] quantities, long journalSequence, long deliveryOffset,
+                      String snapshotPath) throws IOException {
+        int productCount = quantities.length;
+        ColumnarProductCatalog catalog = toColumnar(inventory.getProductCatalog(), productCount);
+
+        Path path = Paths.get(snapshotPath);
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempPath), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(journalSequence);
+            out.writeLong(deliveryOffset);
+            catalog.writeTo(out, productCount);
+            for (int quantity : quantities) {
+                out.writeInt(quantity);
+            }
+            writeDiscontinued(out, inventory, productCount);
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Logger.debug("Wrote snapshot of %d Products to '%s'.", productCount, snapshotPath);
+    }
+
+    /**
+     * Writes the indexes of the discontinued Products among the first
+     *   productCount. Discontinuing isn't journaled, so these are as of
+     *   when the snapshot is written.
+     */
+    private static void writeDiscontinued(DataOutputStream out, Inventory inventory, int productCount)
+            throws IOException {
+        int[] discontinuedIndexes = new int[productCount];
+        int discontinuedCount = 0;
+        for (int index = 0; index < productCount; index++) {
+            if (!inventory.isListedAtIndex(index)) {
+                discontinuedIndexes[discontinuedCount++] = index;
+            }
+        }
+        out.writeInt(discontinuedCount);
+        for (int i = 0; i < discontinuedCount; i++) {
+            out.writeInt(discontinuedIndexes[i]);
+        }
+    }
+
+    /**
+     * Reads the sequence of the last InventoryJournal record folded into
+     *   the snapshot at the given path.
+     * @param snapshotPath the path of the snapshot.
+     * @return the journal sequence.
+     * @throws IOException - if the snapshot cannot be read, or is not a valid snapshot.
+     */
+    public static long readJournalSequence(String snapshotPath) throws IOException {
+        try (InputStream in = Files.newInputStream(Paths.get(snapshotPath))) {
+            ByteBuffer header = ByteBuffer.wrap(in.readNBytes(HEADER_SIZE));
+            readHeader(header, snapshotPath);
+            return header.getLong();
+        }
+    }
+
+    /**
+     * Loads an Inventory from the snapshot at the given path. Products are
+     *   kept as their own objects, as with the default Inventory, so every
+     *   index is rebuilt as they are added. Prefer loadColumnar where
+     *   startup time matters.
+     * @param snapshotPath the path of the snapshot.
+     * @return the Inventory.
+     * @throws IOException - if the snapshot cannot be read, or is not a valid snapshot.
+     */
+    public static Inventory load(String snapshotPath) throws IOException {
+        Inventory columnarInventory = loadColumnar(snapshotPath);
+        ProductCatalog columnarCatalog = columnarInventory.getProductCatalog();
+
+        HeapProductCatalog catalog = new HeapProductCatalog();
+        for (int index = 0; index < columnarCatalog.size(); index++) {
+            Product product = columnarCatalog.getProduct(index);
+            catalog.addProduct(new Product(product.getProductId(), product.getName(), product.getAlcoholType(),
+                    product.getBottleSize(), product.getPrice()));
+        }
+
+        Inventory inventory = new Inventory(catalog);
+        for (int index = 0; index < catalog.size(); index++) {
+            inventory.setQtyAtIndex(index, columnarInventory.getQtyAtIndex(index));
+            if (!columnarInventory.isListedAtIndex(index)) {
+                inventory.discontinueAtIndex(index);
+            }
+        }
+        inventory.setDeliveryOffset(columnarInventory.getDeliveryOffset());
+        return inventory;
+    }
+
+    /**
+     * Loads an Inventory backed by a ColumnarProductCatalog from the
+     *   snapshot at the given path. The columns and indexes are adopted
+     *   as they are, so nothing is parsed or rehashed.
+     * @param snapshotPath the path of the snapshot.
+     * @return the Inventory.
+     * @throws IOException - if the snapshot cannot be read, or is not a valid snapshot.
+     */
+    public static Inventory loadColumnar(String snapshotPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(snapshotPath), StandardOpenOption.READ)) {
+            long snapshotSize = channel.size();
+            if (snapshotSize > Integer.MAX_VALUE) {
+                throw new IOException(String.format("Snapshot '%s' is too large to map.", snapshotPath));
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, snapshotSize);
+
+            readHeader(in, snapshotPath);
+            in.getLong();
+            long deliveryOffset = in.getLong();
+
+            ColumnarProductCatalog catalog = ColumnarProductCatalog.readFrom(in);
+            Inventory inventory = new Inventory(catalog);
+            for (int index = 0; index < catalog.size(); index++) {
+                inventory.setQtyAtIndex(index, in.getInt());
+            }
+            int discontinuedCount = in.getInt();
+            for (int i = 0; i < discontinuedCount; i++) {
+                inventory.discontinueAtIndex(in.getInt());
+            }
+            inventory.setDeliveryOffset(deliveryOffset);
+            if (in.hasRemaining()) {
+                throw new IOException(String.format("Snapshot '%s' has trailing bytes.", snapshotPath));
+            }
+            return inventory;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | NegativeArraySizeException e) {
+            throw new IOException(String.format("Snapshot '%s' is truncated or corrupt.", snapshotPath), e);
+        }
+    }
+
+    private static void readHeader(ByteBuffer in, String snapshotPath) throws IOException {
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) {
+            throw new IOException(String.format("'%s' is not an Inventory snapshot.", snapshotPath));
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("Snapshot '%s' has version=%d, expected version=%d.",
+                    snapshotPath, version, VERSION));
+        }
+    }
+
+    private static ColumnarProductCatalog toColumnar(ProductCatalog catalog, int productCount) {
+        if (catalog instanceof ColumnarProductCatalog) {
+            return (ColumnarProductCatalog) catalog;
+        }
+
+        // Copy in index order, so indexes match the Inventory's quantities
+        ColumnarProductCatalog columnarCatalog = new ColumnarProductCatalog();
+        for (int index = 0; index < productCount; index++) {
+            columnarCatalog.addProduct(catalog.getProduct(index));
+        }
+        return columnarCatalog;
+    }
+
+}
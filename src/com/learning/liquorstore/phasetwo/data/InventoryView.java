@@ -0,0 +1,174 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+
+/**
+ * An immutable view of the Inventory as of one point in time, from
+ *   Inventory.getView(). Every read of a view agrees with every other,
+ *   however the Inventory changes while it is read, so a report can scan
+ *   the whole catalog without holding off a single sale.
+ *
+ *   Products are never removed and the catalog only grows, so the view
+ *   only looks at the Products that existed when it was taken. It reads
+ *   them through a catalog Reader taken with it, and matches them against
+ *   a frozen copy of the filter bitmaps. Quantities are read from a frozen
+ *   copy of the quantity table. Edits to the catalog, such as a reloaded,
+ *   repriced or discontinued Product, copy what they change rather than
+ *   writing over it, so they never show through to earlier views.
+ */
+public class InventoryView {
+
+    // Only used to find a Product's index, which never changes
+    private final ProductCatalog productCatalog;
+    private final ProductCatalog.Reader catalogReader;
+    private final ProductFilterIndex filterIndex;
+    private final QuantityTable.Frozen productQuantities;
+
+    // The number of Products when the view was taken. Later ones have
+    //   higher indexes and are out of view.
+    private final int productCount;
+
+    // Increases with every view that differs from the one before
+    private final long version;
+
+    InventoryView(ProductCatalog productCatalog, ProductCatalog.Reader catalogReader, ProductFilterIndex filterIndex,
+            QuantityTable.Frozen productQuantities, int productCount, long version) {
+        this.productCatalog = productCatalog;
+        this.catalogReader = catalogReader;
+        this.filterIndex = filterIndex;
+        this.productQuantities = productQuantities;
+        this.productCount = productCount;
+        this.version = version;
+    }
+
+    /**
+     * Getter for the version. A later view with the same version has the
+     *   same contents.
+     * @return the version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of Products in the view.
+     * @return the number of Products.
+     */
+    public int getProductCount() {
+        return productCount;
+    }
+
+    /**
+     * Returns the Product corresponding to the given productId.
+     * @param productId the Id of the Product to return.
+     * @return the Product, or null if it wasn't in the Inventory when the
+     *   view was taken.
+     */
+    public Product getProductById(String productId) {
+        int index = indexOf(productId);
+        return index < 0 ? null : catalogReader.getProduct(index);
+    }
+
+    /**
+     * Lookup the quantity of a given Product as of the view.
+     * @param productId the Id of the Product to lookup.
+     * @return the Product's quantity.
+     */
+    public int getQtyForProduct(String productId) {
+        int index = indexOf(productId);
+        return index < 0 ? 0 : productQuantities.get(index);
+    }
+
+    /**
+     * Return a Set of all the Products, in catalog order.
+     * @return a Set of all the Products.
+     */
+    public Set<Product> getAllProducts() {
+        Set<Product> products = new LinkedHashSet<>();
+        for (int index = 0; index < productCount; index++) {
+            if (filterIndex.isListed(index)) {
+                products.add(catalogReader.getProduct(index));
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Returns all Products of the given AlcoholType.
+     * @param alcoholType the AlcoholType.
+     * @return the Set of Products, in catalog order.
+     */
+    public Set<Product> getProductsByAlcoholType(AlcoholType alcoholType) {
+        return findProducts(new ProductQuery().withAlcoholTypes(alcoholType));
+    }
+
+    /**
+     * Returns all Products of the given BottleSize.
+     * @param bottleSize the BottleSize.
+     * @return the Set of Products, in catalog order.
+     */
+    public Set<Product> getProductsByBottleSize(BottleSize bottleSize) {
+        return findProducts(new ProductQuery().withBottleSizes(bottleSize));
+    }
+
+    /**
+     * Returns every Product matching all the filters of the given query,
+     *   with in stock judged by the quantities as of the view.
+     * @param query the query.
+     * @return the Set of matching Products, in catalog order.
+     */
+    public Set<Product> findProducts(ProductQuery query) {
+        if (query.hasPriceRange() && query.getMinPriceInCents() > query.getMaxPriceInCents()) {
+            return Collections.emptySet();
+        }
+
+        // The live in stock bitmap may have changed since, so check stock
+        //   against the frozen quantities instead
+        Set<Product> products = new LinkedHashSet<>();
+        filterIndex.forEachMatch(query, false, catalogReader, productCount, 0, index -> {
+            if (!query.isInStockOnly() || productQuantities.get(index) > 0) {
+                products.add(catalogReader.getProduct(index));
+            }
+            return true;
+        });
+        return products;
+    }
+
+    /**
+     * Passes every Product that hasn't been discontinued and its quantity,
+     *   in catalog order, to the given consumer.
+     * @param productConsumer receives each Product and its quantity.
+     */
+    public void forEachProduct(ObjIntConsumer<Product> productConsumer) {
+        for (int index = 0; index < productCount; index++) {
+            if (filterIndex.isListed(index)) {
+                productConsumer.accept(catalogReader.getProduct(index), productQuantities.get(index));
+            }
+        }
+    }
+
+    /**
+     * Copies the quantity of every Product, in catalog index order.
+     * @return the quantities.
+     */
+    int[] copyQuantities() {
+        int[] quantities = new int[productCount];
+        for (int index = 0; index < productCount; index++) {
+            quantities[index] = productQuantities.get(index);
+        }
+        return quantities;
+    }
+
+    private int indexOf(String productId) {
+        int index = productCatalog.indexOf(productId);
+        return index < productCount ? index : -1;
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+
+/**
+ * Told when a Product's quantity falls below its reorder threshold, and
+ *   when it is restocked to the threshold or above. Registered with
+ *   Inventory.addLowStockListener().
+ *
+ *   Notifications are delivered one at a time, in the order the crossings
+ *   were seen, on a thread of their own, so a listener may take its time
+ *   and call back into the Inventory.
+ */
+public interface LowStockListener {
+
+    /**
+     * Called when a Product's quantity falls below its reorder threshold.
+     * @param product the Product.
+     * @param quantity the Product's quantity when the crossing was seen.
+     * @param threshold the Product's reorder threshold.
+     */
+    void onLowStock(Product product, int quantity, int threshold);
+
+    /**
+     * Called when a Product that was below its reorder threshold is back
+     *   at or above it, or its threshold was lowered or removed.
+     * @param product the Product.
+     * @param quantity the Product's quantity when the crossing was seen.
+     * @param threshold the Product's reorder threshold, 0 if it has none.
+     */
+    default void onRestocked(Product product, int quantity, int threshold) {
+    }
+
+}
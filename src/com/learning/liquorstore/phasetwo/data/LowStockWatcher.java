@@ -0,0 +1,216 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.util.Logger;
+
+/**
+ * Keeps the set of Products below their reorder threshold up to date as
+ *   quantities change, and tells LowStockListeners when a Product crosses
+ *   its threshold either way. A Product is below its threshold when it has
+ *   fewer units in stock than the threshold, so a threshold of 0 means it
+ *   is never reordered.
+ *
+ *   Each Product's threshold is its own if one was set, or else the
+ *   default for its AlcoholType. Both are resolved into one int per
+ *   Product when they are set, so checking a change costs a couple of
+ *   array reads, and nothing more for Products without a threshold.
+ */
+class LowStockWatcher {
+
+    private final ProductCatalog productCatalog;
+    private final QuantityTable quantities;
+
+    // The threshold of every Product, at its catalog index
+    private final QuantityTable thresholds = new QuantityTable();
+
+    // Thresholds set for single Products, by catalog index, which the
+    //   AlcoholType defaults don't override
+    private final Map<Integer, Integer> productThresholds = new ConcurrentHashMap<>();
+    private final int[] defaultThresholds = new int[AlcoholType.values().length];
+
+    // The Products below their threshold
+    private final Bitmap belowThreshold = new Bitmap();
+
+    // Held while flipping a Product's bit and queueing its notification.
+    //   Only taken when a Product crosses its threshold.
+    private final Object crossingLock = new Object();
+
+    private final List<LowStockListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Delivers notifications in order, off the threads changing quantities.
+    //   Started with the first listener.
+    private ExecutorService notifier;
+
+    LowStockWatcher(ProductCatalog productCatalog, QuantityTable quantities) {
+        this.productCatalog = productCatalog;
+        this.quantities = quantities;
+    }
+
+    /**
+     * Gives a newly added Product the default threshold of its AlcoholType.
+     * @param index the Product's index in the ProductCatalog.
+     * @param product the Product.
+     */
+    synchronized void addProduct(int index, Product product) {
+        int threshold = defaultThresholds[product.getAlcoholType().ordinal()];
+        if (threshold > 0) {
+            thresholds.set(index, threshold);
+            update(index);
+        }
+    }
+
+    /**
+     * Gives a Product whose AlcoholType may have changed the default
+     *   threshold of its new AlcoholType, unless it has its own.
+     * @param index the Product's index.
+     * @param product the Product's new values.
+     */
+    synchronized void updateProduct(int index, Product product) {
+        if (!productThresholds.containsKey(index)) {
+            thresholds.set(index, defaultThresholds[product.getAlcoholType().ordinal()]);
+            update(index);
+        }
+    }
+
+    /**
+     * Brings the Product at the given index in or out of the below
+     *   threshold set, and notifies the listeners if it crossed. Call after
+     *   every quantity change. As with the in stock bitmap, the check is
+     *   repeated until the quantity holds still, so when changes race, the
+     *   last one to finish leaves the set right. Racing changes may then
+     *   notify a crossing that was immediately undone. A crossing is flipped
+     *   and queued under the same lock, so notifications are queued in the
+     *   order the bit flipped, and alternate between low and restocked.
+     * @param index the Product's index.
+     */
+    void update(int index) {
+        if (thresholds.get(index) == 0 && !belowThreshold.get(index)) {
+            return;
+        }
+
+        int quantity;
+        int threshold;
+        do {
+            threshold = thresholds.get(index);
+            quantity = quantities.get(index);
+            boolean isBelowThreshold = quantity < threshold;
+            if (belowThreshold.get(index) != isBelowThreshold) {
+                synchronized (crossingLock) {
+                    if (belowThreshold.set(index, isBelowThreshold)) {
+                        notifyListeners(index, quantity, threshold, isBelowThreshold);
+                    }
+                }
+            }
+        } while (quantities.get(index) != quantity || thresholds.get(index) != threshold);
+    }
+
+    /**
+     * Sets the threshold of the Product at the given index, overriding the
+     *   default of its AlcoholType.
+     * @param index the Product's index.
+     * @param threshold the threshold.
+     */
+    synchronized void setThreshold(int index, int threshold) {
+        productThresholds.put(index, threshold);
+        thresholds.set(index, threshold);
+        update(index);
+    }
+
+    /**
+     * Returns the Product at the given index to the default threshold of
+     *   its AlcoholType.
+     * @param index the Product's index.
+     */
+    synchronized void clearThreshold(int index) {
+        productThresholds.remove(index);
+        thresholds.set(index, defaultThresholds[productCatalog.getProduct(index).getAlcoholType().ordinal()]);
+        update(index);
+    }
+
+    int getThreshold(int index) {
+        return thresholds.get(index);
+    }
+
+    /**
+     * Sets the threshold of every Product of the given AlcoholType without
+     *   a threshold of its own, including those added later.
+     * @param alcoholType the AlcoholType.
+     * @param threshold the threshold.
+     */
+    synchronized void setDefaultThreshold(AlcoholType alcoholType, int threshold) {
+        defaultThresholds[alcoholType.ordinal()] = threshold;
+        int productCount = productCatalog.size();
+        for (int index = 0; index < productCount; index++) {
+            if (productCatalog.getProduct(index).getAlcoholType() == alcoholType
+                    && !productThresholds.containsKey(index)) {
+                thresholds.set(index, threshold);
+                update(index);
+            }
+        }
+    }
+
+    /**
+     * Returns every Product below its threshold.
+     * @return the Products, in catalog order.
+     */
+    Set<Product> getProductsBelowThreshold() {
+        Set<Product> products = new LinkedHashSet<>();
+        int productCount = productCatalog.size();
+        int wordCount = (productCount + Long.SIZE - 1) / Long.SIZE;
+        for (int wordIndex = 0; wordIndex < wordCount; wordIndex++) {
+            long bits = belowThreshold.word(wordIndex);
+            while (bits != 0) {
+                products.add(productCatalog.getProduct(wordIndex * Long.SIZE + Long.numberOfTrailingZeros(bits)));
+                bits &= bits - 1;
+            }
+        }
+        return products;
+    }
+
+    synchronized void addListener(LowStockListener listener) {
+        if (notifier == null) {
+            notifier = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "low-stock-notifier");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        listeners.add(listener);
+    }
+
+    void removeListener(LowStockListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners(int index, int quantity, int threshold, boolean isBelowThreshold) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        notifier.execute(() -> {
+            Product product = productCatalog.getProduct(index);
+            for (LowStockListener listener : listeners) {
+                try {
+                    if (isBelowThreshold) {
+                        listener.onLowStock(product, quantity, threshold);
+                    } else {
+                        listener.onRestocked(product, quantity, threshold);
+                    }
+                } catch (RuntimeException e) {
+                    // One failing listener shouldn't keep the others from hearing
+                    Logger.debug("Low stock listener failed: %s", e.getMessage());
+                }
+            }
+        });
+    }
+
+}
@@ -0,0 +1,249 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A persistent array of longs or Objects, held as a 32-way trie of leaves
+ *   of 32 slots. withLong and withAll return a new version that shares
+ *   every node with this one but the path to each changed slot, so
+ *   changing one slot of n copies O(log n) of it, and a reader holding
+ *   this version never sees the change.
+ *
+ *   Slots past the size any reader knows of are filled in place by
+ *   appendLong and append, so adding a row costs no copy. Only the
+ *   catalog's single writer calls them, and it bumps the size afterwards.
+ */
+final class PersistentArray {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    // Batches with at least this many slots are applied in parallel
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private final boolean ofLongs;
+    // A leaf when shift is 0, otherwise an Object[] of children that are
+    //   null until a slot under them is appended
+    private final Object root;
+    private final int shift;
+
+    private PersistentArray(boolean ofLongs, Object root, int shift) {
+        this.ofLongs = ofLongs;
+        this.root = root;
+        this.shift = shift;
+    }
+
+    /**
+     * Returns an empty array of longs.
+     * @return the array.
+     */
+    static PersistentArray ofLongs() {
+        return new PersistentArray(true, new long[WIDTH], 0);
+    }
+
+    /**
+     * Returns an array of longs holding the first count of the given values.
+     * @param values the values.
+     * @param count how many of them to hold.
+     * @return the array.
+     */
+    static PersistentArray ofLongs(long[] values, int count) {
+        PersistentArray array = ofLongs();
+        for (int index = 0; index < count; index++) {
+            array = array.appendLong(index, values[index]);
+        }
+        return array;
+    }
+
+    /**
+     * Returns an empty array of Objects.
+     * @return the array.
+     */
+    static PersistentArray ofObjects() {
+        return new PersistentArray(false, new Object[WIDTH], 0);
+    }
+
+    long getLong(int index) {
+        return ((long[]) leaf(index))[index & MASK];
+    }
+
+    Object get(int index) {
+        return ((Object[]) leaf(index))[index & MASK];
+    }
+
+    /**
+     * Fills the slot at the given index in place. Only for a slot no
+     *   reader can see yet.
+     * @param index the index of the slot.
+     * @param value the value.
+     * @return this, or a deeper array sharing this one's nodes if the
+     *   index didn't fit.
+     */
+    PersistentArray appendLong(int index, long value) {
+        PersistentArray array = grownFor(index);
+        ((long[]) array.leafForAppend(index))[index & MASK] = value;
+        return array;
+    }
+
+    /**
+     * Same as appendLong, for an array of Objects.
+     * @param index the index of the slot.
+     * @param value the value.
+     * @return this, or a deeper array sharing this one's nodes if the
+     *   index didn't fit.
+     */
+    PersistentArray append(int index, Object value) {
+        PersistentArray array = grownFor(index);
+        ((Object[]) array.leafForAppend(index))[index & MASK] = value;
+        return array;
+    }
+
+    /**
+     * Returns a version with the slot at the given index changed, copying
+     *   only the path to it.
+     * @param index the index of a slot already filled.
+     * @param value the new value.
+     * @return the new version.
+     */
+    PersistentArray withLong(int index, long value) {
+        return withLongs(new int[] {index}, new long[] {value});
+    }
+
+    /**
+     * Returns a version with the slots at the given indexes changed. Each
+     *   node on a path to one of them is copied once, however many of its
+     *   slots change, and large batches are applied in parallel.
+     * @param indexes the indexes of slots already filled.
+     * @param values the new values, in the same order.
+     * @return the new version.
+     */
+    PersistentArray withLongs(int[] indexes, long[] values) {
+        return withSlots(indexes, values, null);
+    }
+
+    /**
+     * Same as withLong, for an array of Objects.
+     * @param index the index of a slot already filled.
+     * @param value the new value.
+     * @return the new version.
+     */
+    PersistentArray with(int index, Object value) {
+        return withAll(new int[] {index}, new Object[] {value});
+    }
+
+    /**
+     * Same as withLongs, for an array of Objects.
+     * @param indexes the indexes of slots already filled.
+     * @param values the new values, in the same order.
+     * @return the new version.
+     */
+    PersistentArray withAll(int[] indexes, Object[] values) {
+        return withSlots(indexes, null, values);
+    }
+
+    private Object leaf(int index) {
+        Object node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = ((Object[]) node)[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private PersistentArray grownFor(int index) {
+        PersistentArray array = this;
+        while (array.shift + BITS < Integer.SIZE - 1 && index >>> (array.shift + BITS) != 0) {
+            Object[] newRoot = new Object[WIDTH];
+            newRoot[0] = array.root;
+            array = new PersistentArray(ofLongs, newRoot, array.shift + BITS);
+        }
+        return array;
+    }
+
+    /**
+     * Finds the leaf holding the given index, adding any node missing on
+     *   the way in place. A missing node has no slot any reader can see.
+     */
+    private Object leafForAppend(int index) {
+        Object node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            Object[] children = (Object[]) node;
+            int slot = (index >>> level) & MASK;
+            if (children[slot] == null) {
+                children[slot] = level == BITS ? newLeaf() : new Object[WIDTH];
+            }
+            node = children[slot];
+        }
+        return node;
+    }
+
+    private Object newLeaf() {
+        return ofLongs ? new long[WIDTH] : new Object[WIDTH];
+    }
+
+    private PersistentArray withSlots(int[] indexes, long[] longValues, Object[] values) {
+        if (indexes.length == 0) {
+            return this;
+        }
+        // Sort the changes by index, keeping their order among equal
+        //   indexes so the last one wins
+        long[] changes = new long[indexes.length];
+        Arrays.setAll(changes, i -> (long) indexes[i] << Integer.SIZE | i);
+        if (changes.length >= PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(changes);
+        } else {
+            Arrays.sort(changes);
+        }
+        return new PersistentArray(ofLongs, copyPaths(root, shift, changes, 0, changes.length, longValues, values),
+                shift);
+    }
+
+    /**
+     * Copies the given node and, under it, every node on a path to one of
+     *   the changes from..to, then writes the changes to the copied leaves.
+     */
+    private Object copyPaths(Object node, int level, long[] changes, int from, int to, long[] longValues,
+                             Object[] values) {
+        if (level == 0) {
+            Object leaf = ofLongs ? ((long[]) node).clone() : ((Object[]) node).clone();
+            for (int i = from; i < to; i++) {
+                int slot = (int) (changes[i] >>> Integer.SIZE) & MASK;
+                int change = (int) changes[i];
+                if (ofLongs) {
+                    ((long[]) leaf)[slot] = longValues[change];
+                } else {
+                    ((Object[]) leaf)[slot] = values[change];
+                }
+            }
+            return leaf;
+        }
+
+        // Group the changes by the child they fall under
+        Object[] children = ((Object[]) node).clone();
+        int[] groupStarts = new int[WIDTH + 1];
+        int groupCount = 0;
+        for (int i = from; i < to; i++) {
+            if (i == from || childSlot(changes[i], level) != childSlot(changes[i - 1], level)) {
+                groupStarts[groupCount++] = i;
+            }
+        }
+        groupStarts[groupCount] = to;
+
+        IntStream groups = IntStream.range(0, groupCount);
+        if (to - from >= PARALLEL_THRESHOLD) {
+            groups = groups.parallel();
+        }
+        groups.forEach(group -> {
+            int slot = childSlot(changes[groupStarts[group]], level);
+            children[slot] = copyPaths(children[slot], level - BITS, changes, groupStarts[group],
+                    groupStarts[group + 1], longValues, values);
+        });
+        return children;
+    }
+
+    private static int childSlot(long change, int level) {
+        return (int) (change >>> Integer.SIZE) >>> level & MASK;
+    }
+
+}
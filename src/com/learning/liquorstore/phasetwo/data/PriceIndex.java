@@ -0,0 +1,304 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * A persistent index of Product indexes by price: a treap ordered by price
+ *   in cents, then by index. with, without and moved return a new index
+ *   that shares every node with this one but those on the paths they
+ *   change, O(log n) of them, so a reader holding this one never sees
+ *   the change. Priorities are a hash of the index, so the shape depends
+ *   only on the entries, and moving a Product keeps its priority.
+ *
+ *   Moving a large share of the entries at once rebuilds the index in
+ *   one in order pass instead.
+ */
+final class PriceIndex {
+
+    static final PriceIndex EMPTY = new PriceIndex(null, 0);
+
+    // Batches moving at least 1 / REBUILD_RATIO of the entries rebuild the index
+    private static final int REBUILD_RATIO = 16;
+
+    private final Node root;
+    private final int size;
+
+    /**
+     * Receives each entry of the index.
+     */
+    interface EntryConsumer {
+        void accept(long priceInCents, int index);
+    }
+
+    private PriceIndex(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Builds an index holding the given entries.
+     * @param pricesInCents the prices, in ascending order.
+     * @param indexes the index at each price, ascending among equal prices.
+     * @param count how many entries to hold.
+     * @return the index.
+     */
+    static PriceIndex build(long[] pricesInCents, int[] indexes, int count) {
+        // The right spine of the tree built so far. Nodes are still
+        //   private to this method, so their children can be set.
+        Node[] spine = new Node[Math.max(count, 1)];
+        int spineSize = 0;
+        for (int i = 0; i < count; i++) {
+            Node node = new Node(pricesInCents[i], indexes[i], null, null);
+            Node lastPopped = null;
+            while (spineSize > 0 && outranks(node.index, spine[spineSize - 1].index)) {
+                lastPopped = spine[--spineSize];
+            }
+            node.left = lastPopped;
+            if (spineSize > 0) {
+                spine[spineSize - 1].right = node;
+            }
+            spine[spineSize++] = node;
+        }
+        return new PriceIndex(spineSize == 0 ? null : spine[0], count);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns an index with the given entry added.
+     * @param priceInCents the Product's price.
+     * @param index the Product's index, not already in the index.
+     * @return the new index.
+     */
+    PriceIndex with(long priceInCents, int index) {
+        return new PriceIndex(insert(root, priceInCents, index), size + 1);
+    }
+
+    /**
+     * Returns an index with the given entry removed.
+     * @param priceInCents the Product's price.
+     * @param index the Product's index, already in the index at that price.
+     * @return the new index.
+     */
+    PriceIndex without(long priceInCents, int index) {
+        return new PriceIndex(delete(root, priceInCents, index), size - 1);
+    }
+
+    /**
+     * Returns an index with the given Product moved from one price to
+     *   another.
+     * @param index the Product's index.
+     * @param oldPriceInCents its price in this index.
+     * @param newPriceInCents its new price.
+     * @return the new index, or this one if the price didn't change.
+     */
+    PriceIndex moved(int index, long oldPriceInCents, long newPriceInCents) {
+        if (oldPriceInCents == newPriceInCents) {
+            return this;
+        }
+        return new PriceIndex(insert(delete(root, oldPriceInCents, index), newPriceInCents, index), size);
+    }
+
+    /**
+     * Returns an index with every given Product moved from its old price
+     *   to its new.
+     * @param indexes the Products' indexes, each at most once.
+     * @param oldPricesInCents their prices in this index, in the same order.
+     * @param newPricesInCents their new prices, in the same order.
+     * @return the new index.
+     */
+    PriceIndex movedAll(int[] indexes, long[] oldPricesInCents, long[] newPricesInCents) {
+        if ((long) indexes.length * REBUILD_RATIO < size) {
+            PriceIndex moved = this;
+            for (int i = 0; i < indexes.length; i++) {
+                moved = moved.moved(indexes[i], oldPricesInCents[i], newPricesInCents[i]);
+            }
+            return moved;
+        }
+
+        // Sort the moved entries by their new price, then merge them into
+        //   the rest in one in order pass
+        BitSet isMoving = new BitSet();
+        for (int index : indexes) {
+            isMoving.set(index);
+        }
+        Integer[] movedOrder = new Integer[indexes.length];
+        Arrays.setAll(movedOrder, i -> i);
+        Arrays.parallelSort(movedOrder, (a, b) -> compare(newPricesInCents[a], indexes[a],
+                newPricesInCents[b], indexes[b]));
+
+        long[] pricesInCents = new long[size];
+        int[] entryIndexes = new int[size];
+        int[] entryCount = {0};
+        int[] nextMoved = {0};
+        forEach((priceInCents, index) -> {
+            if (isMoving.get(index)) {
+                return;
+            }
+            while (nextMoved[0] < movedOrder.length) {
+                int moved = movedOrder[nextMoved[0]];
+                if (compare(newPricesInCents[moved], indexes[moved], priceInCents, index) > 0) {
+                    break;
+                }
+                pricesInCents[entryCount[0]] = newPricesInCents[moved];
+                entryIndexes[entryCount[0]++] = indexes[moved];
+                nextMoved[0]++;
+            }
+            pricesInCents[entryCount[0]] = priceInCents;
+            entryIndexes[entryCount[0]++] = index;
+        });
+        for (int i = nextMoved[0]; i < movedOrder.length; i++) {
+            pricesInCents[entryCount[0]] = newPricesInCents[movedOrder[i]];
+            entryIndexes[entryCount[0]++] = indexes[movedOrder[i]];
+        }
+        return build(pricesInCents, entryIndexes, entryCount[0]);
+    }
+
+    /**
+     * Passes the index of every Product priced from minCents to maxCents,
+     *   inclusive, to the indexConsumer, in price order.
+     * @param minCents the lowest price.
+     * @param maxCents the highest price.
+     * @param indexConsumer receives each index.
+     */
+    void forEachInRange(long minCents, long maxCents, IntConsumer indexConsumer) {
+        forEachInRange(root, minCents, maxCents, indexConsumer);
+    }
+
+    /**
+     * Passes every entry to the entryConsumer, in price order.
+     * @param entryConsumer receives each price and index.
+     */
+    void forEach(EntryConsumer entryConsumer) {
+        forEach(root, entryConsumer);
+    }
+
+    private static void forEachInRange(Node node, long minCents, long maxCents, IntConsumer indexConsumer) {
+        while (node != null) {
+            if (node.priceInCents >= minCents) {
+                forEachInRange(node.left, minCents, maxCents, indexConsumer);
+                if (node.priceInCents > maxCents) {
+                    return;
+                }
+                indexConsumer.accept(node.index);
+            }
+            node = node.right;
+        }
+    }
+
+    private static void forEach(Node node, EntryConsumer entryConsumer) {
+        while (node != null) {
+            forEach(node.left, entryConsumer);
+            entryConsumer.accept(node.priceInCents, node.index);
+            node = node.right;
+        }
+    }
+
+    private static Node insert(Node node, long priceInCents, int index) {
+        if (node == null) {
+            return new Node(priceInCents, index, null, null);
+        }
+        if (outranks(index, node.index)) {
+            Node[] halves = split(node, priceInCents, index);
+            return new Node(priceInCents, index, halves[0], halves[1]);
+        }
+        if (compare(priceInCents, index, node.priceInCents, node.index) < 0) {
+            return new Node(node.priceInCents, node.index, insert(node.left, priceInCents, index), node.right);
+        }
+        return new Node(node.priceInCents, node.index, node.left, insert(node.right, priceInCents, index));
+    }
+
+    /**
+     * Splits the tree under the given node into the entries before the
+     *   given one and those after it.
+     */
+    private static Node[] split(Node node, long priceInCents, int index) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (compare(node.priceInCents, node.index, priceInCents, index) < 0) {
+            Node[] halves = split(node.right, priceInCents, index);
+            halves[0] = new Node(node.priceInCents, node.index, node.left, halves[0]);
+            return halves;
+        }
+        Node[] halves = split(node.left, priceInCents, index);
+        halves[1] = new Node(node.priceInCents, node.index, halves[1], node.right);
+        return halves;
+    }
+
+    private static Node delete(Node node, long priceInCents, int index) {
+        if (node == null) {
+            throw new IllegalStateException("Index " + index + " isn't in the price index at " + priceInCents + ".");
+        }
+        int comparison = compare(priceInCents, index, node.priceInCents, node.index);
+        if (comparison == 0) {
+            return merge(node.left, node.right);
+        } else if (comparison < 0) {
+            return new Node(node.priceInCents, node.index, delete(node.left, priceInCents, index), node.right);
+        }
+        return new Node(node.priceInCents, node.index, node.left, delete(node.right, priceInCents, index));
+    }
+
+    /**
+     * Joins two trees, every entry of the first before every entry of the second.
+     */
+    private static Node merge(Node before, Node after) {
+        if (before == null) {
+            return after;
+        } else if (after == null) {
+            return before;
+        } else if (outranks(before.index, after.index)) {
+            return new Node(before.priceInCents, before.index, before.left, merge(before.right, after));
+        }
+        return new Node(after.priceInCents, after.index, merge(before, after.left), after.right);
+    }
+
+    private static int compare(long priceInCents, int index, long otherPriceInCents, int otherIndex) {
+        int comparison = Long.compare(priceInCents, otherPriceInCents);
+        return comparison != 0 ? comparison : Integer.compare(index, otherIndex);
+    }
+
+    /**
+     * Whether the entry for one index belongs above the entry for another.
+     */
+    private static boolean outranks(int index, int otherIndex) {
+        int priority = priority(index);
+        int otherPriority = priority(otherIndex);
+        return priority != otherPriority ? priority > otherPriority : index > otherIndex;
+    }
+
+    private static int priority(int index) {
+        // The finalizer of MurmurHash3, so neighbouring indexes get unrelated priorities
+        int hash = index;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * An entry of the treap. Never changed once the index holding it is
+     *   published, only build sets the children of nodes it just created.
+     */
+    private static final class Node {
+
+        private final long priceInCents;
+        private final int index;
+        private Node left;
+        private Node right;
+
+        Node(long priceInCents, int index, Node left, Node right) {
+            this.priceInCents = priceInCents;
+            this.index = index;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.Arrays;
+
+import com.learning.liquorstore.phasetwo.util.PriceConverter;
+
+/**
+ * A sheet of new prices to apply to an Inventory all at once, e.g. a
+ *   weekly promotion. Lines are kept in the order they were added. When
+ *   the same productId appears on more than one line, the last one wins.
+ */
+public class PriceSheet {
+
+    private String[] productIds;
+    private long[] pricesInCents;
+    private int size;
+
+    /**
+     * Constructor for PriceSheet.
+     * @param expectedLines roughly how many lines will be added.
+     */
+    public PriceSheet(int expectedLines) {
+        productIds = new String[Math.max(expectedLines, 1)];
+        pricesInCents = new long[productIds.length];
+    }
+
+    /**
+     * Adds a line to the sheet.
+     * @param productId the Id of the Product.
+     * @param price the Product's new price.
+     * @return this, for chaining.
+     * @throws IllegalArgumentException - if the price is negative.
+     */
+    public PriceSheet add(String productId, double price) {
+        if (price < 0) {
+            throw new IllegalArgumentException("Price must not be negative for productId='" + productId + "'.");
+        }
+        if (size == productIds.length) {
+            productIds = Arrays.copyOf(productIds, size * 2);
+            pricesInCents = Arrays.copyOf(pricesInCents, size * 2);
+        }
+        productIds[size] = productId;
+        pricesInCents[size] = PriceConverter.toCents(price);
+        size++;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getProductId(int line) {
+        return productIds[line];
+    }
+
+    public long getPriceInCents(int line) {
+        return pricesInCents[line];
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.Set;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+
+/**
+ * The master record of every Product in the Inventory, along with the
+ *   lookups the Inventory needs by productId, AlcoholType, BottleSize
+ *   and price. Every Product gets a dense index, counting up from 0 in
+ *   the order Products were added.
+ */
+public interface ProductCatalog {
+
+    /**
+     * Adds a new Product to the catalog.
+     * @param product the new Product.
+     * @return the Product's index, or -1 if a Product with the same productId already exists.
+     */
+    int addProduct(Product product);
+
+    /**
+     * Replaces the name, AlcoholType, BottleSize and price of the Product
+     *   at the given index, and moves it between the lookups to match.
+     *   The Product keeps its index. Lookups racing the update may briefly
+     *   find the Product under its old values, or miss it.
+     * @param index the Product's index.
+     * @param product the Product's new values, with the same productId.
+     */
+    default void updateProduct(int index, Product product) {
+        updateProducts(new int[] {index}, new Product[] {product});
+    }
+
+    /**
+     * Replaces the values of the Products at the given indexes all at once,
+     *   as updateProduct does for one. The Products handed out before are
+     *   never written over. New ones are built beside them and published
+     *   together, so a Reader sees every old value or every new one, and
+     *   the copying is done once for the whole batch.
+     * @param indexes the Products' indexes, each at most once.
+     * @param products the Products' new values in the same order, each
+     *   with the same productId as before.
+     */
+    void updateProducts(int[] indexes, Product[] products);
+
+    /**
+     * Replaces the price of the Product at the given index, and moves it
+     *   in the price lookup. Like updateProduct, the Product handed out
+     *   before keeps its old price. The old price is read and replaced in
+     *   one step, so racing reprices each get the price they replaced.
+     * @param index the Product's index.
+     * @param priceInCents the new price in cents.
+     * @return the price in cents it replaced.
+     */
+    long updatePrice(int index, long priceInCents);
+
+    /**
+     * Replaces the prices of the Products at the given indexes all at once,
+     *   e.g. for a price sheet. The new prices and lookups are built beside
+     *   the old, sharing whatever is unchanged, then published together,
+     *   so a lookup or Reader sees either every old price or every new one.
+     * @param indexes the Products' indexes, each at most once.
+     * @param pricesInCents the new price in cents of each, in the same order.
+     */
+    void updatePrices(int[] indexes, long[] pricesInCents);
+
+    /**
+     * Looks up the index of the Product with the given productId.
+     * @param productId the Id of the Product.
+     * @return the Product's index, or -1 if it doesn't exist.
+     */
+    int indexOf(String productId);
+
+    /**
+     * Returns the Product at the given index.
+     * @param index the Product's index.
+     * @return the Product.
+     */
+    Product getProduct(int index);
+
+    /**
+     * Returns the price in cents of the Product at the given index.
+     * @param index the Product's index.
+     * @return the price in cents.
+     */
+    default long getPriceInCents(int index) {
+        return getProduct(index).getPriceInCents();
+    }
+
+    /**
+     * Returns the Product with the given productId.
+     * @param productId the Id of the Product.
+     * @return the Product, or null if it doesn't exist.
+     */
+    default Product getProduct(String productId) {
+        int index = indexOf(productId);
+        return index < 0 ? null : getProduct(index);
+    }
+
+    /**
+     * Returns a Reader of the Products as they are now. Prices published by
+     *   a later updatePrices don't show through it, so a scan that reads
+     *   every Product through the same Reader sees a single price sheet.
+     *   Read the size before taking the Reader, so it has every Product
+     *   counted.
+     * @return the Reader.
+     */
+    Reader getReader();
+
+    /**
+     * Returns the number of Products in the catalog.
+     * @return the number of Products.
+     */
+    int size();
+
+    /**
+     * Returns a Set of all the Products.
+     * @return a Set of all the Products.
+     */
+    Set<Product> getAllProducts();
+
+    /**
+     * Returns all Products of the given AlcoholType.
+     * @param alcoholType the AlcoholType.
+     * @return the Set of Products.
+     */
+    Set<Product> getProductsByAlcoholType(AlcoholType alcoholType);
+
+    /**
+     * Returns all Products of the given BottleSize.
+     * @param bottleSize the BottleSize.
+     * @return the Set of Products.
+     */
+    Set<Product> getProductsByBottleSize(BottleSize bottleSize);
+
+    /**
+     * Returns all Products with a price between minCents and maxCents
+     *   inclusive, in price order.
+     * @param minCents the minimum price in cents.
+     * @param maxCents the maximum price in cents.
+     * @return the Set of Products in range.
+     */
+    Set<Product> getProductsInPriceRange(long minCents, long maxCents);
+
+    /**
+     * Reads Products and their prices by index, from getReader.
+     */
+    interface Reader {
+
+        /**
+         * Returns the Product at the given index.
+         * @param index the Product's index.
+         * @return the Product.
+         */
+        Product getProduct(int index);
+
+        /**
+         * Returns the price in cents of the Product at the given index.
+         * @param index the Product's index.
+         * @return the price in cents.
+         */
+        long getPriceInCents(int index);
+    }
+
+}
@@ -0,0 +1,229 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.EnumSet;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+
+/**
+ * Bitmaps over Product indexes, one per AlcoholType, one per BottleSize
+ *   and one for Products in stock. A ProductQuery is answered by ANDing
+ *   the bitmaps of its filters 64 Products at a time, and checking the
+ *   price of only the Products that survive.
+ *
+ *   Product indexes are dense, so the bitmaps are plain words rather than
+ *   compressed, at 14 bits per Product in total. Products are never
+ *   removed, but a Product that is no longer sold is left out of every
+ *   match by clearing its bit in the listed bitmap.
+ */
+class ProductFilterIndex {
+
+    private final Bitmap[] byAlcoholType;
+    private final Bitmap[] byBottleSize;
+    private final Bitmap inStock;
+    private final Bitmap listed;
+
+    ProductFilterIndex() {
+        this(newBitmaps(AlcoholType.values().length), newBitmaps(BottleSize.values().length), new Bitmap(),
+                new Bitmap());
+    }
+
+    private ProductFilterIndex(Bitmap[] byAlcoholType, Bitmap[] byBottleSize, Bitmap inStock, Bitmap listed) {
+        this.byAlcoholType = byAlcoholType;
+        this.byBottleSize = byBottleSize;
+        this.inStock = inStock;
+        this.listed = listed;
+    }
+
+    /**
+     * Freezes the AlcoholType, BottleSize and listed bitmaps as they are
+     *   now, for an InventoryView. Must not be called while any of them is
+     *   being written. The in stock bitmap is left out, as a view checks
+     *   stock against its own frozen quantities.
+     * @return the frozen index. Its in stock bitmap is empty.
+     */
+    ProductFilterIndex freeze() {
+        return new ProductFilterIndex(freeze(byAlcoholType), freeze(byBottleSize), new Bitmap(), listed.freeze());
+    }
+
+    private static Bitmap[] freeze(Bitmap[] bitmaps) {
+        Bitmap[] frozenBitmaps = new Bitmap[bitmaps.length];
+        for (int i = 0; i < bitmaps.length; i++) {
+            frozenBitmaps[i] = bitmaps[i].freeze();
+        }
+        return frozenBitmaps;
+    }
+
+    /**
+     * Adds the Product at the given index to the bitmaps of its
+     *   AlcoholType and BottleSize.
+     * @param index the Product's index in the ProductCatalog.
+     * @param product the Product.
+     */
+    void addProduct(int index, Product product) {
+        byAlcoholType[product.getAlcoholType().ordinal()].set(index, true);
+        byBottleSize[product.getBottleSize().ordinal()].set(index, true);
+        listed.set(index, true);
+    }
+
+    /**
+     * Moves the Product at the given index to the bitmaps of its new
+     *   AlcoholType and BottleSize. The new bit is set before the old one
+     *   is cleared, so a racing query may briefly see the Product under
+     *   both, but never under neither.
+     * @param index the Product's index.
+     * @param oldAlcoholType the Product's old AlcoholType.
+     * @param oldBottleSize the Product's old BottleSize.
+     * @param product the Product's new values.
+     */
+    void updateProduct(int index, AlcoholType oldAlcoholType, BottleSize oldBottleSize, Product product) {
+        if (oldAlcoholType != product.getAlcoholType()) {
+            byAlcoholType[product.getAlcoholType().ordinal()].set(index, true);
+            byAlcoholType[oldAlcoholType.ordinal()].set(index, false);
+        }
+        if (oldBottleSize != product.getBottleSize()) {
+            byBottleSize[product.getBottleSize().ordinal()].set(index, true);
+            byBottleSize[oldBottleSize.ordinal()].set(index, false);
+        }
+    }
+
+    /**
+     * Lists or delists the Product at the given index.
+     * @param index the Product's index.
+     * @param isListed whether the Product is sold.
+     * @return whether the Product's listing changed.
+     */
+    boolean setListed(int index, boolean isListed) {
+        return listed.set(index, isListed);
+    }
+
+    boolean isListed(int index) {
+        return listed.get(index);
+    }
+
+    /**
+     * Brings the in-stock bit of the Product at the given index up to date
+     *   with its quantity. Call after every quantity change. The bit is
+     *   re-checked until the quantity holds still, so when changes race,
+     *   the last one to finish leaves the bit matching the final quantity.
+     * @param index the Product's index.
+     * @param quantities the quantities.
+     * @return whether the bit changed.
+     */
+    boolean updateInStock(int index, QuantityTable quantities) {
+        boolean isChanged = false;
+        int quantity;
+        do {
+            quantity = quantities.get(index);
+            isChanged |= inStock.set(index, quantity > 0);
+        } while (quantities.get(index) != quantity);
+        return isChanged;
+    }
+
+    /**
+     * Passes the index of every Product matching the AlcoholType, BottleSize
+     *   and in stock filters of the given query, in index order, to the
+     *   matchConsumer. The price filter is checked against the catalog.
+     * @param query the query.
+     * @param productCount the number of Products to consider.
+     * @param catalogReader a Reader of the catalog, for prices.
+     * @param matchConsumer receives each matching index.
+     */
+    void forEachMatch(ProductQuery query, int productCount, ProductCatalog.Reader catalogReader,
+            IntConsumer matchConsumer) {
+        forEachMatch(query, true, catalogReader, productCount, 0, index -> {
+            matchConsumer.accept(index);
+            return true;
+        });
+    }
+
+    /**
+     * Passes the index of each Product matching the given query, starting
+     *   at fromIndex and in index order, to the matchPredicate until it
+     *   returns false. Only the words of the bitmaps from fromIndex on are
+     *   read, so stopping early costs no more than the matches passed.
+     * @param query the query.
+     * @param useInStockBitmap whether to apply the query's in stock filter.
+     *   Callers reading quantities as of an earlier point in time check
+     *   stock themselves instead.
+     * @param catalogReader a Reader of the catalog, for prices.
+     * @param productCount the number of Products to consider. Products are
+     *   never removed from the bitmaps, so their bits below any earlier
+     *   catalog size only change when the catalog is edited.
+     * @param fromIndex the first index to consider.
+     * @param matchPredicate receives each matching index, and returns
+     *   whether to keep going.
+     */
+    void forEachMatch(ProductQuery query, boolean useInStockBitmap, ProductCatalog.Reader catalogReader,
+            int productCount, int fromIndex, IntPredicate matchPredicate) {
+        Bitmap[] alcoholTypeBitmaps = select(byAlcoholType, query.getAlcoholTypes());
+        Bitmap[] bottleSizeBitmaps = select(byBottleSize, query.getBottleSizes());
+
+        int wordCount = (productCount + Long.SIZE - 1) / Long.SIZE;
+        for (int wordIndex = fromIndex / Long.SIZE; wordIndex < wordCount; wordIndex++) {
+            // Drop the bits past the last Product, and before fromIndex
+            long bits = wordIndex == wordCount - 1 && (productCount & (Long.SIZE - 1)) != 0
+                    ? (1L << (productCount & (Long.SIZE - 1))) - 1
+                    : -1L;
+            if (wordIndex == fromIndex / Long.SIZE) {
+                bits &= -1L << (fromIndex & (Long.SIZE - 1));
+            }
+            bits &= listed.word(wordIndex);
+            if (alcoholTypeBitmaps != null && bits != 0) {
+                bits &= or(alcoholTypeBitmaps, wordIndex);
+            }
+            if (bottleSizeBitmaps != null && bits != 0) {
+                bits &= or(bottleSizeBitmaps, wordIndex);
+            }
+            if (useInStockBitmap && query.isInStockOnly() && bits != 0) {
+                bits &= inStock.word(wordIndex);
+            }
+
+            while (bits != 0) {
+                int index = wordIndex * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (query.hasPriceRange()) {
+                    long priceInCents = catalogReader.getPriceInCents(index);
+                    if (priceInCents < query.getMinPriceInCents() || priceInCents > query.getMaxPriceInCents()) {
+                        continue;
+                    }
+                }
+                if (!matchPredicate.test(index)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static <E extends Enum<E>> Bitmap[] select(Bitmap[] bitmaps, EnumSet<E> values) {
+        if (values == null) {
+            return null;
+        }
+        Bitmap[] selected = new Bitmap[values.size()];
+        int i = 0;
+        for (E value : values) {
+            selected[i++] = bitmaps[value.ordinal()];
+        }
+        return selected;
+    }
+
+    private static long or(Bitmap[] bitmaps, int wordIndex) {
+        long bits = 0;
+        for (Bitmap bitmap : bitmaps) {
+            bits |= bitmap.word(wordIndex);
+        }
+        return bits;
+    }
+
+    private static Bitmap[] newBitmaps(int count) {
+        Bitmap[] bitmaps = new Bitmap[count];
+        for (int i = 0; i < count; i++) {
+            bitmaps[i] = new Bitmap();
+        }
+        return bitmaps;
+    }
+
+}
@@ -0,0 +1,308 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Finds Products by part of their name, ignoring case. Matches are
+ *   ranked: names that start with the query first, then names with a word
+ *   that starts with the query, then names containing it anywhere. Within
+ *   a rank, Products come in catalog order.
+ *
+ *   Word starts are found from a sorted index of the words in each name.
+ *   Only when they don't fill the limit are matches anywhere looked up, in
+ *   an inverted index of every three character sequence (trigram) in each
+ *   name, so queries shorter than three characters only match word starts.
+ *   Both lookups stop as soon as nothing later could rank higher.
+ */
+class ProductNameIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final int NAME_PREFIX = 0;
+    private static final int WORD_PREFIX = 1;
+    private static final int SUBSTRING = 2;
+    private static final int RANK_COUNT = 3;
+
+    // Catalog indexes of the names containing each trigram, keyed by the
+    //   trigram's chars packed into a long.
+    private final Map<Long, IndexList> indexesByTrigram = new ConcurrentHashMap<>();
+
+    // Catalog indexes of the names containing each word
+    private final NavigableMap<String, IndexList> indexesByWord = new ConcurrentSkipListMap<>();
+
+    /**
+     * Adds the name of the Product at the given index. When a Product is
+     *   renamed, its new name is added alongside the old, and candidates
+     *   are always ranked against the current name, so the old one no
+     *   longer matches.
+     * @param index the Product's index in the ProductCatalog.
+     * @param name the Product's name.
+     */
+    synchronized void addName(int index, String name) {
+        String normalizedName = normalize(name);
+
+        // A name may contain the same trigram or word twice
+        Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= normalizedName.length(); i++) {
+            trigrams.add(trigram(normalizedName, i));
+        }
+        for (Long trigram : trigrams) {
+            indexesByTrigram.computeIfAbsent(trigram, key -> new IndexList()).add(index);
+        }
+        for (String word : new HashSet<>(words(normalizedName))) {
+            indexesByWord.computeIfAbsent(word, key -> new IndexList()).add(index);
+        }
+    }
+
+    /**
+     * Finds the best matches for the given query.
+     * @param query part of a name.
+     * @param limit the maximum number of matches.
+     * @param productCatalog the catalog, for checking candidate names.
+     * @param candidateFilter whether the Product at an index may match.
+     * @return the catalog indexes of the matches, best first.
+     */
+    int[] find(String query, int limit, ProductCatalog productCatalog, IntPredicate candidateFilter) {
+        String normalizedQuery = normalize(query);
+        if (normalizedQuery.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+
+        Ranking ranking = new Ranking(limit);
+        // A match at a word start begins with a word starting with the
+        //   query's leading word
+        int leadingWordLength = 0;
+        while (leadingWordLength < normalizedQuery.length()
+                && Character.isLetterOrDigit(normalizedQuery.charAt(leadingWordLength))) {
+            leadingWordLength++;
+        }
+        boolean wordStartsFound = leadingWordLength > 0;
+        if (wordStartsFound) {
+            findByWordPrefix(normalizedQuery, normalizedQuery.substring(0, leadingWordLength), productCatalog,
+                    candidateFilter, ranking);
+        }
+        if (!ranking.isFull(SUBSTRING) && normalizedQuery.length() >= GRAM_LENGTH) {
+            findByTrigrams(normalizedQuery, productCatalog, candidateFilter, ranking,
+                    wordStartsFound ? SUBSTRING : NAME_PREFIX);
+        }
+        return ranking.best();
+    }
+
+    private void findByTrigrams(String normalizedQuery, ProductCatalog productCatalog, IntPredicate candidateFilter,
+            Ranking ranking, int bestRemainingRank) {
+        int gramCount = normalizedQuery.length() - GRAM_LENGTH + 1;
+        IndexList[] postings = new IndexList[gramCount];
+        for (int i = 0; i < gramCount; i++) {
+            postings[i] = indexesByTrigram.get(trigram(normalizedQuery, i));
+            if (postings[i] == null) {
+                return;
+            }
+        }
+
+        // Walk the shortest list, and look each candidate up in the others
+        Arrays.sort(postings, Comparator.comparingInt(IndexList::size));
+        int candidateCount = postings[0].size;
+        int[] candidates = postings[0].indexes;
+        for (int i = 0; i < candidateCount && !ranking.isFull(bestRemainingRank); i++) {
+            int index = candidates[i];
+            boolean inAll = true;
+            for (int p = 1; p < postings.length && inAll; p++) {
+                inAll = postings[p].contains(index);
+            }
+            if (inAll && candidateFilter.test(index)) {
+                int rank = rank(productCatalog.getProduct(index).getName(), normalizedQuery);
+                if (rank >= bestRemainingRank) {
+                    ranking.offer(index, rank);
+                }
+            }
+        }
+    }
+
+    private void findByWordPrefix(String normalizedQuery, String leadingWord, ProductCatalog productCatalog,
+            IntPredicate candidateFilter, Ranking ranking) {
+        // Every word that starts with the leading word, merged back into
+        //   catalog order
+        List<IndexList> matchingWords = new ArrayList<>(indexesByWord.subMap(
+                leadingWord, true, leadingWord + Character.MAX_VALUE, false).values());
+        int[][] postings = new int[matchingWords.size()][];
+        int[] postingSizes = new int[postings.length];
+        for (int p = 0; p < postings.length; p++) {
+            postingSizes[p] = matchingWords.get(p).size;
+            postings[p] = matchingWords.get(p).indexes;
+        }
+
+        int[] cursors = new int[postings.length];
+        int lastIndex = -1;
+        while (!ranking.isFull(NAME_PREFIX)) {
+            int nextIndex = Integer.MAX_VALUE;
+            for (int p = 0; p < postings.length; p++) {
+                if (cursors[p] < postingSizes[p] && postings[p][cursors[p]] == lastIndex) {
+                    cursors[p]++;
+                }
+                if (cursors[p] < postingSizes[p]) {
+                    nextIndex = Math.min(nextIndex, postings[p][cursors[p]]);
+                }
+            }
+            if (nextIndex == Integer.MAX_VALUE) {
+                return;
+            }
+            // Substring matches are left to the trigrams
+            int rank = candidateFilter.test(nextIndex)
+                    ? rank(productCatalog.getProduct(nextIndex).getName(), normalizedQuery)
+                    : -1;
+            if (rank < SUBSTRING) {
+                ranking.offer(nextIndex, rank);
+            }
+            lastIndex = nextIndex;
+        }
+    }
+
+    /**
+     * Ranks how well the name matches the query, or -1 if it doesn't.
+     */
+    private static int rank(String name, String normalizedQuery) {
+        String normalizedName = normalize(name);
+        int matchStart = normalizedName.indexOf(normalizedQuery);
+        if (matchStart < 0) {
+            return -1;
+        } else if (matchStart == 0) {
+            return NAME_PREFIX;
+        }
+        while (matchStart >= 0) {
+            if (!Character.isLetterOrDigit(normalizedName.charAt(matchStart - 1))) {
+                return WORD_PREFIX;
+            }
+            matchStart = normalizedName.indexOf(normalizedQuery, matchStart + 1);
+        }
+        return SUBSTRING;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static long trigram(String normalizedName, int start) {
+        return (long) normalizedName.charAt(start) << 32
+                | (long) normalizedName.charAt(start + 1) << 16
+                | normalizedName.charAt(start + 2);
+    }
+
+    private static List<String> words(String normalizedName) {
+        List<String> words = new ArrayList<>();
+        int wordStart = -1;
+        for (int i = 0; i <= normalizedName.length(); i++) {
+            boolean inWord = i < normalizedName.length() && Character.isLetterOrDigit(normalizedName.charAt(i));
+            if (inWord && wordStart < 0) {
+                wordStart = i;
+            } else if (!inWord && wordStart >= 0) {
+                words.add(normalizedName.substring(wordStart, i));
+                wordStart = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Keeps the first limit matches of each rank.
+     */
+    private static class Ranking {
+
+        private final int limit;
+        private final int[][] matches = new int[RANK_COUNT][];
+        private final int[] matchCounts = new int[RANK_COUNT];
+
+        Ranking(int limit) {
+            this.limit = limit;
+            for (int rank = 0; rank < RANK_COUNT; rank++) {
+                matches[rank] = new int[limit];
+            }
+        }
+
+        void offer(int index, int rank) {
+            if (rank >= 0 && matchCounts[rank] < limit) {
+                matches[rank][matchCounts[rank]++] = index;
+            }
+        }
+
+        /**
+         * Whether the best matches are settled, given that matches still to
+         *   be offered rank no better than bestRemainingRank and come later
+         *   in catalog order than those already offered.
+         */
+        boolean isFull(int bestRemainingRank) {
+            int count = 0;
+            for (int rank = 0; rank <= bestRemainingRank; rank++) {
+                count += matchCounts[rank];
+            }
+            return count >= limit;
+        }
+
+        int[] best() {
+            int[] best = new int[limit];
+            int count = 0;
+            for (int rank = 0; rank < RANK_COUNT && count < limit; rank++) {
+                int taken = Math.min(matchCounts[rank], limit - count);
+                System.arraycopy(matches[rank], 0, best, count, taken);
+                count += taken;
+            }
+            return Arrays.copyOf(best, count);
+        }
+    }
+
+    /**
+     * An ascending list of catalog indexes that can be read while it is
+     *   added to. Readers must read size before indexes.
+     */
+    private static class IndexList {
+
+        private volatile int[] indexes = new int[2];
+        private volatile int size;
+
+        void add(int index) {
+            int count = size;
+            int[] current = indexes;
+            if (Arrays.binarySearch(current, 0, count, index) >= 0) {
+                // A renamed Product sharing a word or trigram with its old name
+                return;
+            }
+            if (count > 0 && current[count - 1] > index) {
+                // Products added concurrently can arrive slightly out of
+                //   order. Insert into a copy, so readers never see a shift.
+                int position = -Arrays.binarySearch(current, 0, count, index) - 1;
+                int[] inserted = new int[Math.max(current.length, count + 1)];
+                System.arraycopy(current, 0, inserted, 0, position);
+                inserted[position] = index;
+                System.arraycopy(current, position, inserted, position + 1, count - position);
+                indexes = inserted;
+            } else {
+                if (count == current.length) {
+                    current = Arrays.copyOf(current, count * 2);
+                }
+                current[count] = index;
+                indexes = current;
+            }
+            size = count + 1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean contains(int index) {
+            int count = size;
+            return Arrays.binarySearch(indexes, 0, count, index) >= 0;
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.List;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+
+/**
+ * One page of the Products matching a ProductQuery, in the order the
+ *   Products were added to the catalog, and the cursor to continue from.
+ *   Products are only ever appended to the catalog, so a cursor stays
+ *   valid however much the Inventory changes: the next page starts right
+ *   after the last Product of this one, and Products added since show up
+ *   on the last pages.
+ */
+public class ProductPage {
+
+    private final List<Product> products;
+    private final String nextCursor;
+
+    ProductPage(List<Product> products, String nextCursor) {
+        this.products = products;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Getter for the Products on this page.
+     * @return the Products, in catalog order.
+     */
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * Getter for the cursor of the next page.
+     * @return the cursor to pass to Inventory.getProductPage, or null if
+     *   this is the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNextPage() {
+        return nextCursor != null;
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.EnumSet;
+
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+import com.learning.liquorstore.phasetwo.util.PriceConverter;
+
+/**
+ * A combination of filters to find Products by, e.g. every SCOTCH in a
+ *   HANDLE priced from $30 to $60 that is in stock. Filters that aren't
+ *   set match every Product.
+ */
+public class ProductQuery {
+
+    // null matches any AlcoholType or BottleSize
+    private EnumSet<AlcoholType> alcoholTypes;
+    private EnumSet<BottleSize> bottleSizes;
+
+    // A bound that wasn't set leaves that end of the range open
+    private boolean hasPriceRange;
+    private long minPriceInCents = Long.MIN_VALUE;
+    private long maxPriceInCents = Long.MAX_VALUE;
+
+    private boolean inStockOnly;
+
+    /**
+     * Only match Products of one of the given AlcoholTypes.
+     * @param alcoholTypes the AlcoholTypes.
+     * @return this, for chaining.
+     */
+    public ProductQuery withAlcoholTypes(AlcoholType... alcoholTypes) {
+        this.alcoholTypes = EnumSet.noneOf(AlcoholType.class);
+        for (AlcoholType alcoholType : alcoholTypes) {
+            this.alcoholTypes.add(alcoholType);
+        }
+        return this;
+    }
+
+    /**
+     * Only match Products of one of the given BottleSizes.
+     * @param bottleSizes the BottleSizes.
+     * @return this, for chaining.
+     */
+    public ProductQuery withBottleSizes(BottleSize... bottleSizes) {
+        this.bottleSizes = EnumSet.noneOf(BottleSize.class);
+        for (BottleSize bottleSize : bottleSizes) {
+            this.bottleSizes.add(bottleSize);
+        }
+        return this;
+    }
+
+    /**
+     * Only match Products with a price between min and max inclusive.
+     * @param min the minimum price.
+     * @param max the maximum price.
+     * @return this, for chaining.
+     */
+    public ProductQuery withPriceRange(double min, double max) {
+        hasPriceRange = true;
+        minPriceInCents = PriceConverter.toCentsRoundingUp(min);
+        maxPriceInCents = PriceConverter.toCentsRoundingDown(max);
+        return this;
+    }
+
+    /**
+     * Only match Products with a price of at least min.
+     * @param min the minimum price.
+     * @return this, for chaining.
+     */
+    public ProductQuery withMinPrice(double min) {
+        hasPriceRange = true;
+        minPriceInCents = PriceConverter.toCentsRoundingUp(min);
+        return this;
+    }
+
+    /**
+     * Only match Products with a price of at most max.
+     * @param max the maximum price.
+     * @return this, for chaining.
+     */
+    public ProductQuery withMaxPrice(double max) {
+        hasPriceRange = true;
+        maxPriceInCents = PriceConverter.toCentsRoundingDown(max);
+        return this;
+    }
+
+    /**
+     * Only match Products with a quantity above zero.
+     * @return this, for chaining.
+     */
+    public ProductQuery inStockOnly() {
+        inStockOnly = true;
+        return this;
+    }
+
+    EnumSet<AlcoholType> getAlcoholTypes() {
+        return alcoholTypes;
+    }
+
+    EnumSet<BottleSize> getBottleSizes() {
+        return bottleSizes;
+    }
+
+    boolean hasPriceRange() {
+        return hasPriceRange;
+    }
+
+    long getMinPriceInCents() {
+        return minPriceInCents;
+    }
+
+    long getMaxPriceInCents() {
+        return maxPriceInCents;
+    }
+
+    boolean isInStockOnly() {
+        return inStockOnly;
+    }
+
+}
@@ -0,0 +1,266 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+import com.learning.liquorstore.phasetwo.metrics.MetricsRegistry;
+
+/**
+ * The results of the most recently used ProductQuerys, so a dashboard
+ *   asking the same questions over and over is answered from memory.
+ *
+ *   Entries are evicted precisely: a change to a Product only evicts the
+ *   results it could be in, judged by its AlcoholType, BottleSize and
+ *   price, and only the in stock results when its stock changes. Quantity
+ *   changes that leave a Product in or out of stock evict nothing.
+ *
+ *   Pages from Inventory.getProductPage are kept apart, one entry per
+ *   page, so a page costs no more to keep than it does to compute, and
+ *   are evicted by the same changes as their query's result.
+ *
+ *   Results are computed outside the lock. One computed while something
+ *   was evicted may have missed the change, so it is returned but not
+ *   kept.
+ */
+class ProductQueryCache {
+
+    private final Map<QueryKey, Set<Product>> results;
+    // Pages of query results, by query, cursor and page size
+    private final Map<PageKey, ProductPage> pages;
+
+    // Counts the evictions for changes, so a result computed across one is
+    //   never kept. Guarded by this.
+    private long invalidationCount;
+
+    private final LongAdder hitCount;
+    private final LongAdder missCount;
+    // Entries dropped to make room
+    private final LongAdder evictionCount;
+    // Entries dropped because a Product they could hold changed
+    private final LongAdder invalidatedCount;
+
+    /**
+     * Constructor for ProductQueryCache.
+     * @param capacity the maximum number of results kept.
+     * @param metrics where the hit, miss and eviction counts are published.
+     */
+    ProductQueryCache(int capacity, MetricsRegistry metrics) {
+        this.hitCount = metrics.counter("queryCache.hits");
+        this.missCount = metrics.counter("queryCache.misses");
+        this.evictionCount = metrics.counter("queryCache.evictions");
+        this.invalidatedCount = metrics.counter("queryCache.invalidations");
+        this.results = newLeastRecentlyUsedMap(capacity);
+        this.pages = newLeastRecentlyUsedMap(capacity);
+    }
+
+    private <K, V> Map<K, V> newLeastRecentlyUsedMap(int capacity) {
+        // Access ordered, so the eldest entry is the least recently used
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > capacity) {
+                    evictionCount.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result of the given query, computing and keeping
+     *   it if there is none.
+     * @param query the query.
+     * @param resultSupplier computes the result.
+     * @return the result, which can't be modified.
+     */
+    Set<Product> get(ProductQuery query, Supplier<Set<Product>> resultSupplier) {
+        return get(results, new QueryKey(query), () -> Collections.unmodifiableSet(resultSupplier.get()));
+    }
+
+    /**
+     * Returns the cached page of the given query's result, computing and
+     *   keeping it if there is none.
+     * @param query the query.
+     * @param fromIndex the catalog index the page starts from.
+     * @param pageSize the maximum number of Products on the page.
+     * @param pageSupplier computes the page.
+     * @return the page.
+     */
+    ProductPage getPage(ProductQuery query, int fromIndex, int pageSize, Supplier<ProductPage> pageSupplier) {
+        return get(pages, new PageKey(new QueryKey(query), fromIndex, pageSize), pageSupplier);
+    }
+
+    private <K, V> V get(Map<K, V> cachedResults, K key, Supplier<V> resultSupplier) {
+        long startInvalidationCount;
+        synchronized (this) {
+            V result = cachedResults.get(key);
+            if (result != null) {
+                hitCount.increment();
+                return result;
+            }
+            startInvalidationCount = invalidationCount;
+        }
+
+        missCount.increment();
+        V result = resultSupplier.get();
+        synchronized (this) {
+            if (invalidationCount == startInvalidationCount) {
+                cachedResults.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Evicts every result a Product with the given values could be in.
+     *   Call after the change to the Product is visible.
+     * @param alcoholType the Product's AlcoholType.
+     * @param bottleSize the Product's BottleSize.
+     * @param priceInCents the Product's price.
+     * @param isInStock whether the Product could be in stock, so in stock
+     *   results are evicted too.
+     */
+    synchronized void invalidate(AlcoholType alcoholType, BottleSize bottleSize, long priceInCents,
+            boolean isInStock) {
+        invalidationCount++;
+        evict(query -> (isInStock || !query.inStockOnly) && query.matches(alcoholType, bottleSize, priceInCents));
+    }
+
+    /**
+     * Evicts the in stock results a Product with the given values could be
+     *   in, after it went in or out of stock.
+     * @param alcoholType the Product's AlcoholType.
+     * @param bottleSize the Product's BottleSize.
+     * @param priceInCents the Product's price.
+     */
+    synchronized void invalidateInStock(AlcoholType alcoholType, BottleSize bottleSize, long priceInCents) {
+        invalidationCount++;
+        evict(query -> query.inStockOnly && query.matches(alcoholType, bottleSize, priceInCents));
+    }
+
+    /**
+     * Evicts every result, after a change to too many Products to be worth
+     *   judging each result against.
+     */
+    synchronized void invalidateAll() {
+        invalidationCount++;
+        invalidatedCount.add(results.size() + pages.size());
+        results.clear();
+        pages.clear();
+    }
+
+    private void evict(Predicate<QueryKey> isStale) {
+        Iterator<QueryKey> queries = results.keySet().iterator();
+        while (queries.hasNext()) {
+            if (isStale.test(queries.next())) {
+                queries.remove();
+                invalidatedCount.increment();
+            }
+        }
+        Iterator<PageKey> pageKeys = pages.keySet().iterator();
+        while (pageKeys.hasNext()) {
+            if (isStale.test(pageKeys.next().query)) {
+                pageKeys.remove();
+                invalidatedCount.increment();
+            }
+        }
+    }
+
+    /**
+     * An immutable copy of a ProductQuery's filters, since the query itself
+     *   can still be changed by its caller.
+     */
+    private static final class QueryKey {
+
+        private final EnumSet<AlcoholType> alcoholTypes;
+        private final EnumSet<BottleSize> bottleSizes;
+        private final boolean hasPriceRange;
+        private final long minPriceInCents;
+        private final long maxPriceInCents;
+        private final boolean inStockOnly;
+
+        QueryKey(ProductQuery query) {
+            this.alcoholTypes = query.getAlcoholTypes() == null ? null : EnumSet.copyOf(query.getAlcoholTypes());
+            this.bottleSizes = query.getBottleSizes() == null ? null : EnumSet.copyOf(query.getBottleSizes());
+            this.hasPriceRange = query.hasPriceRange();
+            this.minPriceInCents = hasPriceRange ? query.getMinPriceInCents() : 0;
+            this.maxPriceInCents = hasPriceRange ? query.getMaxPriceInCents() : 0;
+            this.inStockOnly = query.isInStockOnly();
+        }
+
+        boolean matches(AlcoholType alcoholType, BottleSize bottleSize, long priceInCents) {
+            return (alcoholTypes == null || alcoholTypes.contains(alcoholType))
+                    && (bottleSizes == null || bottleSizes.contains(bottleSize))
+                    && (!hasPriceRange || (priceInCents >= minPriceInCents && priceInCents <= maxPriceInCents));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof QueryKey)) {
+                return false;
+            }
+            QueryKey other = (QueryKey) obj;
+            return hasPriceRange == other.hasPriceRange
+                    && minPriceInCents == other.minPriceInCents
+                    && maxPriceInCents == other.maxPriceInCents
+                    && inStockOnly == other.inStockOnly
+                    && Objects.equals(alcoholTypes, other.alcoholTypes)
+                    && Objects.equals(bottleSizes, other.bottleSizes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(alcoholTypes, bottleSizes, hasPriceRange, minPriceInCents, maxPriceInCents,
+                    inStockOnly);
+        }
+    }
+
+    /**
+     * A query along with where its page starts and how long it is.
+     */
+    private static final class PageKey {
+
+        private final QueryKey query;
+        private final int fromIndex;
+        private final int pageSize;
+
+        PageKey(QueryKey query, int fromIndex, int pageSize) {
+            this.query = query;
+            this.fromIndex = fromIndex;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PageKey)) {
+                return false;
+            }
+            PageKey other = (PageKey) obj;
+            return fromIndex == other.fromIndex && pageSize == other.pageSize && query.equals(other.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, fromIndex, pageSize);
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.Arrays;
+
+/**
+ * A basket of signed quantity changes to apply to an Inventory in one go,
+ *   e.g. a checkout basket (negative) or a delivery manifest (positive).
+ *   Lines are kept in the order they were added, and the same productId
+ *   may appear on more than one line.
+ */
+public class QuantityDeltas {
+
+    private String[] productIds;
+    private int[] deltas;
+    private int size;
+
+    /**
+     * Constructor for QuantityDeltas.
+     * @param expectedLines roughly how many lines will be added.
+     */
+    public QuantityDeltas(int expectedLines) {
+        productIds = new String[Math.max(expectedLines, 1)];
+        deltas = new int[productIds.length];
+    }
+
+    /**
+     * Adds a line to the basket.
+     * @param productId the Id of the Product.
+     * @param delta the signed change in quantity, negative to remove stock.
+     * @return this, for chaining.
+     */
+    public QuantityDeltas add(String productId, int delta) {
+        if (delta == Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Delta out of range for productId='" + productId + "'.");
+        }
+        if (size == productIds.length) {
+            productIds = Arrays.copyOf(productIds, size * 2);
+            deltas = Arrays.copyOf(deltas, size * 2);
+        }
+        productIds[size] = productId;
+        deltas[size] = delta;
+        size++;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getProductId(int line) {
+        return productIds[line];
+    }
+
+    public int getDelta(int line) {
+        return deltas[line];
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The quantity of every Product, held as primitive ints at the Product's
+ *   index in the ProductCatalog. Slots are stored in fixed size chunks, so
+ *   growing the table never races with an update, and a slot exists,
+ *   holding zero, as soon as it is first touched.
+ *
+ *   The table can be frozen in O(1) for a point-in-time view. The array of
+ *   chunks is never changed in place, so freezing just keeps the current
+ *   one. The chunks in it are then copied on their next write, and the
+ *   frozen array keeps the originals, which are never written again.
+ *   Freezing must not overlap any write, which the Inventory ensures by
+ *   only freezing while it holds off every change.
+ */
+class QuantityTable {
+
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile AtomicIntegerArray[] chunks = new AtomicIntegerArray[0];
+
+    // The chunks as of the latest freeze. A chunk that is still in it is
+    //   shared with a view, and must be copied before it is written.
+    private volatile AtomicIntegerArray[] frozenChunks = new AtomicIntegerArray[0];
+
+    int get(int index) {
+        AtomicIntegerArray[] currentChunks = chunks;
+        int chunkIndex = index >>> CHUNK_SHIFT;
+        return chunkIndex < currentChunks.length ? currentChunks[chunkIndex].get(index & CHUNK_MASK) : 0;
+    }
+
+    void set(int index, int quantity) {
+        writableChunk(index).set(index & CHUNK_MASK, quantity);
+    }
+
+    int addAndGet(int index, int delta) {
+        return writableChunk(index).addAndGet(index & CHUNK_MASK, delta);
+    }
+
+    boolean compareAndSet(int index, int expectedQuantity, int quantity) {
+        return writableChunk(index).compareAndSet(index & CHUNK_MASK, expectedQuantity, quantity);
+    }
+
+    /**
+     * Freezes the quantities as they are now. Must not be called while any
+     *   write is in progress.
+     * @return the frozen quantities, which never change.
+     */
+    Frozen freeze() {
+        AtomicIntegerArray[] currentChunks = chunks;
+        frozenChunks = currentChunks;
+        return new Frozen(currentChunks);
+    }
+
+    private AtomicIntegerArray writableChunk(int index) {
+        AtomicIntegerArray[] currentChunks = chunks;
+        int chunkIndex = index >>> CHUNK_SHIFT;
+        if (chunkIndex >= currentChunks.length) {
+            return grow(chunkIndex);
+        }
+        AtomicIntegerArray chunk = currentChunks[chunkIndex];
+        AtomicIntegerArray[] currentFrozenChunks = frozenChunks;
+        if (chunkIndex < currentFrozenChunks.length && currentFrozenChunks[chunkIndex] == chunk) {
+            return copyOnWrite(chunkIndex);
+        }
+        return chunk;
+    }
+
+    private synchronized AtomicIntegerArray copyOnWrite(int chunkIndex) {
+        AtomicIntegerArray[] currentChunks = chunks;
+        AtomicIntegerArray chunk = currentChunks[chunkIndex];
+        if (frozenChunks[chunkIndex] != chunk) {
+            // Another writer copied it first
+            return chunk;
+        }
+        AtomicIntegerArray copiedChunk = new AtomicIntegerArray(CHUNK_SIZE);
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            copiedChunk.setPlain(i, chunk.getPlain(i));
+        }
+        AtomicIntegerArray[] updatedChunks = currentChunks.clone();
+        updatedChunks[chunkIndex] = copiedChunk;
+        chunks = updatedChunks;
+        return copiedChunk;
+    }
+
+    private synchronized AtomicIntegerArray grow(int chunkIndex) {
+        AtomicIntegerArray[] currentChunks = chunks;
+        if (chunkIndex >= currentChunks.length) {
+            int chunkCount = Math.max(chunkIndex + 1, currentChunks.length + (currentChunks.length >> 1));
+            AtomicIntegerArray[] grownChunks = Arrays.copyOf(currentChunks, chunkCount);
+            for (int i = currentChunks.length; i < chunkCount; i++) {
+                grownChunks[i] = new AtomicIntegerArray(CHUNK_SIZE);
+            }
+            chunks = grownChunks;
+            currentChunks = grownChunks;
+        }
+        // A chunk that existed before may have been frozen since
+        return chunkIndex < frozenChunks.length && frozenChunks[chunkIndex] == currentChunks[chunkIndex]
+                ? copyOnWrite(chunkIndex)
+                : currentChunks[chunkIndex];
+    }
+
+    /**
+     * The quantities as of a freeze.
+     */
+    static class Frozen {
+
+        private final AtomicIntegerArray[] chunks;
+
+        private Frozen(AtomicIntegerArray[] chunks) {
+            this.chunks = chunks;
+        }
+
+        int get(int index) {
+            int chunkIndex = index >>> CHUNK_SHIFT;
+            return chunkIndex < chunks.length ? chunks[chunkIndex].getPlain(index & CHUNK_MASK) : 0;
+        }
+    }
+
+}
@@ -0,0 +1,295 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+
+/**
+ * Many Inventories, or shards, behind one interface. Each shard is a whole
+ *   Inventory with its own catalog, indexes and locks, so changes to
+ *   different shards never contend on anything shared, and nothing global
+ *   is touched on the way to a shard.
+ *
+ *   Shards are either locations, which each stock every Product and whose
+ *   quantities are changed through getShard(location), or hash partitions
+ *   of one large store, which each own the Products whose productIds hash
+ *   to them, so quantity changes are routed by productId.
+ *
+ *   Questions about the whole chain ask every shard at once on the common
+ *   ForkJoinPool, and merge the answers.
+ */
+public class ShardedInventory {
+
+    private final Inventory[] shards;
+    // The locations, or "shard-0" and on for hash partitions
+    private final Map<String, Inventory> shardsByName = new LinkedHashMap<>();
+    private final boolean isHashPartitioned;
+
+    private ShardedInventory(List<String> shardNames, boolean isHashPartitioned) {
+        this.shards = new Inventory[shardNames.size()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Inventory();
+            if (shardsByName.put(shardNames.get(i), shards[i]) != null) {
+                throw new IllegalArgumentException("Duplicate location, '" + shardNames.get(i) + "'");
+            }
+        }
+        this.isHashPartitioned = isHashPartitioned;
+    }
+
+    /**
+     * Creates one shard per location, each stocking every Product.
+     * @param locations the names of the locations.
+     * @return the ShardedInventory.
+     * @throws IllegalArgumentException - if there are no locations, or the
+     *   same one is named twice.
+     */
+    public static ShardedInventory byLocation(List<String> locations) {
+        if (locations.isEmpty()) {
+            throw new IllegalArgumentException("At least one location is needed");
+        }
+        return new ShardedInventory(locations, false);
+    }
+
+    /**
+     * Creates the given number of shards, each owning the Products whose
+     *   productIds hash to it.
+     * @param shardCount the number of shards, e.g. the number of cores.
+     * @return the ShardedInventory.
+     * @throws IllegalArgumentException - if shardCount isn't positive.
+     */
+    public static ShardedInventory hashPartitioned(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive, was " + shardCount);
+        }
+        List<String> shardNames = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shardNames.add("shard-" + i);
+        }
+        return new ShardedInventory(shardNames, true);
+    }
+
+    /**
+     * Getter for the names of the shards.
+     * @return the locations, or the shard names of hash partitions.
+     */
+    public List<String> getShardNames() {
+        return new ArrayList<>(shardsByName.keySet());
+    }
+
+    /**
+     * Returns the shard with the given name, e.g. to change a location's
+     *   quantities.
+     * @param name the location, or shard name.
+     * @return the shard, or null if there is none by that name.
+     */
+    public Inventory getShard(String name) {
+        return shardsByName.get(name);
+    }
+
+    /**
+     * Returns the shard that owns the given Product.
+     * @param productId the Id of the Product.
+     * @return the shard.
+     * @throws IllegalStateException - if the shards are locations, which
+     *   all stock every Product.
+     */
+    public Inventory shardFor(String productId) {
+        if (!isHashPartitioned) {
+            throw new IllegalStateException("Every location stocks every Product, so use getShard(location)");
+        }
+        int hash = productId.hashCode();
+        // Spread the high bits down, as HashMap does
+        return shards[Math.floorMod(hash ^ hash >>> 16, shards.length)];
+    }
+
+    /**
+     * Adds a new Product to every location, or to the shard that owns it.
+     * @param product the new Product.
+     */
+    public void addNewProduct(Product product) {
+        if (isHashPartitioned) {
+            shardFor(product.getProductId()).addNewProduct(product);
+            return;
+        }
+        for (Inventory shard : shards) {
+            shard.addNewProduct(product);
+        }
+    }
+
+    /**
+     * Adds to the quantity of a Product in the shard that owns it.
+     * @param productId the Id of the Product to add.
+     * @param quantity the number of units to add.
+     * @return the success of the add operation.
+     * @throws IllegalStateException - if the shards are locations.
+     */
+    public boolean addQtyForProduct(String productId, int quantity) {
+        return shardFor(productId).addQtyForProduct(productId, quantity);
+    }
+
+    /**
+     * Removes from the quantity of a Product in the shard that owns it.
+     * @param productId the Id of the Product to remove.
+     * @param quantity the number of units to remove.
+     * @return the success of the remove operation.
+     * @throws IllegalStateException - if the shards are locations.
+     */
+    public boolean removeProducts(String productId, int quantity) {
+        return shardFor(productId).removeProducts(productId, quantity);
+    }
+
+    /**
+     * Lookup the quantity of a Product across every shard.
+     * @param productId the Id of the Product to lookup.
+     * @return the total quantity.
+     */
+    public long getTotalQtyForProduct(String productId) {
+        if (isHashPartitioned) {
+            return shardFor(productId).getQtyForProduct(productId);
+        }
+        long totalQuantity = 0;
+        for (Inventory shard : shards) {
+            totalQuantity += shard.getQtyForProduct(productId);
+        }
+        return totalQuantity;
+    }
+
+    /**
+     * Lookup the quantity of a Product at each location.
+     * @param productId the Id of the Product to lookup.
+     * @return the quantity by shard name, in shard order.
+     */
+    public Map<String, Integer> getQtyByShard(String productId) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (Map.Entry<String, Inventory> entry : shardsByName.entrySet()) {
+            quantities.put(entry.getKey(), entry.getValue().getQtyForProduct(productId));
+        }
+        return quantities;
+    }
+
+    /**
+     * Adds up every quantity in every shard, counting the shards in
+     *   parallel.
+     * @return the total number of units in stock.
+     */
+    public long getTotalQuantity() {
+        long totalQuantity = 0;
+        for (Long shardQuantity : askEveryShard(Inventory::getTotalQuantity)) {
+            totalQuantity += shardQuantity;
+        }
+        return totalQuantity;
+    }
+
+    /**
+     * Returns every Product in any shard with a price between min and max
+     *   inclusive, searching the shards in parallel.
+     * @param min the minimum price.
+     * @param max the maximum price.
+     * @return the Set of Products in range, in price order.
+     */
+    public Set<Product> getProductsInPriceRange(double min, double max) {
+        return mergeByPrice(askEveryShard(shard -> shard.getProductsInPriceRange(min, max)));
+    }
+
+    /**
+     * Returns every Product matching all the filters of the given query in
+     *   any shard, searching the shards in parallel. An in stock filter
+     *   matches Products in stock at any location.
+     * @param query the query.
+     * @return the Set of matching Products, grouped by shard in shard
+     *   order, and in each shard's order within.
+     */
+    public Set<Product> findProducts(ProductQuery query) {
+        Set<Product> products = new LinkedHashSet<>();
+        for (Set<Product> shardProducts : askEveryShard(shard -> shard.findProducts(query))) {
+            products.addAll(shardProducts);
+        }
+        return products;
+    }
+
+    /**
+     * Asks every shard the same question on the common ForkJoinPool. The
+     *   calling thread answers for the first shard while it waits.
+     * @return the answers, in shard order.
+     */
+    private <T> List<T> askEveryShard(Function<Inventory, T> question) {
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(shards.length - 1);
+        for (int i = 1; i < shards.length; i++) {
+            Inventory shard = shards[i];
+            tasks.add(ForkJoinPool.commonPool().submit(() -> question.apply(shard)));
+        }
+        List<T> answers = new ArrayList<>(shards.length);
+        answers.add(question.apply(shards[0]));
+        for (ForkJoinTask<T> task : tasks) {
+            answers.add(task.join());
+        }
+        return answers;
+    }
+
+    /**
+     * Merges Sets that are each in price order into one, dropping the
+     *   Products that locations have in common.
+     */
+    private static Set<Product> mergeByPrice(List<Set<Product>> sortedSets) {
+        if (sortedSets.size() == 1) {
+            return sortedSets.get(0);
+        }
+        PriorityQueue<PeekingIterator> heads = new PriorityQueue<>(sortedSets.size(),
+                (first, second) -> Long.compare(first.peek().getPriceInCents(), second.peek().getPriceInCents()));
+        for (Set<Product> sortedSet : sortedSets) {
+            if (!sortedSet.isEmpty()) {
+                heads.add(new PeekingIterator(sortedSet.iterator()));
+            }
+        }
+        if (heads.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<Product> merged = new LinkedHashSet<>();
+        while (!heads.isEmpty()) {
+            PeekingIterator head = heads.poll();
+            merged.add(head.next());
+            if (head.hasNext()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private static class PeekingIterator {
+
+        private final Iterator<Product> iterator;
+        private Product next;
+
+        PeekingIterator(Iterator<Product> iterator) {
+            this.iterator = iterator;
+            this.next = iterator.next();
+        }
+
+        Product peek() {
+            return next;
+        }
+
+        boolean hasNext() {
+            return next != null;
+        }
+
+        Product next() {
+            Product current = next;
+            next = iterator.hasNext() ? iterator.next() : null;
+            return current;
+        }
+    }
+
+}
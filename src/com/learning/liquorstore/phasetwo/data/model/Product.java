@@ -1,5 +1,7 @@
 package com.learning.liquorstore.phasetwo.data.model;
 
+import com.learning.liquorstore.phasetwo.util.PriceConverter;
+
 public class Product {
 
     public enum AlcoholType {
@@ -35,6 +37,7 @@ public class Product {
     private AlcoholType alcoholType;
     private BottleSize bottleSize;
     private double price;
+    private long priceInCents;
 
     /**
      * Constructor for Product.
@@ -50,6 +53,14 @@ public class Product {
         this.alcoholType = alcoholType;
         this.bottleSize = bottleSize;
         this.price = price;
+        this.priceInCents = PriceConverter.toCents(price);
+    }
+
+    /**
+     * Constructor for subclasses that supply their values through
+     *   the getters instead of these fields.
+     */
+    protected Product() {
     }
 
     /**
@@ -92,13 +103,47 @@ public class Product {
         return price;
     }
 
+    /**
+     * Getter for the exact price in whole cents.
+     * @return the price in cents.
+     */
+    public long getPriceInCents() {
+        return priceInCents;
+    }
+
+    /**
+     * Products are equal when they have the same productId.
+     * @param obj the object to compare to.
+     * @return whether obj is a Product with the same productId.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Product)) {
+            return false;
+        }
+        return getProductId().equals(((Product) obj).getProductId());
+    }
+
+    /**
+     * Hashes the productId, to match equals.
+     * @return the hash code.
+     */
+    @Override
+    public int hashCode() {
+        return getProductId().hashCode();
+    }
+
     /**
      * Generates a String that describes the Product.
      * @return a String that describes the Product.
      */
     @Override
     public String toString() {
-        return productId + " - " + name + " - " + alcoholType + " - " + bottleSize.getVolume() + " - $" + price;
+        return getProductId() + " - " + getName() + " - " + getAlcoholType() + " - "
+                + getBottleSize().getVolume() + " - $" + getPrice();
     }
 
 }
@@ -0,0 +1,172 @@
+package com.learning.liquorstore.phasetwo.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds, laid out like HdrHistogram's:
+ *   each power of two is split into 32 equal buckets, so every latency is
+ *   kept to within about 3% from a nanosecond up to minutes, in a fixed
+ *   set of about a thousand buckets.
+ *
+ *   Recording is a lock-free increment of one bucket. The buckets are
+ *   striped by thread, so threads recording similar latencies at the same
+ *   time rarely write the same cache line. Reading adds the stripes up,
+ *   and may or may not include latencies recorded meanwhile, which is fine
+ *   for monitoring.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // Latencies from 2^40ns, about 18 minutes, all land in the last bucket
+    private static final int MAX_LATENCY_BITS = 40;
+    private static final int BUCKET_COUNT = (MAX_LATENCY_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    // Each stripe holds its buckets, then the sum and max of its latencies
+    private static final int SUM_SLOT = BUCKET_COUNT;
+    private static final int MAX_SLOT = BUCKET_COUNT + 1;
+
+    private static final int MAX_STRIPE_COUNT = 16;
+
+    private final AtomicLongArray[] stripes;
+    private final int stripeMask;
+
+    /**
+     * Constructor for LatencyHistogram.
+     */
+    public LatencyHistogram() {
+        int stripeCount = Math.min(MAX_STRIPE_COUNT,
+                Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+        stripes = new AtomicLongArray[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new AtomicLongArray(BUCKET_COUNT + 2);
+        }
+        stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * Records the time elapsed since the given start time.
+     * @param startNanos the start time, from System.nanoTime().
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records one latency.
+     * @param nanos the latency in nanoseconds. Negative latencies, from a
+     *   clock stepping back, are recorded as zero.
+     */
+    public void record(long nanos) {
+        long latency = Math.max(0, nanos);
+        AtomicLongArray stripe = stripes[(int) Thread.currentThread().getId() & stripeMask];
+        stripe.getAndIncrement(bucketIndex(latency));
+        stripe.getAndAdd(SUM_SLOT, latency);
+        if (latency > stripe.get(MAX_SLOT)) {
+            stripe.accumulateAndGet(MAX_SLOT, latency, Math::max);
+        }
+    }
+
+    /**
+     * Returns the latencies recorded so far.
+     * @return the snapshot.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        long sum = 0;
+        long max = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                long bucketCount = stripe.get(bucket);
+                counts[bucket] += bucketCount;
+                count += bucketCount;
+            }
+            sum += stripe.get(SUM_SLOT);
+            max = Math.max(max, stripe.get(MAX_SLOT));
+        }
+        return new Snapshot(counts, count, sum, max);
+    }
+
+    private static int bucketIndex(long nanos) {
+        if (nanos < 2 * SUB_BUCKET_COUNT) {
+            return (int) nanos;
+        }
+        int highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        if (highestBit >= MAX_LATENCY_BITS) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = highestBit - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) (nanos >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    private static long bucketUpperBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        long subBucket = bucket % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * The latencies recorded up to one point, which never change.
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the mean latency.
+         * @return the mean in nanoseconds, or 0 if nothing was recorded.
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the longest latency.
+         * @return the max in nanoseconds.
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the latency that the given percent of latencies were at
+         *   or below, to within the width of its bucket.
+         * @param percentile the percent, e.g. 99.9.
+         * @return the latency in nanoseconds, or 0 if nothing was recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(bucket), max);
+                }
+            }
+            return max;
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.learning.liquorstore.phasetwo.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Exposes a MetricsRegistry over JMX. Each counter is a read-only
+ *   attribute of its own name, and each histogram a set of attributes
+ *   named after it, e.g. "inventory.removeProducts.p99Nanos". Metrics are
+ *   looked up on every read, so ones registered later show up too.
+ */
+class MetricsMBean implements DynamicMBean {
+
+    private static final String[] HISTOGRAM_ATTRIBUTES = {
+            "count", "meanNanos", "p50Nanos", "p99Nanos", "p999Nanos", "maxNanos"};
+
+    private final MetricsRegistry metrics;
+
+    MetricsMBean(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        LongAdder counter = metrics.getCounters().get(attribute);
+        if (counter != null) {
+            return counter.sum();
+        }
+
+        int separator = attribute.lastIndexOf('.');
+        LatencyHistogram histogram = separator < 0 ? null : metrics.getHistograms().get(attribute.substring(0, separator));
+        if (histogram == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        switch (attribute.substring(separator + 1)) {
+            case "count":
+                return snapshot.getCount();
+            case "meanNanos":
+                return snapshot.getMean();
+            case "p50Nanos":
+                return snapshot.getValueAtPercentile(50);
+            case "p99Nanos":
+                return snapshot.getValueAtPercentile(99);
+            case "p999Nanos":
+                return snapshot.getValueAtPercentile(99.9);
+            case "maxNanos":
+                return snapshot.getMax();
+            default:
+                throw new AttributeNotFoundException(attribute);
+        }
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList values = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                values.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // Left out, as the DynamicMBean contract asks
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only, '" + attribute.getName() + "'");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String name : metrics.getHistograms().keySet()) {
+            for (String histogramAttribute : HISTOGRAM_ATTRIBUTES) {
+                String type = histogramAttribute.equals("meanNanos") ? "double" : "long";
+                attributes.add(new MBeanAttributeInfo(name + "." + histogramAttribute, type,
+                        histogramAttribute + " of " + name, true, false, false));
+            }
+        }
+        for (String name : metrics.getCounters().keySet()) {
+            attributes.add(new MBeanAttributeInfo(name, "long", name, true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "Inventory latencies and counters",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+    }
+
+}
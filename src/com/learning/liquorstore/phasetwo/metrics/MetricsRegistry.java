@@ -0,0 +1,107 @@
+package com.learning.liquorstore.phasetwo.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Named latency histograms and counters, e.g. "inventory.removeProducts".
+ *   Callers look a metric up once and keep it, so recording never touches
+ *   the registry. Counters are LongAdders, which threads can increment at
+ *   the same time without contending.
+ */
+public class MetricsRegistry {
+
+    // Sorted by name, so reports group related metrics together
+    private final NavigableMap<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns the histogram with the given name, creating it if needed.
+     * @param name the name.
+     * @return the histogram.
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Returns the counter with the given name, creating it if needed.
+     * @param name the name.
+     * @return the counter.
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Getter for the histograms.
+     * @return the histograms by name, in name order.
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Getter for the counters.
+     * @return the counters by name, in name order.
+     */
+    public Map<String, LongAdder> getCounters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    /**
+     * Formats every metric, one per line.
+     * @return the report.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        int nameWidth = 0;
+        for (String name : histograms.keySet()) {
+            nameWidth = Math.max(nameWidth, name.length());
+        }
+        for (String name : counters.keySet()) {
+            nameWidth = Math.max(nameWidth, name.length());
+        }
+
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+            report.append(String.format("%-" + nameWidth + "s  count %,d  mean %s  p50 %s  p99 %s  p99.9 %s  max %s%n",
+                    entry.getKey(), snapshot.getCount(), formatNanos(snapshot.getMean()),
+                    formatNanos(snapshot.getValueAtPercentile(50)), formatNanos(snapshot.getValueAtPercentile(99)),
+                    formatNanos(snapshot.getValueAtPercentile(99.9)), formatNanos(snapshot.getMax())));
+        }
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            report.append(String.format("%-" + nameWidth + "s  %,d%n", entry.getKey(), entry.getValue().sum()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Publishes every metric, including ones added later, as attributes of
+     *   an MBean on the platform MBeanServer, for JConsole and the like.
+     * @param objectName the MBean's name, e.g.
+     *   "com.learning.liquorstore:type=Metrics".
+     * @throws JMException - if the name is malformed or already taken.
+     */
+    public void registerMBean(String objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), new ObjectName(objectName));
+    }
+
+    private static String formatNanos(double nanos) {
+        if (nanos < 1_000) {
+            return String.format("%.0fns", nanos);
+        } else if (nanos < 1_000_000) {
+            return String.format("%.1fus", nanos / 1e3);
+        } else if (nanos < 1_000_000_000) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+        return String.format("%.2fs", nanos / 1e9);
+    }
+
+}
@@ -0,0 +1,219 @@
+package com.learning.liquorstore.phasetwo.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.learning.liquorstore.phasetwo.data.Inventory;
+import com.learning.liquorstore.phasetwo.data.ProductQuery;
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+
+/**
+ * Answers one request line of the InventoryServer's protocol against the
+ *   Inventory. Commands are case insensitive and their arguments are
+ *   separated by spaces:
+ *
+ *     QUANTITY productId
+ *     ADD productId quantity
+ *     REMOVE productId quantity
+ *     VIEW ALL
+ *     VIEW TYPE alcoholType
+ *     VIEW SIZE bottleSize
+ *     VIEW PRICE min max
+ *     VIEW NAME part of a name
+ *     VIEW FILTER [type=alcoholType,...] [size=bottleSize,...] [price=min-max] [instock]
+ *
+ *   Every response starts with a line that is either "OK", "OK " and a
+ *   value, or "ERR " and a message. VIEW responses are "OK " and a count,
+ *   followed by that many lines of Products.
+ */
+class InventoryRequestHandler {
+
+    private static final String QUANTITY_COMMAND = "quantity";
+    private static final String ADD_COMMAND = "add";
+    private static final String REMOVE_COMMAND = "remove";
+    private static final String VIEW_COMMAND = "view";
+
+    private static final String VIEW_ALL = "all";
+    private static final String VIEW_BY_ALCOHOL_TYPE = "type";
+    private static final String VIEW_BY_BOTTLE_SIZE = "size";
+    private static final String VIEW_IN_PRICE_RANGE = "price";
+    private static final String VIEW_FILTERED = "filter";
+    private static final String VIEW_BY_NAME = "name";
+
+    private static final String IN_STOCK_FILTER = "instock";
+
+    private static final int VIEW_NAME_MATCH_LIMIT = 20;
+
+    private final Inventory inventory;
+
+    InventoryRequestHandler(Inventory inventory) {
+        this.inventory = inventory;
+    }
+
+    /**
+     * Carries out the given request.
+     * @param request one request line, without its line terminator.
+     * @return the response, ending in a newline.
+     */
+    String handleRequest(String request) {
+        String[] words = request.trim().split("\\s+");
+        String command = words[0];
+        try {
+            if (command.equalsIgnoreCase(QUANTITY_COMMAND) && words.length == 2) {
+                return getQuantity(words[1]);
+            } else if (command.equalsIgnoreCase(ADD_COMMAND) && words.length == 3) {
+                return addQuantity(words[1], parseQuantity(words[2]));
+            } else if (command.equalsIgnoreCase(REMOVE_COMMAND) && words.length == 3) {
+                return removeQuantity(words[1], parseQuantity(words[2]));
+            } else if (command.equalsIgnoreCase(VIEW_COMMAND) && words.length >= 2) {
+                return view(words, request);
+            }
+            return error("Unrecognized request, '" + request.trim() + "'");
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        }
+    }
+
+    private String getQuantity(String productId) {
+        if (inventory.getProductById(productId) == null) {
+            return unknownProduct(productId);
+        }
+        return ok(Integer.toString(inventory.getQtyForProduct(productId)));
+    }
+
+    private String addQuantity(String productId, int quantity) {
+        if (!inventory.addQtyForProduct(productId, quantity)) {
+            return unknownProduct(productId);
+        }
+        return ok(null);
+    }
+
+    private String removeQuantity(String productId, int quantity) {
+        if (inventory.removeProducts(productId, quantity)) {
+            return ok(null);
+        } else if (inventory.getProductById(productId) == null) {
+            return unknownProduct(productId);
+        }
+        return error("Not enough of \"" + productId + "\" in stock");
+    }
+
+    private String view(String[] words, String request) {
+        String viewCommand = words[1];
+        Collection<Product> products;
+        if (viewCommand.equalsIgnoreCase(VIEW_ALL) && words.length == 2) {
+            products = inventory.getAllProducts();
+        } else if (viewCommand.equalsIgnoreCase(VIEW_BY_ALCOHOL_TYPE) && words.length == 3) {
+            products = inventory.getProductsByAlcoholType(parseAlcoholType(words[2]));
+        } else if (viewCommand.equalsIgnoreCase(VIEW_BY_BOTTLE_SIZE) && words.length == 3) {
+            products = inventory.getProductsByBottleSize(parseBottleSize(words[2]));
+        } else if (viewCommand.equalsIgnoreCase(VIEW_IN_PRICE_RANGE) && words.length == 4) {
+            products = inventory.getProductsInPriceRange(parsePrice(words[2]), parsePrice(words[3]));
+        } else if (viewCommand.equalsIgnoreCase(VIEW_FILTERED)) {
+            products = inventory.findProducts(parseQuery(words));
+        } else if (viewCommand.equalsIgnoreCase(VIEW_BY_NAME) && words.length >= 3) {
+            // The name is everything after "VIEW NAME", spaces included
+            String partialName = request.trim().split("\\s+", 3)[2];
+            products = inventory.findProductsByName(partialName, VIEW_NAME_MATCH_LIMIT);
+        } else {
+            return error("Unrecognized viewing command, '" + request.trim() + "'");
+        }
+
+        StringBuilder response = new StringBuilder(32 + products.size() * 64);
+        response.append("OK ").append(products.size()).append('\n');
+        for (Product product : products) {
+            response.append(product.toString()).append('\n');
+        }
+        return response.toString();
+    }
+
+    /**
+     * Builds a ProductQuery from the filters following "VIEW FILTER".
+     */
+    private ProductQuery parseQuery(String[] words) {
+        ProductQuery query = new ProductQuery();
+        for (int i = 2; i < words.length; i++) {
+            String filter = words[i];
+            int separator = filter.indexOf('=');
+            String name = separator < 0 ? filter : filter.substring(0, separator);
+            String value = separator < 0 ? "" : filter.substring(separator + 1);
+            if (name.equalsIgnoreCase(VIEW_BY_ALCOHOL_TYPE) && !value.isEmpty()) {
+                List<AlcoholType> alcoholTypes = new ArrayList<>();
+                for (String alcoholType : value.split(",")) {
+                    alcoholTypes.add(parseAlcoholType(alcoholType));
+                }
+                query.withAlcoholTypes(alcoholTypes.toArray(new AlcoholType[0]));
+            } else if (name.equalsIgnoreCase(VIEW_BY_BOTTLE_SIZE) && !value.isEmpty()) {
+                List<BottleSize> bottleSizes = new ArrayList<>();
+                for (String bottleSize : value.split(",")) {
+                    bottleSizes.add(parseBottleSize(bottleSize));
+                }
+                query.withBottleSizes(bottleSizes.toArray(new BottleSize[0]));
+            } else if (name.equalsIgnoreCase(VIEW_IN_PRICE_RANGE) && value.indexOf('-') > 0) {
+                int dash = value.indexOf('-');
+                query.withPriceRange(parsePrice(value.substring(0, dash)), parsePrice(value.substring(dash + 1)));
+            } else if (filter.equalsIgnoreCase(IN_STOCK_FILTER)) {
+                query.inStockOnly();
+            } else {
+                throw new IllegalArgumentException("Unrecognized filter, '" + filter + "'");
+            }
+        }
+        return query;
+    }
+
+    private static int parseQuantity(String quantity) {
+        try {
+            int parsedQuantity = Integer.parseInt(quantity);
+            if (parsedQuantity > 0) {
+                return parsedQuantity;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Unrecognized quantity, '" + quantity + "'");
+    }
+
+    private static double parsePrice(String price) {
+        try {
+            double parsedPrice = Double.parseDouble(price);
+            if (!Double.isNaN(parsedPrice)) {
+                return parsedPrice;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Unrecognized price, '" + price + "'");
+    }
+
+    private static AlcoholType parseAlcoholType(String alcoholType) {
+        try {
+            return AlcoholType.valueOf(alcoholType.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unrecognized AlcoholType, '" + alcoholType + "'");
+        }
+    }
+
+    private static BottleSize parseBottleSize(String bottleSize) {
+        try {
+            return BottleSize.valueOf(bottleSize.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unrecognized BottleSize, '" + bottleSize + "'");
+        }
+    }
+
+    private static String unknownProduct(String productId) {
+        return error("Could not find \"" + productId + "\" in the Inventory");
+    }
+
+    private static String ok(String value) {
+        return value == null ? "OK\n" : "OK " + value + "\n";
+    }
+
+    private static String error(String message) {
+        // Keep the message on one line so it can't be mistaken for another
+        return "ERR " + message.replace('\n', ' ').replace('\r', ' ') + "\n";
+    }
+
+}
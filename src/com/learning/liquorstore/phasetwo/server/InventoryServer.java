@@ -0,0 +1,344 @@
+package com.learning.liquorstore.phasetwo.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.learning.liquorstore.phasetwo.data.Inventory;
+import com.learning.liquorstore.phasetwo.util.Logger;
+
+/**
+ * Serves one Inventory to many terminals over TCP, one request per line,
+ *   as described by InventoryRequestHandler.
+ *
+ *   A single thread multiplexes every connection with a non-blocking
+ *   Selector, so an idle terminal costs a buffer rather than a thread.
+ *   Requests are carried out by a pool of worker threads, because quantity
+ *   changes wait for the journal to be made durable. The more of them wait
+ *   together, the more the journal can commit in a single fsync, so the
+ *   pool is sized for concurrency rather than for the number of cores.
+ *
+ *   Each connection has at most one request in flight, and later requests
+ *   it sent are buffered until the response is written, so responses come
+ *   back in order.
+ */
+public class InventoryServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 7070;
+    public static final int DEFAULT_WORKER_COUNT = 64;
+
+    // Longest request line accepted before the connection is closed
+    private static final int MAX_REQUEST_LENGTH = 8192;
+    private static final int READ_BUFFER_SIZE = 1024;
+    // Requests a connection may send ahead before it stops being read
+    private static final int MAX_PENDING_REQUESTS = 256;
+
+    private final InventoryRequestHandler requestHandler;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final Thread selectorThread;
+
+    // Connections whose in-flight request has been answered, waiting for
+    //   the selector thread to write the response
+    private final Queue<Connection> answeredConnections = new ConcurrentLinkedQueue<>();
+    // Whether the selector has been woken for answered connections it
+    //   hasn't drained yet, so a burst of answers wakes it only once
+    private final AtomicBoolean isWakeupPending = new AtomicBoolean();
+
+    private volatile boolean isClosed;
+
+    /**
+     * Starts serving the Inventory on the given port of the loopback
+     *   address, so only terminals on this machine can connect.
+     * @param inventory the inventory.
+     * @param port the port to listen on, or 0 for any free port.
+     * @param workerCount the number of requests carried out at once.
+     * @throws IOException - if the port cannot be listened on.
+     */
+    public InventoryServer(Inventory inventory, int port, int workerCount) throws IOException {
+        this(inventory, InetAddress.getLoopbackAddress(), port, workerCount);
+    }
+
+    /**
+     * Starts serving the Inventory on the given port of the given address.
+     *   Requests aren't authenticated, so bind anything wider than the
+     *   loopback address only on a trusted network.
+     * @param inventory the inventory.
+     * @param bindAddress the local address to listen on, or the wildcard
+     *   address for every local address.
+     * @param port the port to listen on, or 0 for any free port.
+     * @param workerCount the number of requests carried out at once.
+     * @throws IOException - if the port cannot be listened on.
+     */
+    public InventoryServer(Inventory inventory, InetAddress bindAddress, int port, int workerCount)
+            throws IOException {
+        this.requestHandler = new InventoryRequestHandler(inventory);
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(bindAddress, port), 1024);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+
+        AtomicInteger workerNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread worker = new Thread(runnable, "inventory-server-worker-" + workerNumber.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        });
+        this.selectorThread = new Thread(this::runSelector, "inventory-server");
+        selectorThread.start();
+        Logger.debug("Serving the Inventory on %s port %d.", bindAddress.getHostAddress(), getPort());
+    }
+
+    /**
+     * Returns the port being listened on.
+     * @return the port.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections, closes every open connection, and waits
+     *   for the requests in flight to finish.
+     * @throws IOException - if the server socket fails to close.
+     */
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+            workers.shutdown();
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runSelector() {
+        try {
+            while (!isClosed) {
+                selector.select();
+
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    } catch (IOException e) {
+                        // The terminal went away
+                        connection.close();
+                    }
+                }
+                writeAnsweredResponses();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            Logger.debug("Inventory server stopped: %s", e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                Logger.debug("Failed to close the inventory server: %s", e.getMessage());
+            }
+        }
+    }
+
+    private void accept() {
+        SocketChannel channel = null;
+        try {
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(channel, key));
+            }
+        } catch (IOException e) {
+            // e.g. out of file descriptors. Keep serving the connections
+            //   already open.
+            Logger.debug("Failed to accept a connection: %s", e.getMessage());
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException closeException) {
+                    Logger.debug("Failed to close connection: %s", closeException.getMessage());
+                }
+            }
+        }
+    }
+
+    private void writeAnsweredResponses() {
+        isWakeupPending.set(false);
+        Connection connection;
+        while ((connection = answeredConnections.poll()) != null) {
+            try {
+                connection.write();
+            } catch (IOException e) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * One terminal's connection. Only touched by the selector thread,
+     *   except that a worker sets the response to its in-flight request.
+     */
+    private class Connection {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+
+        // Bytes of a request line not yet terminated
+        private final ByteArrayOutputStream partialRequest = new ByteArrayOutputStream();
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final Queue<String> pendingRequests = new ArrayDeque<>();
+
+        private boolean hasRequestInFlight;
+        private volatile ByteBuffer response;
+        private boolean isClosed;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() throws IOException {
+            readBuffer.clear();
+            int bytesRead = channel.read(readBuffer);
+            if (bytesRead < 0) {
+                close();
+                return;
+            }
+            byte[] bytes = readBuffer.array();
+            int lineStart = 0;
+            for (int i = 0; i < bytesRead; i++) {
+                if (bytes[i] == '\n') {
+                    partialRequest.write(bytes, lineStart, i - lineStart);
+                    pendingRequests.add(partialRequest.toString(StandardCharsets.UTF_8).strip());
+                    partialRequest.reset();
+                    lineStart = i + 1;
+                }
+            }
+            partialRequest.write(bytes, lineStart, bytesRead - lineStart);
+            if (partialRequest.size() > MAX_REQUEST_LENGTH) {
+                close();
+                return;
+            }
+            submitNextRequest();
+        }
+
+        void write() throws IOException {
+            ByteBuffer currentResponse = response;
+            if (isClosed || currentResponse == null) {
+                return;
+            }
+            channel.write(currentResponse);
+            if (currentResponse.hasRemaining()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            response = null;
+            hasRequestInFlight = false;
+            submitNextRequest();
+        }
+
+        /**
+         * Hands the next pending request to a worker if none is in flight,
+         *   and only reads more while few enough requests are pending.
+         */
+        private void submitNextRequest() {
+            String request;
+            while (!hasRequestInFlight && (request = pendingRequests.poll()) != null) {
+                if (request.isBlank()) {
+                    continue;
+                }
+                hasRequestInFlight = true;
+                String requestToHandle = request;
+                workers.execute(() -> answer(requestToHandle));
+            }
+            if (!isClosed) {
+                key.interestOps(pendingRequests.size() < MAX_PENDING_REQUESTS
+                        ? key.interestOps() | SelectionKey.OP_READ
+                        : key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        }
+
+        private void answer(String request) {
+            String responseText;
+            try {
+                responseText = requestHandler.handleRequest(request);
+            } catch (RuntimeException e) {
+                Logger.debug("Failed to handle request '%s': %s", request, e.getMessage());
+                responseText = "ERR " + e.getClass().getSimpleName() + "\n";
+            }
+            response = ByteBuffer.wrap(responseText.getBytes(StandardCharsets.UTF_8));
+            answeredConnections.add(this);
+            if (isWakeupPending.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
+
+        void close() {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Logger.debug("Failed to close connection: %s", e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.learning.liquorstore.phasetwo.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jdk.internal.org.objectweb.asm.ClassReader;
+import jdk.internal.org.objectweb.asm.Type;
+import jdk.internal.org.objectweb.asm.tree.ClassNode;
+import jdk.internal.org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Binds the values of one CSV row to the constructor of a data class.
+ *   The constructor lookup and the choice of parser for each column are
+ *   done once per class and compiled into a single MethodHandle, so
+ *   binding a row does no reflection and boxes none of the parsed values.
+ * @param <T> the data class.
+ */
+public class CSVRowBinder<T> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    // One compiled binder per data class
+    private static final Map<Class<?>, CSVRowBinder<?>> BINDERS = new ConcurrentHashMap<>();
+
+    private final Class<T> dataClass;
+    private final Map.Entry<String, Class<?>>[] constructorParams;
+
+    // Takes a String[] of column values and returns a new data object
+    private final MethodHandle rowFactory;
+
+    private CSVRowBinder(Class<T> dataClass, Map.Entry<String, Class<?>>[] constructorParams,
+                         MethodHandle rowFactory) {
+        this.dataClass = dataClass;
+        this.constructorParams = constructorParams;
+        this.rowFactory = rowFactory;
+    }
+
+    /**
+     * Returns the binder for the given data class, compiling it the
+     *   first time the class is seen.
+     * @param dataClass the class of the data being initialized.
+     * @return the binder.
+     * @throws IOException - if the bytecode of the data class cannot be read.
+     */
+    public static <T> CSVRowBinder<T> forClass(Class<T> dataClass) throws IOException {
+        // BINDERS only ever maps a class to the binder compiled for it
+        @SuppressWarnings("unchecked")
+        CSVRowBinder<T> binder = (CSVRowBinder<T>) BINDERS.get(dataClass);
+        if (binder == null) {
+            binder = compile(dataClass);
+            BINDERS.putIfAbsent(dataClass, binder);
+        }
+        return binder;
+    }
+
+    /**
+     * Getter for the constructor params, in order, keyed by their names.
+     * @return the constructor params.
+     */
+    public Map.Entry<String, Class<?>>[] getConstructorParams() {
+        return constructorParams;
+    }
+
+    /**
+     * Parses the given column values and constructs a new data object.
+     * @param values the column values of one row, in constructor param order.
+     * @return the new data object.
+     * @throws IllegalArgumentException - if a value cannot be parsed as its param type.
+     */
+    public T bind(String[] values) {
+        try {
+            return dataClass.cast(rowFactory.invokeExact(values));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(String.format("Failed to instantiate %s object.", dataClass.getName()), t);
+        }
+    }
+
+    private static <T> CSVRowBinder<T> compile(Class<T> dataClass) throws IOException {
+        Constructor<T> dataClassConstructor = getDataClassConstructor(dataClass);
+        Map.Entry<String, Class<?>>[] constructorParams = getConstructorParams(dataClassConstructor);
+
+        try {
+            // Put a parser in front of each constructor param, so the handle
+            //   takes one String per param instead of the param's own type.
+            MethodHandle constructor = LOOKUP.unreflectConstructor(dataClassConstructor);
+            MethodHandle[] valueParsers = new MethodHandle[constructorParams.length];
+            for (int paramIdx = 0; paramIdx < constructorParams.length; paramIdx++) {
+                valueParsers[paramIdx] = getValueParser(constructorParams[paramIdx].getValue());
+            }
+            MethodHandle rowFactory = MethodHandles.filterArguments(constructor, 0, valueParsers);
+
+            // Then take the Strings from a single array of column values
+            rowFactory = rowFactory.asSpreader(String[].class, constructorParams.length)
+                    .asType(MethodType.methodType(Object.class, String[].class));
+
+            return new CSVRowBinder<>(dataClass, constructorParams, rowFactory);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(String.format("Failed to instantiate %s object.", dataClass.getName()), e);
+        }
+    }
+
+    private static MethodHandle getValueParser(Class<?> paramClass) throws IllegalAccessException {
+        try {
+            if (String.class == paramClass) {
+                return MethodHandles.identity(String.class);
+            } else if (char.class == paramClass || Character.class == paramClass) {
+                MethodHandle charAt = LOOKUP.findVirtual(String.class, "charAt",
+                        MethodType.methodType(char.class, int.class));
+                return MethodHandles.insertArguments(charAt, 1, 0)
+                        .asType(MethodType.methodType(paramClass, String.class));
+            } else if (int.class == paramClass || Integer.class == paramClass) {
+                return parser(Integer.class, "parseInt", int.class, paramClass);
+            } else if (long.class == paramClass || Long.class == paramClass) {
+                return parser(Long.class, "parseLong", long.class, paramClass);
+            } else if (double.class == paramClass || Double.class == paramClass) {
+                return parser(Double.class, "parseDouble", double.class, paramClass);
+            } else if (float.class == paramClass || Float.class == paramClass) {
+                return parser(Float.class, "parseFloat", float.class, paramClass);
+            } else if (boolean.class == paramClass || Boolean.class == paramClass) {
+                return parser(Boolean.class, "parseBoolean", boolean.class, paramClass);
+            } else if (paramClass.isEnum()) {
+                return LOOKUP.findStatic(Enum.class, "valueOf",
+                                MethodType.methodType(Enum.class, Class.class, String.class))
+                        .bindTo(paramClass)
+                        .asType(MethodType.methodType(paramClass, String.class));
+            }
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Missing parser for paramClass=" + paramClass.getName(), e);
+        }
+
+        throw new IllegalArgumentException(String.format("ProductValue must be String, char, int,"
+                + "long, double, float, or boolean. Instead was given paramClass=%s", paramClass.getName()));
+    }
+
+    private static MethodHandle parser(Class<?> owner, String name, Class<?> parsedClass, Class<?> paramClass)
+            throws NoSuchMethodException, IllegalAccessException {
+        return LOOKUP.findStatic(owner, name, MethodType.methodType(parsedClass, String.class))
+                .asType(MethodType.methodType(paramClass, String.class));
+    }
+
+    private static <T> Constructor<T> getDataClassConstructor(Class<T> dataClass) {
+        Constructor<T>[] constructors = (Constructor<T>[]) dataClass.getConstructors();
+        if (constructors != null && constructors.length == 1) {
+            return constructors[0];
+        }
+        return null;
+    }
+
+    private static Map.Entry<String, Class<?>>[] getConstructorParams(Constructor<?> constructor) throws IOException {
+        Class<?> declaringClass = constructor.getDeclaringClass();
+        ClassLoader declaringClassLoader = declaringClass.getClassLoader();
+
+        Type declaringType = Type.getType(declaringClass);
+        String constructorDescriptor = Type.getConstructorDescriptor(constructor);
+        String url = declaringType.getInternalName() + ".class";
+
+        InputStream classFileInputStream = declaringClassLoader.getResourceAsStream(url);
+        if (classFileInputStream == null) {
+            throw new IllegalArgumentException("The constructor's class loader cannot find the bytecode that defined the constructor's class (URL: " + url + ")");
+        }
+
+        ClassNode classNode;
+        try {
+            classNode = new ClassNode();
+            ClassReader classReader = new ClassReader(classFileInputStream);
+            classReader.accept(classNode, 0);
+        } finally {
+            classFileInputStream.close();
+        }
+
+        for (MethodNode method : classNode.methods) {
+            if (method.name.equals("<init>") && method.desc.equals(constructorDescriptor)) {
+                Class<?>[] paramClasses = constructor.getParameterTypes();
+                Map<String, Class<?>> paramClassesByName = new LinkedHashMap<>(paramClasses.length);
+                for (int i = 0; i < paramClasses.length; i++) {
+                    // The first local variable actually represents the "this" object
+                    paramClassesByName.put(method.localVariables.get(i + 1).name, paramClasses[i]);
+                }
+
+                return paramClassesByName.entrySet().toArray(new Map.Entry[paramClassesByName.size()]);
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -1,44 +1,194 @@
 package com.learning.liquorstore.phasetwo.util;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+/**
+ * A debug logger that costs a single volatile read when it is disabled.
+ *   When enabled, messages are handed to a bounded queue and formatted and
+ *   printed by a background thread, so callers never wait on System.out.
+ *   If the queue is full, messages are dropped and counted rather than
+ *   slowing the caller down. Capturing the calling class, method and line
+ *   walks the stack, so it is off unless asked for.
+ */
 public class Logger {
 
-    private static final String PREFIX = "[DEBUG] - %s.%s:%d - ";
+    private static final String PREFIX = "[DEBUG] - ";
+    private static final String CALLER_PREFIX = "[DEBUG] - %s.%s:%d - ";
 
-    private static boolean shouldDisplayLogs;
+    private static final int QUEUE_CAPACITY = 8192;
+
+    private static final BlockingQueue<LogEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicLong droppedCount = new AtomicLong();
+
+    private static volatile boolean shouldDisplayLogs;
+    private static volatile boolean shouldCaptureCaller;
+
+    private static Thread writerThread;
 
     public static void isDebugging(boolean isDebugging) {
+        if (isDebugging) {
+            startWriterThread();
+        }
         shouldDisplayLogs = isDebugging;
+        debug("Enabled debug logging.");
+    }
+
+    /**
+     * Turns capturing the calling class, method and line on or off.
+     * @param captureCaller whether to prefix messages with their caller.
+     */
+    public static void captureCallerLocation(boolean captureCaller) {
+        shouldCaptureCaller = captureCaller;
+    }
+
+    /**
+     * Whether debug logging is on. Lets callers skip building expensive
+     *   arguments entirely.
+     * @return true if debug messages are being displayed.
+     */
+    public static boolean isDebugEnabled() {
+        return shouldDisplayLogs;
+    }
+
+    public static void debug(String msg) {
         if (shouldDisplayLogs) {
-            System.out.println(generatePrefix() + "Enabled debug logging.");
+            enqueue(msg, null);
         }
     }
 
-    public static void debug(String msg) {
+    public static void debug(String msg, Object arg) {
         if (shouldDisplayLogs) {
-            System.out.println(generatePrefix() + msg);
+            enqueue(msg, new Object[] {arg});
+        }
+    }
+
+    public static void debug(String msg, Object arg1, Object arg2) {
+        if (shouldDisplayLogs) {
+            enqueue(msg, new Object[] {arg1, arg2});
         }
     }
 
     public static void debug(String msg, Object ... args) {
         if (shouldDisplayLogs) {
-            String[] stringArgs = Arrays.asList(args).stream()
-                    .map(obj -> String.valueOf(obj))
-                    .toArray(String[]::new);
-            System.out.println(String.format(generatePrefix() + msg, stringArgs));
+            enqueue(msg, args);
+        }
+    }
+
+    /**
+     * Logs the message built by the given Supplier. The Supplier is only
+     *   called when debug logging is on, so building the message costs
+     *   nothing otherwise.
+     * @param msgSupplier builds the message.
+     */
+    public static void debug(Supplier<String> msgSupplier) {
+        if (shouldDisplayLogs) {
+            enqueue(msgSupplier.get(), null);
+        }
+    }
+
+    /**
+     * Blocks until every message logged so far has been printed.
+     */
+    public static void flush() {
+        synchronized (queue) {
+            List<LogEvent> events = new ArrayList<>();
+            queue.drainTo(events);
+            print(events);
         }
     }
 
-    private static String generatePrefix() {
-        StackTraceElement callingStackTrace = Thread.currentThread().getStackTrace()[3];
+    private static void enqueue(String msg, Object[] args) {
+        String prefix = shouldCaptureCaller ? generateCallerPrefix() : PREFIX;
+        if (!queue.offer(new LogEvent(prefix, msg, args))) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    private static synchronized void startWriterThread() {
+        if (writerThread != null) {
+            return;
+        }
+
+        writerThread = new Thread(Logger::writeLogs, "debug-logger");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        // Print whatever is still queued when the program exits
+        Runtime.getRuntime().addShutdownHook(new Thread(Logger::flush, "debug-logger-flush"));
+    }
+
+    private static void writeLogs() {
+        List<LogEvent> events = new ArrayList<>();
+        while (true) {
+            try {
+                LogEvent event = queue.take();
+                synchronized (queue) {
+                    events.add(event);
+                    queue.drainTo(events);
+                    print(events);
+                }
+                events.clear();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void print(List<LogEvent> events) {
+        long dropped = droppedCount.getAndSet(0);
+        if (dropped > 0) {
+            System.out.println(PREFIX + "Dropped " + dropped + " debug messages.");
+        }
+        for (LogEvent event : events) {
+            System.out.println(event.format());
+        }
+        System.out.flush();
+    }
+
+    private static String generateCallerPrefix() {
+        StackWalker.StackFrame callingFrame = StackWalker.getInstance()
+                .walk(frames -> frames
+                        .filter(frame -> !frame.getClassName().equals(Logger.class.getName()))
+                        .findFirst()
+                        .orElse(null));
+        if (callingFrame == null) {
+            return PREFIX;
+        }
 
         // Derive the simple class name
-        String className = callingStackTrace.getClassName();
+        String className = callingFrame.getClassName();
         String simpleClassName = className.substring(className.lastIndexOf('.') + 1);
 
-        return String.format(PREFIX, simpleClassName, callingStackTrace.getMethodName(),
-                callingStackTrace.getLineNumber());
+        return String.format(CALLER_PREFIX, simpleClassName, callingFrame.getMethodName(),
+                callingFrame.getLineNumber());
+    }
+
+    /**
+     * A message waiting to be printed. Formatting is left to the writer thread.
+     */
+    private static class LogEvent {
+
+        private final String prefix;
+        private final String msg;
+        private final Object[] args;
+
+        LogEvent(String prefix, String msg, Object[] args) {
+            this.prefix = prefix;
+            this.msg = msg;
+            this.args = args;
+        }
+
+        String format() {
+            if (args == null) {
+                return prefix + msg;
+            }
+            return prefix + String.format(msg, args);
+        }
     }
 
 }
@@ -0,0 +1,208 @@
+package com.learning.liquorstore.phasetwo.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A CSV file that is read through memory maps and split into
+ *   newline-aligned chunks so the chunks can be parsed in parallel.
+ */
+class MappedCSVFile implements Closeable {
+
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    // How many bytes to read at a time while looking for the end of a line
+    private static final int SCAN_BUFFER_SIZE = 4096;
+
+    private final FileChannel channel;
+    private final long fileSize;
+
+    // Where the first line after the headers starts
+    private long dataStart;
+
+    /**
+     * Handles one line of a chunk.
+     */
+    interface LineHandler {
+        void handleLine(String line, int lineCount) throws ParseException;
+    }
+
+    /**
+     * Opens the CSV file at the given path.
+     * @param csvPath the path of the CSV file.
+     * @throws IOException - if file does not exist or cannot be read.
+     */
+    MappedCSVFile(String csvPath) throws IOException {
+        channel = FileChannel.open(Paths.get(csvPath), StandardOpenOption.READ);
+        fileSize = channel.size();
+    }
+
+    /**
+     * Reads the header line. The chunks returned by split start after it.
+     * @return the header line, or null if the file is empty.
+     * @throws IOException - if the file cannot be read.
+     */
+    String readHeaders() throws IOException {
+        if (fileSize == 0) {
+            return null;
+        }
+        long headerEnd = findLineEnd(0);
+        dataStart = Math.min(headerEnd + 1, fileSize);
+        ByteBuffer headerBytes = ByteBuffer.allocate((int) (headerEnd));
+        channel.read(headerBytes, 0);
+        return decodeLine(headerBytes.array(), (int) headerEnd);
+    }
+
+    /**
+     * Splits everything after the headers into chunks of roughly
+     *   chunkSize bytes. Every chunk ends at the end of a line, and each
+     *   knows the line number of its first line.
+     * @param chunkSize the target number of bytes per chunk.
+     * @return the chunks in file order.
+     * @throws IOException - if the file cannot be read.
+     */
+    List<Chunk> split(int chunkSize) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long chunkStart = dataStart;
+        while (chunkStart < fileSize) {
+            long chunkEnd = chunkStart + chunkSize >= fileSize
+                    ? fileSize
+                    : Math.min(findLineEnd(chunkStart + chunkSize) + 1, fileSize);
+            chunks.add(new Chunk(chunkStart, chunkEnd));
+            chunkStart = chunkEnd;
+        }
+        return chunks;
+    }
+
+    /**
+     * Getter for the size of the file when it was opened. Nothing past it
+     *   is read, even if the file has grown since.
+     * @return the size in bytes.
+     */
+    long size() {
+        return fileSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Finds the position of the next new line at or after the given
+     *   position, or the end of the file if there isn't one.
+     */
+    private long findLineEnd(long position) throws IOException {
+        ByteBuffer scanBuffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        while (position < fileSize) {
+            scanBuffer.clear();
+            int bytesRead = channel.read(scanBuffer, position);
+            for (int i = 0; i < bytesRead; i++) {
+                if (scanBuffer.get(i) == NEW_LINE) {
+                    return position + i;
+                }
+            }
+            position += bytesRead;
+        }
+        return fileSize;
+    }
+
+    private static String decodeLine(byte[] lineBytes, int length) {
+        // Drop the \r of a \r\n line ending, like BufferedReader.readLine does
+        if (length > 0 && lineBytes[length - 1] == CARRIAGE_RETURN) {
+            length--;
+        }
+        return new String(lineBytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A newline-aligned range of the file.
+     */
+    class Chunk {
+
+        private final long start;
+        private final long end;
+
+        // The line number of the first line in the chunk
+        private int firstLineCount;
+
+        private Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Counts the lines in the chunk.
+         * @return the number of lines.
+         * @throws IOException - if the file cannot be read.
+         */
+        int countLines() throws IOException {
+            MappedByteBuffer buffer = map();
+            int lineCount = 0;
+            int limit = buffer.limit();
+            for (int i = 0; i < limit; i++) {
+                if (buffer.get(i) == NEW_LINE) {
+                    lineCount++;
+                }
+            }
+            // The last line of the file may not end with a new line
+            if (limit > 0 && buffer.get(limit - 1) != NEW_LINE) {
+                lineCount++;
+            }
+            return lineCount;
+        }
+
+        void setFirstLineCount(int firstLineCount) {
+            this.firstLineCount = firstLineCount;
+        }
+
+        /**
+         * Decodes each line of the chunk and passes it to the lineHandler
+         *   along with its line number in the file.
+         * @param lineHandler handles each line in order.
+         * @throws IOException - if the file cannot be read.
+         * @throws ParseException - if the lineHandler rejects a line.
+         */
+        void forEachLine(LineHandler lineHandler) throws IOException, ParseException {
+            MappedByteBuffer buffer = map();
+            byte[] lineBytes = new byte[256];
+            int lineLength = 0;
+            int lineCount = firstLineCount;
+            int limit = buffer.limit();
+
+            for (int i = 0; i < limit; i++) {
+                byte b = buffer.get(i);
+                if (b == NEW_LINE) {
+                    lineHandler.handleLine(decodeLine(lineBytes, lineLength), lineCount++);
+                    lineLength = 0;
+                } else {
+                    if (lineLength == lineBytes.length) {
+                        byte[] grownLineBytes = new byte[lineBytes.length * 2];
+                        System.arraycopy(lineBytes, 0, grownLineBytes, 0, lineLength);
+                        lineBytes = grownLineBytes;
+                    }
+                    lineBytes[lineLength++] = b;
+                }
+            }
+
+            if (lineLength > 0) {
+                lineHandler.handleLine(decodeLine(lineBytes, lineLength), lineCount);
+            }
+        }
+
+        private MappedByteBuffer map() throws IOException {
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        }
+    }
+
+}
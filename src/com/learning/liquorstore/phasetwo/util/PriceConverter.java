@@ -0,0 +1,69 @@
+package com.learning.liquorstore.phasetwo.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+public class PriceConverter {
+
+    private static final int CENTS_SCALE = 2;
+
+    // Every price strictly between these fits in a long number of cents
+    private static final double MAX_DOLLARS = Long.MAX_VALUE / 100.0;
+    private static final double MIN_DOLLARS = Long.MIN_VALUE / 100.0;
+
+    /**
+     * Converts a dollar price to a whole number of cents, rounding
+     *   to the nearest cent.
+     * @param price the price in dollars.
+     * @return the price in cents.
+     */
+    public static long toCents(double price) {
+        return toCents(price, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Converts a dollar price to a whole number of cents, rounding up.
+     *   Used for the lower bound of a price range.
+     * @param price the price in dollars.
+     * @return the price in cents.
+     */
+    public static long toCentsRoundingUp(double price) {
+        return toCents(price, RoundingMode.CEILING);
+    }
+
+    /**
+     * Converts a dollar price to a whole number of cents, rounding down.
+     *   Used for the upper bound of a price range.
+     * @param price the price in dollars.
+     * @return the price in cents.
+     */
+    public static long toCentsRoundingDown(double price) {
+        return toCents(price, RoundingMode.FLOOR);
+    }
+
+    /**
+     * Prices too large or small for a long number of cents, infinities
+     *   included, are clamped to Long.MAX_VALUE or Long.MIN_VALUE, so an
+     *   open-ended price range never overflows.
+     * @throws IllegalArgumentException - if the price is NaN.
+     */
+    private static long toCents(double price, RoundingMode roundingMode) {
+        if (Double.isNaN(price)) {
+            throw new IllegalArgumentException("Price must be a number, not NaN.");
+        }
+        if (price >= MAX_DOLLARS) {
+            return Long.MAX_VALUE;
+        }
+        if (price <= MIN_DOLLARS) {
+            return Long.MIN_VALUE;
+        }
+
+        // BigDecimal.valueOf uses the shortest decimal representation of the
+        //   double, so 25.99 becomes exactly 2599 cents instead of 2598.99...
+        return BigDecimal.valueOf(price)
+                .movePointRight(CENTS_SCALE)
+                .setScale(0, roundingMode)
+                .longValueExact();
+    }
+
+}
@@ -1,29 +1,39 @@
 package com.learning.liquorstore.phasetwo.util;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
-import jdk.internal.org.objectweb.asm.ClassReader;
-import jdk.internal.org.objectweb.asm.Type;
-import jdk.internal.org.objectweb.asm.tree.ClassNode;
-import jdk.internal.org.objectweb.asm.tree.MethodNode;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 public class ProductDataCSVReader {
 
-    private static final String PRODUCT_DATA_CSV = "src/com/learning/liquorstore/phasetwo/data/product_data.csv";
-    private static final String INVENTORY_DATA_CSV = "src/com/learning/liquorstore/phasetwo/data/inventory_data.csv";
+    public static final String PRODUCT_DATA_CSV = "src/com/learning/liquorstore/phasetwo/data/product_data.csv";
+    public static final String INVENTORY_DATA_CSV = "src/com/learning/liquorstore/phasetwo/data/inventory_data.csv";
     private static final int INVENTORY_VALUE_COUNT = 2;
 
+    // Target size of each chunk when parsing a file in parallel
+    private static final int PARALLEL_CHUNK_SIZE = 8 * 1024 * 1024;
+
     private static final String DELIMITER = ",";
 
     /**
@@ -35,16 +45,61 @@ public class ProductDataCSVReader {
      * @throws ParseException - if an error is encountered while parsing the CSV.
      */
     public static <T> List<T> loadProductDataFromCSV(Class<T> dataClass) throws IOException, ParseException {
+        return loadProductDataFromCSV(dataClass, PRODUCT_DATA_CSV);
+    }
+
+    /**
+     * Reads in data from the CSV file at the given path, parses the data,
+     *   creates objects of the given dataClass, and returns them all in a List.
+     * @param dataClass the class of the data being initialized.
+     * @param csvPath the path of the CSV file to read.
+     * @return a List of all the data objects read from the CSV.
+     * @throws IOException - if file does not exist or cannot be read.
+     * @throws ParseException - if an error is encountered while parsing the CSV.
+     */
+    public static <T> List<T> loadProductDataFromCSV(Class<T> dataClass, String csvPath)
+            throws IOException, ParseException {
         List<T> dataObjects = new ArrayList<>();
+        loadProductDataFromCSV(dataClass, csvPath, dataObjects::add);
+        return dataObjects;
+    }
+
+    /**
+     * Reads in data from a CSV file, parses the data, creates objects of
+     *   the given dataClass, and passes each one to the dataConsumer as soon
+     *   as its line is parsed. Nothing is held on to between lines.
+     * @param dataClass the class of the data being initialized.
+     * @param dataConsumer receives each data object in file order.
+     * @throws IOException - if file does not exist or cannot be read.
+     * @throws ParseException - if an error is encountered while parsing the CSV.
+     */
+    public static <T> void loadProductDataFromCSV(Class<T> dataClass, Consumer<? super T> dataConsumer)
+            throws IOException, ParseException {
+        loadProductDataFromCSV(dataClass, PRODUCT_DATA_CSV, dataConsumer);
+    }
+
+    /**
+     * Reads in data from the CSV file at the given path, parses the data,
+     *   creates objects of the given dataClass, and passes each one to the
+     *   dataConsumer as soon as its line is parsed.
+     * @param dataClass the class of the data being initialized.
+     * @param csvPath the path of the CSV file to read.
+     * @param dataConsumer receives each data object in file order.
+     * @throws IOException - if file does not exist or cannot be read.
+     * @throws ParseException - if an error is encountered while parsing the CSV.
+     */
+    public static <T> void loadProductDataFromCSV(Class<T> dataClass, String csvPath,
+                                                  Consumer<? super T> dataConsumer)
+            throws IOException, ParseException {
         BufferedReader csvReader = null;
         int lineCount = 0;
 
         try {
-            Constructor<T> dataClassConstructor = getDataClassConstructor(dataClass);
-            Map.Entry<String, Class<?>>[] constructorParams = getConstructorParams(dataClassConstructor);
+            CSVRowBinder<T> rowBinder = CSVRowBinder.forClass(dataClass);
+            Map.Entry<String, Class<?>>[] constructorParams = rowBinder.getConstructorParams();
             int paramCount = constructorParams.length;
 
-            csvReader = new BufferedReader(new FileReader(PRODUCT_DATA_CSV));
+            csvReader = new BufferedReader(new FileReader(csvPath));
 
             // Check headers has the right number of values and that they
             //   match the spelling and ordering of the constructor parameters.
@@ -55,38 +110,62 @@ public class ProductDataCSVReader {
             lineCount++;
 
             while (line != null) {
-                Logger.debug("CSV Line #%s='%s'", lineCount, line);
-
-                String[] productValues = validateCSVLine(line, lineCount, paramCount);
-
-                // Create an array of constructor arg values parsed from CSV file.
-                //   Bail if the column headers don't match the constructor param names.
-                Object[] constructorArgValues = new Object[constructorParams.length];
-                for (int paramIdx = 0; paramIdx < constructorParams.length; paramIdx++) {
-                    constructorArgValues[paramIdx] =
-                            parseProductValue(constructorParams[paramIdx].getValue(), productValues[paramIdx]);
-                }
-
-                // Instantiate a new object of the given class and add it the list.
-                T dataObj = dataClassConstructor.newInstance(constructorArgValues);
-                Logger.debug("DataObject='%s'", dataObj.toString());
-                dataObjects.add(dataObj);
+                dataConsumer.accept(parseDataObject(line, lineCount, rowBinder));
 
                 // Read in the next line
                 line = csvReader.readLine();
                 lineCount++;
             }
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Failed to parse Price as double for line " + lineCount);
-        } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
-            throw new IllegalStateException(String.format("Failed to instantiate %s object.", dataClass.getName()));
         } finally {
             if (csvReader != null) {
                 csvReader.close();
             }
         }
+    }
 
-        return dataObjects;
+    /**
+     * Same as {@link #loadProductDataFromCSV(Class, Consumer)}, but memory maps
+     *   the CSV file and parses newline-aligned chunks of it in parallel.
+     * @param dataClass the class of the data being initialized.
+     * @param dataConsumer receives each data object in file order.
+     * @throws IOException - if file does not exist or cannot be read.
+     * @throws ParseException - if an error is encountered while parsing the CSV.
+     */
+    public static <T> void loadProductDataFromCSVInParallel(Class<T> dataClass, Consumer<? super T> dataConsumer)
+            throws IOException, ParseException {
+        loadProductDataFromCSVInParallel(dataClass, PRODUCT_DATA_CSV, dataConsumer);
+    }
+
+    /**
+     * Same as {@link #loadProductDataFromCSV(Class, String, Consumer)}, but memory
+     *   maps the CSV file and parses newline-aligned chunks of it in parallel on
+     *   the common ForkJoinPool. Parsed objects are still passed to the
+     *   dataConsumer in file order, one at a time, from the calling thread.
+     * @param dataClass the class of the data being initialized.
+     * @param csvPath the path of the CSV file to read.
+     * @param dataConsumer receives each data object in file order.
+     * @throws IOException - if file does not exist or cannot be read.
+     * @throws ParseException - if an error is encountered while parsing the CSV.
+     */
+    public static <T> void loadProductDataFromCSVInParallel(Class<T> dataClass, String csvPath,
+                                                            Consumer<? super T> dataConsumer)
+            throws IOException, ParseException {
+        CSVRowBinder<T> rowBinder = CSVRowBinder.forClass(dataClass);
+        Map.Entry<String, Class<?>>[] constructorParams = rowBinder.getConstructorParams();
+
+        try (MappedCSVFile csvFile = new MappedCSVFile(csvPath)) {
+            // Check headers has the right number of values and that they
+            //   match the spelling and ordering of the constructor parameters.
+            String[] headers = validateCSVLine(csvFile.readHeaders(), 0, constructorParams.length);
+            validateHeaders(headers, constructorParams);
+
+            parseChunksInParallel(csvFile, chunk -> {
+                List<T> dataObjects = new ArrayList<>();
+                chunk.forEachLine((line, lineCount) ->
+                        dataObjects.add(parseDataObject(line, lineCount, rowBinder)));
+                return dataObjects;
+            }, dataObjects -> dataObjects.forEach(dataConsumer));
+        }
     }
 
     /**
@@ -98,12 +177,57 @@ public class ProductDataCSVReader {
      * @throws ParseException - if any line does not have the correct number of Inventory values.
      */
     public static Map<String, Integer> loadProductQtyDataFromCSV() throws IOException, ParseException {
+        return loadProductQtyDataFromCSV(INVENTORY_DATA_CSV);
+    }
+
+    /**
+     * Reads in quantity data from the CSV file at the given path, parses the
+     *   data, and adds the quantities to a Map under their respective Ids.
+     *   Will sum quantities if multiple are found for the same Id.
+     * @param csvPath the path of the CSV file to read.
+     * @return a Map of Ids to total quantities read from the CSV.
+     * @throws IOException - if file does not exist or cannot be read.
+     * @throws ParseException - if any line does not have the correct number of Inventory values.
+     */
+    public static Map<String, Integer> loadProductQtyDataFromCSV(String csvPath) throws IOException, ParseException {
         Map<String, Integer> productQuantities = new HashMap<>();
+        loadProductQtyDataFromCSV(csvPath, (productId, quantity) -> {
+            // Combine with existing quantity if any
+            int totalQuantity = productQuantities.merge(productId, quantity, Integer::sum);
+            Logger.debug("Quantity of '%s' now at %s", productId, totalQuantity);
+        });
+        return productQuantities;
+    }
+
+    /**
+     * Reads in quantity data from a CSV file and passes each productId and
+     *   quantity pair to the qtyConsumer as soon as its line is parsed. The
+     *   same productId may be passed more than once.
+     * @param qtyConsumer receives each productId and quantity in file order.
+     * @throws IOException - if file does not exist or cannot be read.
+     * @throws ParseException - if any line does not have the correct number of Inventory values.
+     */
+    public static void loadProductQtyDataFromCSV(ObjIntConsumer<String> qtyConsumer)
+            throws IOException, ParseException {
+        loadProductQtyDataFromCSV(INVENTORY_DATA_CSV, qtyConsumer);
+    }
+
+    /**
+     * Reads in quantity data from the CSV file at the given path and passes
+     *   each productId and quantity pair to the qtyConsumer as soon as its
+     *   line is parsed. The same productId may be passed more than once.
+     * @param csvPath the path of the CSV file to read.
+     * @param qtyConsumer receives each productId and quantity in file order.
+     * @throws IOException - if file does not exist or cannot be read.
+     * @throws ParseException - if any line does not have the correct number of Inventory values.
+     */
+    public static void loadProductQtyDataFromCSV(String csvPath, ObjIntConsumer<String> qtyConsumer)
+            throws IOException, ParseException {
         BufferedReader csvReader = null;
         int lineCount = 0;
 
         try {
-            csvReader = new BufferedReader(new FileReader(INVENTORY_DATA_CSV));
+            csvReader = new BufferedReader(new FileReader(csvPath));
 
             // First line is just column headers which
             //   we don't need here.
@@ -115,84 +239,234 @@ public class ProductDataCSVReader {
             lineCount++;
 
             while (line != null) {
-                Logger.debug("Line #%s='%s'", lineCount, line);
-
-                // Assume our values are ProductId and Quantity
-                String[] productValues = validateCSVLine(line, lineCount, INVENTORY_VALUE_COUNT);
-
-                // Parse the Inventory values and add quantity
-                //   of the productId to the Inventory
-                String productId = productValues[0];
-                int quantity = Integer.valueOf(productValues[1]);
-
-                // Combine with existing quantity if any
-                if (productQuantities.containsKey(productId)) {
-                    quantity += productQuantities.get(productId);
-                }
-
-                // Update totals
-                productQuantities.put(productId, quantity);
-                Logger.debug("Quantity of '%s' now at %s", productId, quantity);
+                String[] productValues = parseQtyLine(line, lineCount);
+                qtyConsumer.accept(productValues[0], parseQuantity(productValues[1], lineCount));
 
                 // Read in the next line
                 line = csvReader.readLine();
                 lineCount++;
             }
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Failed to parse quantity as int for line " + lineCount);
         } finally {
             if (csvReader != null) {
                 csvReader.close();
             }
         }
-
-        return productQuantities;
     }
 
-    private static <T> Constructor<T> getDataClassConstructor(Class<T> dataClass) {
-        Constructor<T>[] constructors = (Constructor<T>[]) dataClass.getConstructors();
-        if (constructors != null && constructors.length == 1) {
-            return constructors[0];
+    /**
+     * Reads the quantity lines of the CSV file at the given path from the
+     *   given byte offset on, and passes each productId and quantity pair to
+     *   the qtyConsumer as soon as its line is parsed. Only whole lines,
+     *   ending in a newline, are read, so a line still being appended is
+     *   left for the next call, and empty lines are skipped. Line numbers
+     *   in errors count from fromOffset.
+     * @param csvPath the path of the CSV file to read.
+     * @param fromOffset the offset returned by the previous call, or 0 to
+     *   read the whole file, skipping the column headers.
+     * @param qtyConsumer receives each productId and quantity in file order.
+     * @return the offset just past the last whole line read.
+     * @throws IOException - if file does not exist or cannot be read.
+     * @throws ParseException - if any line does not have the correct number of Inventory values.
+     */
+    public static long loadProductQtyDataFromCSV(String csvPath, long fromOffset, ObjIntConsumer<String> qtyConsumer)
+            throws IOException, ParseException {
+        try (FileChannel channel = FileChannel.open(Paths.get(csvPath), StandardOpenOption.READ)) {
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(fromOffset)));
+            long offset = fromOffset;
+            long lineStart = fromOffset;
+            // First line is just column headers which
+            //   we don't need here.
+            boolean isHeaderLine = fromOffset == 0;
+            int lineCount = 0;
+            byte[] lineBytes = new byte[128];
+            int lineLength = 0;
+
+            int nextByte;
+            while ((nextByte = in.read()) >= 0) {
+                offset++;
+                if (nextByte != '\n') {
+                    if (lineLength == lineBytes.length) {
+                        lineBytes = Arrays.copyOf(lineBytes, lineLength * 2);
+                    }
+                    lineBytes[lineLength++] = (byte) nextByte;
+                    continue;
+                }
+
+                lineCount++;
+                // Tolerate files written with Windows line endings
+                int length = lineLength > 0 && lineBytes[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                // A file that didn't end in a newline gets an empty line when
+                //   the next row is appended after one
+                if (!isHeaderLine && length > 0) {
+                    String[] productValues = parseQtyLine(
+                            new String(lineBytes, 0, length, StandardCharsets.UTF_8), lineCount);
+                    qtyConsumer.accept(productValues[0], parseQuantity(productValues[1], lineCount));
+                }
+                isHeaderLine = false;
+                lineLength = 0;
+                lineStart = offset;
+            }
+            return lineStart;
         }
-        return null;
     }
 
-    private static Map.Entry<String, Class<?>>[] getConstructorParams(Constructor<?> constructor) throws IOException {
-        Class<?> declaringClass = constructor.getDeclaringClass();
-        ClassLoader declaringClassLoader = declaringClass.getClassLoader();
+    /**
+     * Same as {@link #loadProductQtyDataFromCSV(ObjIntConsumer)}, but memory maps
+     *   the CSV file and parses newline-aligned chunks of it in parallel.
+     * @param qtyConsumer receives each productId and quantity in file order.
+     * @return the size of the file when it was mapped, which is where the
+     *   lines read end.
+     * @throws IOException - if file does not exist or cannot be read.
+     * @throws ParseException - if any line does not have the correct number of Inventory values.
+     */
+    public static long loadProductQtyDataFromCSVInParallel(ObjIntConsumer<String> qtyConsumer)
+            throws IOException, ParseException {
+        return loadProductQtyDataFromCSVInParallel(INVENTORY_DATA_CSV, qtyConsumer);
+    }
 
-        Type declaringType = Type.getType(declaringClass);
-        String constructorDescriptor = Type.getConstructorDescriptor(constructor);
-        String url = declaringType.getInternalName() + ".class";
+    /**
+     * Same as {@link #loadProductQtyDataFromCSV(String, ObjIntConsumer)}, but memory
+     *   maps the CSV file and parses newline-aligned chunks of it in parallel on
+     *   the common ForkJoinPool. Pairs are still passed to the qtyConsumer in
+     *   file order, one at a time, from the calling thread, so a consumer that
+     *   adds quantities sums duplicate productIds exactly as before. Only
+     *   the file as it was when mapped is read, so rows appended while it
+     *   is parsed are left for loadProductQtyDataFromCSV(String, long,
+     *   ObjIntConsumer) to pick up from the returned offset.
+     * @param csvPath the path of the CSV file to read.
+     * @param qtyConsumer receives each productId and quantity in file order.
+     * @return the size of the file when it was mapped, which is where the
+     *   lines read end.
+     * @throws IOException - if file does not exist or cannot be read.
+     * @throws ParseException - if any line does not have the correct number of Inventory values.
+     */
+    public static long loadProductQtyDataFromCSVInParallel(String csvPath, ObjIntConsumer<String> qtyConsumer)
+            throws IOException, ParseException {
+        try (MappedCSVFile csvFile = new MappedCSVFile(csvPath)) {
+            // First line is just column headers which
+            //   we don't need here.
+            csvFile.readHeaders();
+
+            parseChunksInParallel(csvFile, chunk -> {
+                ParsedQuantities parsedQuantities = new ParsedQuantities();
+                chunk.forEachLine((line, lineCount) -> {
+                    String[] productValues = parseQtyLine(line, lineCount);
+                    parsedQuantities.add(productValues[0], parseQuantity(productValues[1], lineCount));
+                });
+                return parsedQuantities;
+            }, parsedQuantities -> parsedQuantities.forEach(qtyConsumer));
+            return csvFile.size();
+        }
+    }
 
-        InputStream classFileInputStream = declaringClassLoader.getResourceAsStream(url);
-        if (classFileInputStream == null) {
-            throw new IllegalArgumentException("The constructor's class loader cannot find the bytecode that defined the constructor's class (URL: " + url + ")");
+    /**
+     * Splits the CSV file into chunks and parses them on the common ForkJoinPool.
+     *   Only a few chunks are parsed ahead of the resultConsumer, so memory stays
+     *   bounded no matter how big the file is.
+     * @param csvFile the CSV file, with its headers already read.
+     * @param chunkParser parses one chunk. Called concurrently.
+     * @param resultConsumer receives each chunk's result in file order.
+     * @throws IOException - if the file cannot be read.
+     * @throws ParseException - if any chunk fails to parse. The first failing line wins.
+     */
+    private static <R> void parseChunksInParallel(MappedCSVFile csvFile, ChunkParser<R> chunkParser,
+                                                  Consumer<R> resultConsumer) throws IOException, ParseException {
+        List<MappedCSVFile.Chunk> chunks = csvFile.split(PARALLEL_CHUNK_SIZE);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        // Count the lines in every chunk first, so each chunk knows the
+        //   line number it starts at and parse errors report the right line.
+        List<ForkJoinTask<Integer>> lineCountTasks = new ArrayList<>(chunks.size());
+        for (MappedCSVFile.Chunk chunk : chunks) {
+            lineCountTasks.add(pool.submit(chunk::countLines));
+        }
+        // Line numbers start at 1, and line 1 holds the headers.
+        int lineCount = 2;
+        for (int i = 0; i < chunks.size(); i++) {
+            chunks.get(i).setFirstLineCount(lineCount);
+            lineCount += joinChunkTask(lineCountTasks.get(i));
         }
 
-        ClassNode classNode;
+        int maxChunksInFlight = pool.getParallelism() * 2;
+        Deque<ForkJoinTask<R>> chunksInFlight = new ArrayDeque<>(maxChunksInFlight);
+        int nextChunk = 0;
         try {
-            classNode = new ClassNode();
-            ClassReader classReader = new ClassReader(classFileInputStream);
-            classReader.accept(classNode, 0);
+            while (nextChunk < chunks.size() || !chunksInFlight.isEmpty()) {
+                while (nextChunk < chunks.size() && chunksInFlight.size() < maxChunksInFlight) {
+                    MappedCSVFile.Chunk chunk = chunks.get(nextChunk++);
+                    chunksInFlight.add(pool.submit(() -> chunkParser.parse(chunk)));
+                }
+                resultConsumer.accept(joinChunkTask(chunksInFlight.poll()));
+            }
         } finally {
-            classFileInputStream.close();
+            for (ForkJoinTask<R> chunkInFlight : chunksInFlight) {
+                chunkInFlight.cancel(true);
+            }
         }
+    }
 
-        for (MethodNode method : classNode.methods) {
-            if (method.name.equals("<init>") && method.desc.equals(constructorDescriptor)) {
-                Class<?>[] paramClasses = constructor.getParameterTypes();
-                Map<String, Class<?>> paramClassesByName = new LinkedHashMap<>(paramClasses.length);
-                for (int i = 0; i < paramClasses.length; i++) {
-                    // The first local variable actually represents the "this" object
-                    paramClassesByName.put(method.localVariables.get(i + 1).name, paramClasses[i]);
-                }
-
-                return paramClassesByName.entrySet().toArray(new Map.Entry[paramClassesByName.size()]);
+    /**
+     * Waits for a chunk task and rethrows whatever it failed with.
+     */
+    private static <R> R joinChunkTask(ForkJoinTask<R> task) throws IOException, ParseException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing CSV chunks.");
+        } catch (ExecutionException e) {
+            // The pool wraps checked exceptions, so dig out the original one
+            Throwable cause = e.getCause();
+            while (cause.getCause() != null && !(cause instanceof IOException || cause instanceof ParseException
+                    || cause instanceof IllegalArgumentException || cause instanceof IllegalStateException)) {
+                cause = cause.getCause();
             }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof ParseException) {
+                throw (ParseException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Failed to parse CSV chunk.", cause);
         }
+    }
+
+    /**
+     * Parses one line of a data CSV file into an object of the dataClass.
+     */
+    private static <T> T parseDataObject(String line, int lineCount, CSVRowBinder<T> rowBinder)
+            throws ParseException {
+        Logger.debug(() -> String.format("CSV Line #%s='%s'", lineCount, line));
+
+        String[] productValues = validateCSVLine(line, lineCount, rowBinder.getConstructorParams().length);
+
+        try {
+            // Parse the values and instantiate a new object of the given class.
+            T dataObj = rowBinder.bind(productValues);
+            Logger.debug("DataObject='%s'", dataObj);
+            return dataObj;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Failed to parse Price as double for line " + lineCount);
+        }
+    }
+
+    /**
+     * Splits one line of the quantity CSV file into its ProductId and Quantity.
+     */
+    private static String[] parseQtyLine(String line, int lineCount) throws ParseException {
+        Logger.debug(() -> String.format("Line #%s='%s'", lineCount, line));
 
-        return null;
+        // Assume our values are ProductId and Quantity
+        return validateCSVLine(line, lineCount, INVENTORY_VALUE_COUNT);
+    }
+
+    private static int parseQuantity(String quantity, int lineCount) {
+        try {
+            return Integer.parseInt(quantity);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Failed to parse quantity as int for line " + lineCount);
+        }
     }
 
     private static String[] validateCSVLine(String line, int lineCount, int expectedValueCount) throws ParseException {
@@ -224,26 +498,33 @@ public class ProductDataCSVReader {
         }
     }
 
-    private static Object parseProductValue(Class<?> paramClass, String productValue) {
-        if (String.class == paramClass) {
-            return productValue;
-        } else if (char.class == paramClass || Character.class == paramClass) {
-            return productValue.charAt(0);
-        } else if (int.class == paramClass || Integer.class == paramClass) {
-            return Integer.parseInt(productValue);
-        } else if (long.class == paramClass || Long.class == paramClass) {
-            return Long.parseLong(productValue);
-        } else if (double.class == paramClass || Double.class == paramClass) {
-            return Double.parseDouble(productValue);
-        } else if (float.class == paramClass || Float.class == paramClass) {
-            return Float.parseFloat(productValue);
-        } else if (boolean.class == paramClass || Boolean.class == paramClass) {
-            return Boolean.parseBoolean(productValue);
-        } else if (paramClass.isEnum()) {
-            return Enum.valueOf((Class<? extends Enum>) paramClass, productValue);
-        } else {
-            throw new IllegalArgumentException(String.format("ProductValue must be String, char, int,"
-                    + "long, double, float, or boolean. Instead was given paramClass=%s", paramClass.getName()));
+    /**
+     * Parses one chunk of a CSV file.
+     */
+    private interface ChunkParser<R> {
+        R parse(MappedCSVFile.Chunk chunk) throws IOException, ParseException;
+    }
+
+    /**
+     * The productId and quantity pairs parsed from one chunk, in file order.
+     */
+    private static class ParsedQuantities {
+
+        private final List<String> productIds = new ArrayList<>();
+        private int[] quantities = new int[64];
+
+        void add(String productId, int quantity) {
+            if (productIds.size() == quantities.length) {
+                quantities = Arrays.copyOf(quantities, quantities.length * 2);
+            }
+            quantities[productIds.size()] = quantity;
+            productIds.add(productId);
+        }
+
+        void forEach(ObjIntConsumer<String> qtyConsumer) {
+            for (int i = 0; i < productIds.size(); i++) {
+                qtyConsumer.accept(productIds.get(i), quantities[i]);
+            }
         }
     }
 
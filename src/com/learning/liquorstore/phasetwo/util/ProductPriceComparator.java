@@ -6,8 +6,17 @@ import java.util.Comparator;
 
 public class ProductPriceComparator implements Comparator<Product> {
 
+    /**
+     * Orders Products by their exact price in cents. Products with the
+     *   same price are ordered by productId so no two different Products
+     *   ever compare as equal.
+     */
     public int compare(Product p1, Product p2) {
-        return (int) (p1.getPrice() - p2.getPrice());
+        int priceComparison = Long.compare(p1.getPriceInCents(), p2.getPriceInCents());
+        if (priceComparison != 0) {
+            return priceComparison;
+        }
+        return p1.getProductId().compareTo(p2.getProductId());
     }
 
 }
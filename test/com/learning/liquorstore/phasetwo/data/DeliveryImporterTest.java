@@ -0,0 +1,84 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+
+class DeliveryImporterTest {
+
+    private static final String PRODUCT_ID = "P-1";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void aRestartAfterACrashImportsEachRowOnce() throws IOException, ParseException {
+        String journalPath = dir.resolve("inventory.journal").toString();
+        String snapshotPath = dir.resolve("inventory.snapshot").toString();
+        Path csvPath = writeCSV("ProductId,Quantity\n");
+
+        Inventory firstRun = seededInventory();
+        InventoryJournal.openDiscarding(journalPath, snapshotPath, firstRun);
+        append(csvPath, "P-1,4\nP-1,2\n");
+        assertEquals(2, new DeliveryImporter(firstRun, csvPath.toString()).importNewDeliveries());
+        assertEquals(16, firstRun.getQtyForProduct(PRODUCT_ID));
+
+        // Crashed without compacting, so the delivery and its offset are only in the journal
+        Inventory restarted = InventorySnapshot.loadColumnar(snapshotPath);
+        InventoryJournal.open(journalPath, snapshotPath, restarted,
+                InventorySnapshot.readJournalSequence(snapshotPath)).close();
+        assertEquals(16, restarted.getQtyForProduct(PRODUCT_ID));
+        assertEquals(Files.size(csvPath), restarted.getDeliveryOffset());
+
+        DeliveryImporter importer = new DeliveryImporter(restarted, csvPath.toString());
+        assertEquals(0, importer.importNewDeliveries());
+        append(csvPath, "P-1,1\n");
+        assertEquals(1, importer.importNewDeliveries());
+        assertEquals(17, restarted.getQtyForProduct(PRODUCT_ID));
+    }
+
+    @Test
+    void aShorterFileIsRefusedUntilMarkedAsNew() throws IOException, ParseException {
+        Path csvPath = writeCSV("ProductId,Quantity\nP-1,4\nP-1,2\n");
+        Inventory inventory = seededInventory();
+        DeliveryImporter importer = new DeliveryImporter(inventory, csvPath.toString());
+        assertEquals(2, importer.importNewDeliveries());
+
+        writeCSV("ProductId,Quantity\nP-1,3\n");
+        assertThrows(IOException.class, importer::importNewDeliveries);
+        assertEquals(16, inventory.getQtyForProduct(PRODUCT_ID));
+
+        importer.startNewFile();
+        assertEquals(1, importer.importNewDeliveries());
+        assertEquals(19, inventory.getQtyForProduct(PRODUCT_ID));
+    }
+
+    private Path writeCSV(String rows) throws IOException {
+        return Files.writeString(dir.resolve("inventory_data.csv"), rows, StandardCharsets.UTF_8);
+    }
+
+    private static void append(Path csvPath, String rows) throws IOException {
+        Files.writeString(csvPath, rows, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    private static Inventory seededInventory() {
+        Inventory inventory = new Inventory();
+        inventory.addNewProduct(new Product(PRODUCT_ID, "Hendricks Gin", AlcoholType.GIN, BottleSize.FIFTH, 25.99));
+        inventory.addQtyForProduct(PRODUCT_ID, 10);
+        return inventory;
+    }
+
+}
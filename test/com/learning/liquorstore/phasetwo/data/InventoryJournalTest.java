@@ -0,0 +1,123 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+
+class InventoryJournalTest {
+
+    private static final String PRODUCT_ID = "P-1";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rebuildingFromTheCSVFilesDoesNotReplayTheOldJournal() throws IOException {
+        String journalPath = dir.resolve("inventory.journal").toString();
+        String snapshotPath = dir.resolve("inventory.snapshot").toString();
+
+        // The first run sells 3, then stops without compacting
+        Inventory firstRun = seededInventory();
+        InventoryJournal.openDiscarding(journalPath, snapshotPath, firstRun);
+        assertTrue(firstRun.removeProducts(PRODUCT_ID, 3));
+        assertEquals(7, firstRun.getQtyForProduct(PRODUCT_ID));
+
+        // The snapshot couldn't be loaded, so the next run rebuilds from
+        //   the seed data and must not count the old sale again
+        Inventory rebuilt = seededInventory();
+        InventoryJournal journal = InventoryJournal.openDiscarding(journalPath, snapshotPath, rebuilt);
+        assertEquals(10, rebuilt.getQtyForProduct(PRODUCT_ID));
+        assertEquals(0, InventorySnapshot.readJournalSequence(snapshotPath));
+        assertTrue(Files.exists(dir.resolve("inventory.journal.discarded")));
+
+        // Changes after the rebuild survive a restart from the snapshot
+        assertTrue(rebuilt.removeProducts(PRODUCT_ID, 1));
+        journal.close();
+        Inventory restarted = InventorySnapshot.loadColumnar(snapshotPath);
+        InventoryJournal.open(journalPath, snapshotPath, restarted,
+                InventorySnapshot.readJournalSequence(snapshotPath)).close();
+        assertEquals(9, restarted.getQtyForProduct(PRODUCT_ID));
+    }
+
+    @Test
+    void restartingFromTheSnapshotReplaysOnlyNewerRecords() throws IOException {
+        String journalPath = dir.resolve("inventory.journal").toString();
+        String snapshotPath = dir.resolve("inventory.snapshot").toString();
+
+        Inventory firstRun = seededInventory();
+        InventoryJournal.openDiscarding(journalPath, snapshotPath, firstRun).compact(snapshotPath);
+        assertTrue(firstRun.removeProducts(PRODUCT_ID, 2));
+        firstRun.getJournal().compact(snapshotPath);
+        assertTrue(firstRun.removeProducts(PRODUCT_ID, 3));
+
+        // Stopped without compacting, so the last sale is only in the journal
+        Inventory restarted = InventorySnapshot.loadColumnar(snapshotPath);
+        assertEquals(8, restarted.getQtyForProduct(PRODUCT_ID));
+        InventoryJournal.open(journalPath, snapshotPath, restarted,
+                InventorySnapshot.readJournalSequence(snapshotPath)).close();
+        assertEquals(5, restarted.getQtyForProduct(PRODUCT_ID));
+        assertFalse(Files.exists(dir.resolve("inventory.journal.discarded")));
+    }
+
+    @Test
+    void editingTheProductCSVFileBetweenRunsKeepsTheQuantities() throws IOException {
+        String journalPath = dir.resolve("inventory.journal").toString();
+        String snapshotPath = dir.resolve("inventory.snapshot").toString();
+        Path csvPath = writeProductCSV("P-1,Hendricks Gin,GIN,FIFTH,25.99\n");
+
+        // The first run sells 3, then stops without compacting
+        Inventory firstRun = seededInventory();
+        InventoryJournal.openDiscarding(journalPath, snapshotPath, firstRun);
+        assertTrue(firstRun.removeProducts(PRODUCT_ID, 3));
+
+        // The file is edited before the next run, repricing P-1 and adding P-2
+        writeProductCSV("P-1,Hendricks Gin,GIN,FIFTH,27.99\nP-2,Tanqueray Gin,GIN,HANDLE,25.99\n");
+        Inventory restarted = InventorySnapshot.loadColumnar(snapshotPath);
+        InventoryJournal.openReconciling(journalPath, snapshotPath, restarted,
+                InventorySnapshot.readJournalSequence(snapshotPath), csvPath.toString());
+        assertEquals(7, restarted.getQtyForProduct(PRODUCT_ID));
+        assertEquals(2799, restarted.getProductCatalog().getProduct(PRODUCT_ID).getPriceInCents());
+        assertNotNull(restarted.getProductCatalog().getProduct("P-2"));
+
+        // P-2's delivery is only in the journal when that run stops.
+        //   Dropping P-1 from the file then discontinues it, and that
+        //   survives a restart from the snapshot the reconciling wrote.
+        assertTrue(restarted.addQtyForProduct("P-2", 4));
+        writeProductCSV("P-2,Tanqueray Gin,GIN,HANDLE,25.99\n");
+        Inventory reconciled = InventorySnapshot.loadColumnar(snapshotPath);
+        InventoryJournal.openReconciling(journalPath, snapshotPath, reconciled,
+                InventorySnapshot.readJournalSequence(snapshotPath), csvPath.toString()).close();
+        Inventory restartedAgain = InventorySnapshot.loadColumnar(snapshotPath);
+        InventoryJournal.open(journalPath, snapshotPath, restartedAgain,
+                InventorySnapshot.readJournalSequence(snapshotPath)).close();
+        assertTrue(restartedAgain.isDiscontinued(PRODUCT_ID));
+        assertEquals(7, restartedAgain.getQtyForProduct(PRODUCT_ID));
+        assertEquals(4, restartedAgain.getQtyForProduct("P-2"));
+    }
+
+    private Path writeProductCSV(String rows) throws IOException {
+        return Files.writeString(dir.resolve("product_data.csv"),
+                "ProductId,Name,AlcoholType,BottleSize,Price\n" + rows, StandardCharsets.UTF_8);
+    }
+
+    private static Inventory seededInventory() {
+        Inventory inventory = new Inventory();
+        inventory.addNewProduct(new Product(PRODUCT_ID, "Hendricks Gin", AlcoholType.GIN, BottleSize.FIFTH, 25.99));
+        inventory.addQtyForProduct(PRODUCT_ID, 10);
+        return inventory;
+    }
+
+}
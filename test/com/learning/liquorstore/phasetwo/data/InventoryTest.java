@@ -0,0 +1,116 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+
+class InventoryTest {
+
+    @Test
+    void aRefusedBasketLeavesNoTrace() throws InterruptedException {
+        Inventory inventory = new Inventory();
+        addProduct(inventory, "P-1", AlcoholType.GIN, 10);
+        addProduct(inventory, "P-2", AlcoholType.VODKA, 1);
+        addProduct(inventory, "P-3", AlcoholType.RUM, 10);
+        inventory.setReorderThreshold("P-1", 8);
+        inventory.setReorderThreshold("P-3", 8);
+        BlockingQueue<String> lowStockIds = new LinkedBlockingQueue<>();
+        inventory.addLowStockListener((product, quantity, threshold) -> lowStockIds.add(product.getProductId()));
+        ProductQuery inStockGin = new ProductQuery().withAlcoholTypes(AlcoholType.GIN).inStockOnly();
+        Set<Product> cachedGin = inventory.findProducts(inStockGin);
+
+        // Taking all of P-1 would cross its threshold and put it out of
+        //   stock, but P-2 can't cover its line
+        BatchResult result = inventory.applyQtyDeltas(
+                new QuantityDeltas(2).add("P-1", -10).add("P-2", -2), true);
+        assertFalse(result.isApplied(0));
+        assertFalse(result.isApplied(1));
+        assertEquals(10, inventory.getQtyForProduct("P-1"));
+        assertEquals(1, inventory.getQtyForProduct("P-2"));
+        assertSame(cachedGin, inventory.findProducts(inStockGin));
+
+        // Notifications are queued in the order the crossings flip, so a
+        //   spurious one for P-1 would arrive before P-3's
+        assertTrue(inventory.removeProducts("P-3", 5));
+        assertEquals("P-3", lowStockIds.poll(10, TimeUnit.SECONDS));
+        assertEquals(List.of("P-3"), inventory.getLowStockProducts().stream().map(Product::getProductId).toList());
+    }
+
+    @Test
+    void lowStockNotificationsArriveInTheOrderTheyFlipped() throws InterruptedException {
+        Inventory inventory = new Inventory();
+        addProduct(inventory, "P-1", AlcoholType.GIN, 10);
+        addProduct(inventory, "P-2", AlcoholType.VODKA, 10);
+        inventory.setReorderThreshold("P-1", 8);
+        inventory.setReorderThreshold("P-2", 8);
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        inventory.addLowStockListener(new LowStockListener() {
+            @Override
+            public void onLowStock(Product product, int quantity, int threshold) {
+                events.add(product.getProductId() + " low " + quantity);
+            }
+
+            @Override
+            public void onRestocked(Product product, int quantity, int threshold) {
+                events.add(product.getProductId() + " restocked " + quantity);
+            }
+        });
+
+        assertTrue(inventory.removeProducts("P-1", 3));
+        inventory.addQtyForProduct("P-1", 2);
+        assertTrue(inventory.removeProducts("P-1", 4));
+        inventory.addQtyForProduct("P-1", 5);
+        assertEquals("P-1 low 7", events.poll(10, TimeUnit.SECONDS));
+        assertEquals("P-1 restocked 9", events.poll(10, TimeUnit.SECONDS));
+        assertEquals("P-1 low 5", events.poll(10, TimeUnit.SECONDS));
+        assertEquals("P-1 restocked 10", events.poll(10, TimeUnit.SECONDS));
+
+        // Racing sales and deliveries across the threshold may notify
+        //   crossings that were undone at once, but never two of a kind in
+        //   a row
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    if (inventory.removeProducts("P-1", 3)) {
+                        inventory.addQtyForProduct("P-1", 3);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // P-2's crossing is queued after every one of P-1's
+        assertTrue(inventory.removeProducts("P-2", 5));
+        boolean isLow = false;
+        String event;
+        while (!(event = events.poll(10, TimeUnit.SECONDS)).startsWith("P-2")) {
+            assertEquals(isLow ? "P-1 restocked" : "P-1 low", event.substring(0, event.lastIndexOf(' ')));
+            isLow = !isLow;
+        }
+        assertEquals("P-2 low 5", event);
+        assertFalse(isLow);
+        assertEquals(10, inventory.getQtyForProduct("P-1"));
+    }
+
+    private static void addProduct(Inventory inventory, String productId, AlcoholType alcoholType, int quantity) {
+        inventory.addNewProduct(new Product(productId, productId, alcoholType, BottleSize.FIFTH, 19.99));
+        inventory.addQtyForProduct(productId, quantity);
+    }
+
+}
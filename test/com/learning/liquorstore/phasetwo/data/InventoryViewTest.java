@@ -0,0 +1,101 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+
+class InventoryViewTest {
+
+    static Stream<ProductCatalog> catalogs() {
+        return Stream.of(new HeapProductCatalog(), new ColumnarProductCatalog());
+    }
+
+    @ParameterizedTest
+    @MethodSource("catalogs")
+    void aViewKeepsItsQuantities(ProductCatalog catalog) {
+        Inventory inventory = seededInventory(catalog);
+        InventoryView view = inventory.getView();
+
+        assertTrue(inventory.removeProducts("P-1", 10));
+        assertTrue(inventory.applyQtyDeltas(new QuantityDeltas(2).add("P-2", -1).add("P-3", 7), true)
+                .isFullyApplied());
+
+        assertEquals(10, view.getQtyForProduct("P-1"));
+        assertEquals(5, view.getQtyForProduct("P-2"));
+        assertEquals(0, view.getQtyForProduct("P-3"));
+        assertEquals(List.of("P-1", "P-2"), ids(view.findProducts(new ProductQuery().inStockOnly())));
+        assertEquals(List.of("P-2", "P-3"), ids(inventory.getView().findProducts(new ProductQuery().inStockOnly())));
+    }
+
+    @ParameterizedTest
+    @MethodSource("catalogs")
+    void aViewKeepsItsProductsAcrossCatalogEdits(ProductCatalog catalog) {
+        Inventory inventory = seededInventory(catalog);
+        InventoryView view = inventory.getView();
+        Product hendricks = view.getProductById("P-1");
+
+        // Reload P-1 as a pricier vodka under a new name, and drop P-2
+        assertTrue(inventory.updateProduct(
+                new Product("P-1", "Hendricks Vodka", AlcoholType.VODKA, BottleSize.LITER, 39.99)));
+        assertTrue(inventory.discontinueProduct("P-2"));
+
+        assertEquals("Hendricks Gin", hendricks.getName());
+        assertEquals(AlcoholType.GIN, hendricks.getAlcoholType());
+        assertEquals(2599, hendricks.getPriceInCents());
+        Product viewedHendricks = view.getProductById("P-1");
+        assertEquals("Hendricks Gin", viewedHendricks.getName());
+        assertEquals(BottleSize.FIFTH, viewedHendricks.getBottleSize());
+        assertEquals(List.of("P-1", "P-2"), ids(view.getProductsByAlcoholType(AlcoholType.GIN)));
+        assertEquals(List.of("P-1", "P-2"), ids(view.findProducts(new ProductQuery().withPriceRange(20, 30))));
+        assertEquals(List.of("P-1", "P-2", "P-3"), ids(view.getAllProducts()));
+
+        InventoryView laterView = inventory.getView();
+        assertEquals("Hendricks Vodka", laterView.getProductById("P-1").getName());
+        assertEquals(List.of(), ids(laterView.getProductsByAlcoholType(AlcoholType.GIN)));
+        assertEquals(List.of("P-1"), ids(laterView.findProducts(new ProductQuery().withPriceRange(30, 40))));
+        assertEquals(List.of("P-1", "P-3"), ids(laterView.getAllProducts()));
+    }
+
+    @ParameterizedTest
+    @MethodSource("catalogs")
+    void aViewKeepsItsPricesAcrossAReprice(ProductCatalog catalog) {
+        Inventory inventory = seededInventory(catalog);
+        // Warm the query cache, so the reprice has to evict both ranges
+        assertEquals(List.of("P-3"), ids(inventory.getProductsInPriceRange(0, 9.99)));
+        assertEquals(List.of("P-1", "P-2"), ids(inventory.getProductsInPriceRange(20, 29.99)));
+        InventoryView view = inventory.getView();
+
+        assertTrue(inventory.repriceProduct("P-1", 8.99));
+
+        assertEquals(List.of("P-1", "P-3"), ids(inventory.getProductsInPriceRange(0, 9.99)));
+        assertEquals(List.of("P-2"), ids(inventory.getProductsInPriceRange(20, 29.99)));
+        assertEquals(2599, view.getProductById("P-1").getPriceInCents());
+        assertEquals(List.of("P-3"), ids(view.findProducts(new ProductQuery().withPriceRange(0, 9.99))));
+        assertEquals(List.of("P-1", "P-2"), ids(view.findProducts(new ProductQuery().withPriceRange(20, 29.99))));
+    }
+
+    static Inventory seededInventory(ProductCatalog catalog) {
+        Inventory inventory = new Inventory(catalog);
+        inventory.addNewProduct(new Product("P-1", "Hendricks Gin", AlcoholType.GIN, BottleSize.FIFTH, 25.99));
+        inventory.addNewProduct(new Product("P-2", "Tanqueray Gin", AlcoholType.GIN, BottleSize.HANDLE, 25.99));
+        inventory.addNewProduct(new Product("P-3", "Bacardi Superior", AlcoholType.RUM, BottleSize.FIFTH, 9.99));
+        inventory.addQtyForProduct("P-1", 10);
+        inventory.addQtyForProduct("P-2", 5);
+        return inventory;
+    }
+
+    static List<String> ids(Set<Product> products) {
+        return products.stream().map(Product::getProductId).toList();
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.learning.liquorstore.phasetwo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.learning.liquorstore.phasetwo.data.model.Product;
+import com.learning.liquorstore.phasetwo.data.model.Product.AlcoholType;
+import com.learning.liquorstore.phasetwo.data.model.Product.BottleSize;
+
+class ProductCatalogTest {
+
+    static Stream<ProductCatalog> catalogs() {
+        return Stream.of(new HeapProductCatalog(), new ColumnarProductCatalog());
+    }
+
+    @ParameterizedTest
+    @MethodSource("catalogs")
+    void aRepriceMovesTheProductBetweenPriceRanges(ProductCatalog catalog) {
+        seed(catalog);
+        int hendricks = catalog.indexOf("P-1");
+        ProductCatalog.Reader reader = catalog.getReader();
+        Product oldHendricks = catalog.getProduct(hendricks);
+
+        assertEquals(2599, catalog.updatePrice(hendricks, 899));
+
+        assertEquals(List.of("P-1", "P-3"), ids(catalog.getProductsInPriceRange(0, 999)));
+        assertEquals(List.of("P-2"), ids(catalog.getProductsInPriceRange(2000, 2999)));
+        assertEquals(899, catalog.getPriceInCents(hendricks));
+        assertEquals(899, catalog.getProduct(hendricks).getPriceInCents());
+        assertEquals(2599, reader.getPriceInCents(hendricks));
+        assertEquals(2599, reader.getProduct(hendricks).getPriceInCents());
+        assertEquals(2599, oldHendricks.getPriceInCents());
+
+        assertEquals(899, catalog.updatePrice(hendricks, 2599));
+        assertEquals(List.of("P-3"), ids(catalog.getProductsInPriceRange(0, 999)));
+        assertEquals(List.of("P-1", "P-2"), ids(catalog.getProductsInPriceRange(2000, 2999)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("catalogs")
+    void aPriceSheetMovesEveryProductAtOnce(ProductCatalog catalog) {
+        seed(catalog);
+        ProductCatalog.Reader reader = catalog.getReader();
+        int[] indexes = {catalog.indexOf("P-1"), catalog.indexOf("P-3")};
+
+        // Swap the prices of Hendricks and Bacardi
+        catalog.updatePrices(indexes, new long[] {999, 2599});
+
+        assertEquals(List.of("P-1"), ids(catalog.getProductsInPriceRange(0, 999)));
+        assertEquals(List.of("P-2", "P-3"), ids(catalog.getProductsInPriceRange(2000, 2999)));
+        assertEquals(2599, reader.getPriceInCents(indexes[0]));
+        assertEquals(999, reader.getPriceInCents(indexes[1]));
+    }
+
+    static void seed(ProductCatalog catalog) {
+        catalog.addProduct(new Product("P-1", "Hendricks Gin", AlcoholType.GIN, BottleSize.FIFTH, 25.99));
+        catalog.addProduct(new Product("P-2", "Tanqueray Gin", AlcoholType.GIN, BottleSize.HANDLE, 25.99));
+        catalog.addProduct(new Product("P-3", "Bacardi Superior", AlcoholType.RUM, BottleSize.FIFTH, 9.99));
+    }
+
+    static List<String> ids(Set<Product> products) {
+        return products.stream().map(Product::getProductId).toList();
+    }
+
+}